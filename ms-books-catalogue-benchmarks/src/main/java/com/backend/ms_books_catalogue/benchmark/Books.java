@@ -0,0 +1,94 @@
+package com.backend.ms_books_catalogue.benchmark;
+
+import com.backend.ms_books_catalogue.dtos.BooksSearchRequest;
+import com.backend.ms_books_catalogue.dtos.CreateBookIndexRequest;
+import com.backend.ms_books_catalogue.model.BookIndex;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Datos sinteticos de los benchmarks. La semilla es fija para que todas las ejecuciones midan lo mismo.
+ */
+public final class Books {
+
+    private static final String[] WORDS = {"clean", "code", "java", "design", "patterns", "effective", "foundation",
+            "history", "night", "garden", "river", "shadow", "empire", "secret", "journey", "machine", "silent",
+            "ocean", "winter", "kingdom", "programming", "systems", "distributed", "modern", "ancient", "lost"};
+
+    private static final String[] EDITORIALS = {"Planeta", "Anagrama", "Alfaguara", "Salamandra", "Tusquets", "O'Reilly"};
+
+    private static final String[] GENRES = {"novela", "ensayo", "fantasia", "historia", "tecnologia", "poesia"};
+
+    private Books() {
+    }
+
+    /**
+     * Solo titulo: la busqueda mas frecuente del buscador.
+     */
+    public static BooksSearchRequest titleSearch() {
+        return BooksSearchRequest.builder().title("clean co").build();
+    }
+
+    /**
+     * Todos los filtros a la vez, con varios valores de editorial y genero y rangos de rating y precio.
+     */
+    public static BooksSearchRequest fullSearch() {
+        return BooksSearchRequest.builder()
+                .title("clean co")
+                .author("Robert Martin")
+                .editorial("Planeta, Anagrama ,O'Reilly")
+                .genres("novela,ensayo,tecnologia")
+                .rating("3..5")
+                .price("10..50")
+                .aggregate(true)
+                .size(20)
+                .build();
+    }
+
+    public static List<BookIndex> books(int count) {
+        Random random = new Random(42);
+        return IntStream.range(0, count).mapToObj(i -> book(random, i)).toList();
+    }
+
+    public static CreateBookIndexRequest createRequest() {
+        return CreateBookIndexRequest.builder()
+                .title("Clean Code")
+                .author("Robert C. Martin")
+                .editorial("Anaya")
+                .pages(464)
+                .genres("tecnologia")
+                .publishedDate(LocalDate.of(2012, 10, 1))
+                .rating((short) 5)
+                .price(39.95)
+                .coverImage("https://covers.example.com/clean-code.jpg")
+                .dimensions("17 x 23 cm")
+                .stock(12)
+                .visible(true)
+                .build();
+    }
+
+    private static BookIndex book(Random random, int i) {
+        return BookIndex.builder()
+                .id(Long.toString(1_000_000L + i, 36))
+                .title(word(random) + " " + word(random) + " " + word(random))
+                .author(word(random) + " " + word(random))
+                .editorial(EDITORIALS[random.nextInt(EDITORIALS.length)])
+                .pages(80 + random.nextInt(900))
+                .genres(GENRES[random.nextInt(GENRES.length)])
+                .publishedDate(LocalDate.of(1950 + random.nextInt(75), 1 + random.nextInt(12), 1 + random.nextInt(28)))
+                .rating((short) random.nextInt(6))
+                .price(5 + random.nextInt(6000) / 100.0)
+                .coverImage("https://covers.example.com/" + i + ".jpg")
+                .dimensions("15 x 23 cm")
+                .stock(random.nextInt(500))
+                .visible(true)
+                .build();
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
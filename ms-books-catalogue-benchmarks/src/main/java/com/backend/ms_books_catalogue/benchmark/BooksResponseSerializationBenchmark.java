@@ -0,0 +1,69 @@
+package com.backend.ms_books_catalogue.benchmark;
+
+import com.backend.ms_books_catalogue.controller.model.BooksQueryResponse;
+import com.backend.ms_books_catalogue.model.BookIndex;
+import com.backend.ms_books_catalogue.utils.BookFields;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializacion con Jackson de la respuesta de GET /books para paginas grandes de BookIndex, con todos los campos
+ * o con una proyeccion (fields=title,price). writeTo escribe directamente en un stream, como el conversor HTTP;
+ * toBytes materializa ademas el cuerpo completo en memoria.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BooksResponseSerializationBenchmark {
+
+    private static final Set<String> PROJECTION = Set.of("title", "price");
+
+    @Param({"20", "100", "1000"})
+    private int books;
+
+    // all: documento completo; projected: solo id, title y price
+    @Param({"all", "projected"})
+    private String fields;
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final OutputStream sink = OutputStream.nullOutputStream();
+    private BooksQueryResponse response;
+
+    @Setup
+    public void setUp() {
+        List<BookIndex> page = Books.books(books);
+        if ("projected".equals(fields)) {
+            page = page.stream().map(book -> BookFields.project(book, PROJECTION)).toList();
+        }
+        response = new BooksQueryResponse(page, Map.of(), "eyJwaXRJZCI6ImJlbmNobWFyayJ9");
+    }
+
+    @Benchmark
+    public byte[] toBytes() {
+        return jsonMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public void writeTo() {
+        jsonMapper.writeValue(sink, response);
+    }
+}
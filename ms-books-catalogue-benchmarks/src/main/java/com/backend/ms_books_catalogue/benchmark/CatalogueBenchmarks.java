@@ -0,0 +1,42 @@
+package com.backend.ms_books_catalogue.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Punto de entrada de target/benchmarks.jar. Acepta las mismas opciones que el Main de JMH y, salvo que se
+ * indiquen otras, activa el perfilador de GC (gc.alloc.rate.norm = bytes reservados por operacion) y guarda
+ * los resultados en JSON en jmh-results/, un fichero por ejecucion para poder compararlas.
+ */
+public final class CatalogueBenchmarks {
+
+    private static final DateTimeFormatter RESULT_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private CatalogueBenchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            Path results = Files.createDirectories(Path.of("jmh-results"));
+            options.result(results.resolve("catalogue-" + LocalDateTime.now().format(RESULT_NAME) + ".json").toString());
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,105 @@
+package com.backend.ms_books_catalogue.repository;
+
+import com.backend.ms_books_catalogue.benchmark.Books;
+import com.backend.ms_books_catalogue.controller.model.AggregationDetails;
+import com.backend.ms_books_catalogue.dtos.BooksSearchRequest;
+import com.backend.ms_books_catalogue.utils.Consts;
+import org.opensearch.common.xcontent.json.JsonXContent;
+import org.opensearch.core.xcontent.DeprecationHandler;
+import org.opensearch.core.xcontent.NamedXContentRegistry;
+import org.opensearch.core.xcontent.XContentParser;
+import org.opensearch.search.aggregations.AbstractAggregationBuilder;
+import org.opensearch.search.aggregations.Aggregations;
+import org.opensearch.search.aggregations.bucket.histogram.ParsedHistogram;
+import org.opensearch.search.aggregations.bucket.range.ParsedRange;
+import org.opensearch.search.aggregations.bucket.terms.ParsedStringTerms;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Facetas de GET /books?aggregate=true: definicion de las agregaciones y paso del resultado de OpenSearch a
+ * AggregationDetails (una URI de filtro por bucket). Las agregaciones se leen en el setUp de una respuesta JSON
+ * con los mismos tipos (Parsed*) que entrega el cliente, asi que solo se mide BookFacets.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookFacetsBenchmark {
+
+    private static final List<String> PRICE_RANGES = List.of("..10", "10..20", "20..50", "50..");
+
+    // Buckets por faceta de terminos (catalogue.facets.terms-size)
+    @Param({"10", "100"})
+    private int buckets;
+
+    private BookFacets bookFacets;
+    private Aggregations aggregations;
+    private BooksSearchRequest request;
+
+    @Setup
+    public void setUp() throws IOException {
+        bookFacets = new BookFacets();
+        ReflectionTestUtils.setField(bookFacets, "serverFullAddress", "http://localhost:8088");
+        ReflectionTestUtils.setField(bookFacets, "termsSize", buckets);
+        ReflectionTestUtils.setField(bookFacets, "priceRanges", PRICE_RANGES);
+        request = Books.fullSearch();
+
+        aggregations = new Aggregations(List.of(
+                ParsedStringTerms.fromXContent(parser(terms(Consts.GENRES)), Consts.GENRES),
+                ParsedStringTerms.fromXContent(parser(terms(Consts.EDITORIAL)), Consts.EDITORIAL),
+                ParsedHistogram.fromXContent(parser(ratings()), Consts.RATING),
+                ParsedRange.fromXContent(parser(prices()), Consts.PRICE)));
+    }
+
+    @Benchmark
+    public List<AbstractAggregationBuilder<?>> aggregations() {
+        return bookFacets.aggregations();
+    }
+
+    @Benchmark
+    public Map<String, List<AggregationDetails>> parse() {
+        return bookFacets.parse(aggregations, request);
+    }
+
+    private String terms(String field) {
+        return IntStream.range(0, buckets)
+                .mapToObj(i -> "{\"key\":\"" + field + "-" + i + "\",\"doc_count\":" + (buckets - i) * 7 + "}")
+                .collect(Collectors.joining(",", "{\"doc_count_error_upper_bound\":0,\"sum_other_doc_count\":0,\"buckets\":[", "]}"));
+    }
+
+    private String ratings() {
+        return IntStream.rangeClosed(0, 5)
+                .mapToObj(rating -> "{\"key\":" + rating + ".0,\"doc_count\":" + (rating + 1) * 11 + "}")
+                .collect(Collectors.joining(",", "{\"buckets\":[", "]}"));
+    }
+
+    private String prices() {
+        return """
+                {"buckets":[{"key":"..10","to":10.0,"doc_count":40},{"key":"10..20","from":10.0,"to":20.0,"doc_count":75},\
+                {"key":"20..50","from":20.0,"to":50.0,"doc_count":120},{"key":"50..","from":50.0,"doc_count":18}]}""";
+    }
+
+    private XContentParser parser(String json) throws IOException {
+        return JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, json);
+    }
+}
@@ -0,0 +1,78 @@
+package com.backend.ms_books_catalogue.repository;
+
+import com.backend.ms_books_catalogue.benchmark.Books;
+import com.backend.ms_books_catalogue.controller.model.BooksQueryResponse;
+import com.backend.ms_books_catalogue.dtos.BooksSearchRequest;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.opensearch.index.query.BoolQueryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste en CPU de GET /books antes de llegar a OpenSearch: construccion de la consulta bool, su serializacion
+ * a JSON (el cuerpo de la peticion), la clave de la cache de resultados y una primera pagina servida desde cache.
+ * Esta en el paquete del repositorio para poder llamar a buildQuery.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BooksQueryBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    // title: solo titulo; full: titulo, autor, editoriales, generos y rangos de rating y precio
+    @Param({"title", "full"})
+    private String search;
+
+    private BooksSearchRequest request;
+    private BookOpenSearchRepository repository;
+
+    @Setup
+    public void setUp() {
+        request = "full".equals(search) ? Books.fullSearch() : Books.titleSearch();
+
+        Cache<BooksQueryKey, BooksQueryResponse> booksQueryCache = Caffeine.newBuilder().maximumSize(100).build();
+        repository = new BookOpenSearchRepository(null, null, Caffeine.newBuilder().build(), booksQueryCache, new BookFacets());
+        ReflectionTestUtils.setField(repository, "defaultPageSize", PAGE_SIZE);
+        ReflectionTestUtils.setField(repository, "maxPageSize", 100);
+        booksQueryCache.put(BooksQueryKey.of(request, PAGE_SIZE, repository.getQueryCacheVersion()),
+                new BooksQueryResponse(Books.books(PAGE_SIZE), Map.of(), null));
+    }
+
+    @Benchmark
+    public BoolQueryBuilder buildQuery() {
+        return repository.buildQuery(request);
+    }
+
+    @Benchmark
+    public String buildQueryJson() {
+        return repository.buildQuery(request).toString();
+    }
+
+    @Benchmark
+    public BooksQueryKey cacheKey() {
+        return BooksQueryKey.of(request, PAGE_SIZE, repository.getQueryCacheVersion());
+    }
+
+    @Benchmark
+    public BooksQueryResponse findBooksCached() {
+        return repository.findBooks(request);
+    }
+}
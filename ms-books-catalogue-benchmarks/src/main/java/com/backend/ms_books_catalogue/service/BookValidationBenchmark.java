@@ -0,0 +1,44 @@
+package com.backend.ms_books_catalogue.service;
+
+import com.backend.ms_books_catalogue.benchmark.Books;
+import com.backend.ms_books_catalogue.dtos.CreateBookIndexRequest;
+import com.backend.ms_books_catalogue.model.BookIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validacion y construccion del documento en el alta de libros (POST /books y cada linea de la carga masiva),
+ * sin la escritura en OpenSearch. Esta en el paquete del servicio para poder llamar a toBookIndex.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookValidationBenchmark {
+
+    private BookOpenSearchService service;
+    private CreateBookIndexRequest request;
+
+    @Setup
+    public void setUp() {
+        service = new BookOpenSearchService(null, null);
+        request = Books.createRequest();
+    }
+
+    @Benchmark
+    public BookIndex toBookIndex() {
+        return service.toBookIndex(request);
+    }
+}
@@ -0,0 +1,117 @@
+package com.backend.ms_books_catalogue.config;
+
+import com.backend.ms_books_catalogue.controller.model.AggregationDetails;
+import com.backend.ms_books_catalogue.controller.model.BooksQueryResponse;
+import com.backend.ms_books_catalogue.model.BookIndex;
+import com.backend.ms_books_catalogue.repository.BooksQueryKey;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Caches locales del catalogo. Son por instancia: las escrituras invalidan la cache de la instancia que las recibe
+ * y el TTL acota lo que puede tardar en verse un cambio hecho a traves de otra instancia.
+ * Las estadisticas se publican como metricas cache.* (actuator/metrics).
+ */
+@Configuration
+public class CacheConfig {
+
+    // Estimaciones aproximadas de la huella en memoria, sin contar los Strings
+    private static final long ENTRY_OVERHEAD = 128;
+    private static final long BOOK_OVERHEAD = 256;
+    private static final long AGG_OVERHEAD = 96;
+
+    @Value("${catalogue.cache.books.max-size:10000}")
+    private long booksMaxSize;
+
+    @Value("${catalogue.cache.books.ttl:30s}")
+    private Duration booksTtl;
+
+    @Value("${catalogue.cache.books.negative-ttl:5s}")
+    private Duration booksNegativeTtl;
+
+    @Value("${catalogue.cache.queries.max-memory:32MB}")
+    private DataSize queriesMaxMemory;
+
+    @Value("${catalogue.cache.queries.ttl:10s}")
+    private Duration queriesTtl;
+
+    /**
+     * Cache read-through de GET /books/{id}. Los ids inexistentes se guardan como Optional.empty()
+     * con un TTL mas corto para absorber consultas repetidas sin ocultar altas recientes mucho tiempo.
+     */
+    @Bean
+    public Cache<String, Optional<BookIndex>> bookByIdCache(MeterRegistry meterRegistry) {
+        Cache<String, Optional<BookIndex>> cache = Caffeine.newBuilder()
+                .maximumSize(booksMaxSize)
+                .expireAfter(new Expiry<String, Optional<BookIndex>>() {
+                    @Override
+                    public long expireAfterCreate(String key, Optional<BookIndex> value, long currentTime) {
+                        return (value.isPresent() ? booksTtl : booksNegativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Optional<BookIndex> value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Optional<BookIndex> value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, "books.byId");
+    }
+
+    /**
+     * Cache de resultados de GET /books (primeras paginas). Esta limitada por memoria estimada, no por numero
+     * de entradas, porque una busqueda agregada puede pesar mucho mas que una pagina de 20 libros.
+     * Caffeine combina recencia y frecuencia (W-TinyLFU) al desalojar.
+     */
+    @Bean
+    public Cache<BooksQueryKey, BooksQueryResponse> booksQueryCache(MeterRegistry meterRegistry) {
+        Cache<BooksQueryKey, BooksQueryResponse> cache = Caffeine.newBuilder()
+                .maximumWeight(queriesMaxMemory.toBytes())
+                .weigher((BooksQueryKey key, BooksQueryResponse value) -> estimateSize(value))
+                .expireAfterWrite(queriesTtl)
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, "books.queries");
+    }
+
+    private static int estimateSize(BooksQueryResponse response) {
+        long size = ENTRY_OVERHEAD;
+        if (response.getBooks() != null) {
+            for (BookIndex book : response.getBooks()) {
+                size += BOOK_OVERHEAD + 2L * (length(book.getId()) + length(book.getTitle()) + length(book.getAuthor())
+                        + length(book.getEditorial()) + length(book.getGenres()) + length(book.getCoverImage())
+                        + length(book.getDimensions()));
+            }
+        }
+        if (response.getAggs() != null) {
+            for (List<AggregationDetails> facet : response.getAggs().values()) {
+                for (AggregationDetails agg : facet) {
+                    size += AGG_OVERHEAD + 2L * (length(agg.getKey()) + length(agg.getUri()));
+                }
+            }
+        }
+        size += 2L * length(response.getNextCursor());
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+}
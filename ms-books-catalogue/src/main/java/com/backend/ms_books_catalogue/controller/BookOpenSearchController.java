@@ -1,19 +1,34 @@
 package com.backend.ms_books_catalogue.controller;
 
+import java.io.InputStream;
 import java.util.Map;
 
+import com.backend.ms_books_catalogue.controller.model.BooksMultiGetResponse;
 import com.backend.ms_books_catalogue.controller.model.BooksQueryResponse;
+import com.backend.ms_books_catalogue.controller.model.StockReservationResponse;
+import com.backend.ms_books_catalogue.dtos.BooksMultiGetRequest;
+import com.backend.ms_books_catalogue.dtos.BooksSearchRequest;
 import com.backend.ms_books_catalogue.dtos.CreateBookIndexRequest;
+import com.backend.ms_books_catalogue.dtos.StockAdjustmentRequest;
+import com.backend.ms_books_catalogue.dtos.StockReservationRequest;
 import com.backend.ms_books_catalogue.model.BookIndex;
 import com.backend.ms_books_catalogue.service.IBookOpenSearchService;
+import com.backend.ms_books_catalogue.utils.BookFields;
+import com.backend.ms_books_catalogue.utils.BooksCursor;
+import com.backend.ms_books_catalogue.utils.Consts;
+import com.backend.ms_books_catalogue.utils.RangeFilterParser;
+import com.backend.ms_books_catalogue.utils.StockUpdateResult;
+import com.backend.ms_books_catalogue.utils.TitleSearchMode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -23,6 +38,8 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 @RequestMapping("/books")
 public class BookOpenSearchController {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final IBookOpenSearchService service;
 
     @GetMapping
@@ -37,23 +54,105 @@ public class BookOpenSearchController {
             @RequestHeader Map<String, String> headers,
             @Parameter(name = "title", description = "Titulo del libro. No tiene por que ser exacta", example = "Clean Code", required = false)
             @RequestParam(required = false) String title,
+            @Parameter(name = "titleMode", description = "Modo de busqueda por titulo: prefix (por defecto) o wildcard.", example = "prefix", required = false)
+            @RequestParam(required = false) String titleMode,
             @Parameter(name = "author", description = "Autor del libro. No tiene por que ser exacta", example = "Robert Martin", required = false)
             @RequestParam(required = false) String author,
             @Parameter(name = "editorial", description = "Editorial del libro. No tiene por que ser exacta", example = "Estupendo", required = false)
             @RequestParam(required = false) String editorial,
             @Parameter(name = "genres", description = "Géneros del libro.", example = "Drama,Suspenso", required = false)
             @RequestParam(required = false) String genres,
-            @Parameter(name = "rating", description = "Calificación del libro.", example = "4", required = false)
+            @Parameter(name = "rating", description = "Calificación del libro. Admite rangos: 4, 3..5, >=4, <3.", example = ">=4", required = false)
             @RequestParam(required = false) String rating,
-            @Parameter(name = "price", description = "Editorial del libro.", example = "30.5", required = false)
+            @Parameter(name = "price", description = "Precio del libro. Admite rangos: 10..30, 10.., ..30, >=10.", example = "10..30", required = false)
             @RequestParam(required = false) String price,
-            @RequestParam(required = false, defaultValue = "false") Boolean aggregate) {
+            @RequestParam(required = false, defaultValue = "false") Boolean aggregate,
+            @Parameter(name = "cursor", description = "Cursor opaco devuelto en nextCursor para pedir la pagina siguiente.", required = false)
+            @RequestParam(required = false) String cursor,
+            @Parameter(name = "size", description = "Tamaño de pagina (maximo configurable, 100 por defecto).", example = "20", required = false)
+            @RequestParam(required = false) Integer size,
+            @Parameter(name = "fields", description = "Campos a devolver separados por comas. El id se devuelve siempre.", example = "title,price,stock", required = false)
+            @RequestParam(required = false) String fields,
+            @Parameter(hidden = true)
+            @RequestParam Map<String, String> queryParams) {
 
         log.info("headers: {}", headers);
-        BooksQueryResponse books = service.getBooks(title, author, editorial, genres, rating, price, aggregate);
+        BooksQueryResponse books = service.getBooks(BooksSearchRequest.builder()
+                .title(title)
+                .titleMode(TitleSearchMode.from(titleMode))
+                .author(author)
+                .editorial(editorial)
+                .genres(genres)
+                .rating(RangeFilterParser.fromQueryParams(Consts.RATING, rating, queryParams))
+                .price(RangeFilterParser.fromQueryParams(Consts.PRICE, price, queryParams))
+                .aggregate(aggregate)
+                .cursor(cursor)
+                .size(size)
+                .fields(BookFields.parse(fields))
+                .build());
         return ResponseEntity.ok(books);
     }
 
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    @Operation(
+            operationId = "Exportar libros",
+            description = "Operación de lectura",
+            summary = "Se devuelven en streaming (NDJSON) todos los libros visibles. Tras cada lote se emite una linea {\"_checkpoint\": \"...\"} con la que se puede reanudar la exportacion.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/x-ndjson", schema = @Schema(implementation = BookIndex.class)))
+    public ResponseEntity<StreamingResponseBody> exportBooks(
+            @Parameter(name = "checkpoint", description = "Ultimo checkpoint recibido, para reanudar la exportacion.", required = false)
+            @RequestParam(required = false) String checkpoint) {
+
+        if (checkpoint != null) {
+            // Se valida antes de empezar a escribir para poder responder 400
+            if (BooksCursor.decode(checkpoint).getPitId() == null) {
+                throw new IllegalArgumentException("Checkpoint no valido");
+            }
+        }
+        log.info("Export requested, checkpoint {}", checkpoint);
+        StreamingResponseBody body = outputStream -> service.exportBooks(checkpoint, outputStream);
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    @GetMapping("/_version")
+    @Operation(
+            operationId = "Obtener la version del catalogo",
+            description = "Operación de lectura",
+            summary = "Se devuelve la version del catalogo, que cambia con cada escritura y es la misma en todas las instancias. Permite a los clientes invalidar sus caches. -1 si no se ha podido leer.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json"))
+    public ResponseEntity<Map<String, Long>> getCatalogueVersion() {
+        return ResponseEntity.ok(Map.of("version", service.getCatalogueVersion()));
+    }
+
+    @PostMapping("/_mget")
+    @Operation(
+            operationId = "Obtener varios libros",
+            description = "Operación de lectura",
+            summary = "Se devuelven varios libros a partir de sus identificadores en una sola peticion, indicando los que no existen.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Identificadores de los libros.",
+                    required = true,
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BooksMultiGetRequest.class))))
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = BooksMultiGetResponse.class)))
+    @ApiResponse(
+            responseCode = "400",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
+            description = "Sin ids, demasiados ids o campos desconocidos.")
+    public ResponseEntity<BooksMultiGetResponse> getBooksById(
+            @RequestBody BooksMultiGetRequest request,
+            @Parameter(name = "fields", description = "Campos a devolver separados por comas. El id se devuelve siempre.", example = "title,price", required = false)
+            @RequestParam(required = false) String fields) {
+
+        log.info("Multi-get request received for {} books", request.getIds() == null ? 0 : request.getIds().size());
+        return ResponseEntity.ok(service.getBooks(request.getIds(), BookFields.parse(fields)));
+    }
+
     @GetMapping("/{bookId}")
     @Operation(
             operationId = "Obtener un libro",
@@ -66,19 +165,122 @@ public class BookOpenSearchController {
             responseCode = "404",
             content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
             description = "No se ha encontrado el libro con el identificador indicado.")
-    public ResponseEntity<BookIndex> getBook(@PathVariable String bookId) {
+    public ResponseEntity<BookIndex> getBook(
+            @PathVariable String bookId,
+            @Parameter(name = "fields", description = "Campos a devolver separados por comas. El id se devuelve siempre.", example = "stock,visible", required = false)
+            @RequestParam(required = false) String fields) {
 
         log.info("Request received for book {}", bookId);
-        BookIndex book = service.getBook(bookId);
+        // La version se lee antes que el libro, y el libro de OpenSearch y no de la cache por id (que puede tener
+        // hasta catalogue.cache.books.ttl): un cliente que cachee la respuesta nunca la asocia a una version posterior
+        long version = service.getCatalogueVersion();
+        BookIndex book = version < 0
+                ? service.getBook(bookId, BookFields.parse(fields))
+                : service.getCurrentBook(bookId, BookFields.parse(fields));
 
-        if (book != null) {
+        if (book != null && version < 0) {
+            // Sin version no se publica cabecera: el cliente no debe cachear la respuesta
             return ResponseEntity.ok(book);
+        } else if (book != null) {
+            return ResponseEntity.ok().header(Consts.CATALOGUE_VERSION_HEADER, String.valueOf(version)).body(book);
         } else {
             return ResponseEntity.notFound().build();
         }
 
     }
 
+    @PatchMapping("/{bookId}/stock")
+    @Operation(
+            operationId = "Ajustar el stock de un libro",
+            description = "Operación de escritura",
+            summary = "Se suma delta al stock del libro de forma atomica. No se permite dejar el stock en negativo. Con la cabecera Idempotency-Key, un reintento con la misma clave no se vuelve a aplicar.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Variacion de stock (negativa para una compra).",
+                    required = true,
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = StockAdjustmentRequest.class))))
+    @ApiResponse(
+            responseCode = "204",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)))
+    @ApiResponse(
+            responseCode = "400",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
+            description = "Delta no valido.")
+    @ApiResponse(
+            responseCode = "404",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
+            description = "No se ha encontrado el libro con el identificador indicado.")
+    @ApiResponse(
+            responseCode = "409",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
+            description = "Stock insuficiente.")
+    public ResponseEntity<Void> adjustStock(
+            @PathVariable String bookId,
+            @RequestHeader(value = Consts.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestBody StockAdjustmentRequest request) {
+
+        log.info("Stock adjustment for book {}: {} (key {})", bookId, request.getDelta(), idempotencyKey);
+        StockUpdateResult result = service.adjustStock(bookId, request.getDelta(), idempotencyKey);
+
+        return switch (result) {
+            case UPDATED -> ResponseEntity.noContent().build();
+            case INSUFFICIENT_STOCK -> ResponseEntity.status(HttpStatus.CONFLICT).build();
+            case NOT_FOUND -> ResponseEntity.notFound().build();
+        };
+    }
+
+    @PostMapping("/_reserve")
+    @Operation(
+            operationId = "Reservar stock de varios libros",
+            description = "Operación de escritura",
+            summary = "Se valida y descuenta el stock de todas las lineas en una sola peticion. Si alguna linea no se puede reservar no se descuenta ninguna. Con la cabecera Idempotency-Key (id de la reserva), un reintento no descuenta dos veces y la reserva se puede liberar por ese id.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Lineas de la compra: libro y cantidad.",
+                    required = true,
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = StockReservationRequest.class))))
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = StockReservationResponse.class)))
+    @ApiResponse(
+            responseCode = "400",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
+            description = "Lineas de reserva no validas.")
+    @ApiResponse(
+            responseCode = "409",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = StockReservationResponse.class)),
+            description = "Algun libro no existe, no es visible, no tiene stock suficiente o la reserva ya se libero.")
+    public ResponseEntity<StockReservationResponse> reserveBooks(
+            @RequestHeader(value = Consts.IDEMPOTENCY_KEY_HEADER, required = false) String reservationId,
+            @RequestBody StockReservationRequest request) {
+
+        StockReservationResponse response = service.reserveBooks(request, reservationId);
+
+        if (response.isReserved()) {
+            return ResponseEntity.ok(response);
+        } else {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+    }
+
+    @PostMapping("/_release")
+    @Operation(
+            operationId = "Liberar stock de varios libros",
+            description = "Operación de escritura",
+            summary = "Se devuelve al stock una reserva previa que no se ha llegado a completar. Con la cabecera Idempotency-Key solo se devuelve lo que esa reserva llego a descontar, una sola vez, y la reserva ya no se aplica si llega despues.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Lineas reservadas: libro y cantidad.",
+                    required = true,
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = StockReservationRequest.class))))
+    @ApiResponse(
+            responseCode = "204",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)))
+    public ResponseEntity<Void> releaseBooks(
+            @RequestHeader(value = Consts.IDEMPOTENCY_KEY_HEADER, required = false) String reservationId,
+            @RequestBody StockReservationRequest request) {
+
+        service.releaseBooks(request, reservationId);
+        return ResponseEntity.noContent().build();
+    }
+
     @DeleteMapping("/{bookId}")
     @Operation(
             operationId = "Eliminar un libro",
@@ -135,4 +337,29 @@ public class BookOpenSearchController {
 
     }
 
+    @PostMapping(value = "/_bulk", consumes = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE}, produces = "application/x-ndjson")
+    @Operation(
+            operationId = "Insertar libros de forma masiva",
+            description = "Operación de escritura",
+            summary = "Se crean libros a partir de un NDJSON o de un array JSON de libros. Se devuelve en streaming (NDJSON) el resultado de cada libro y un resumen final.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Libros a crear, uno por linea (NDJSON) o como array JSON.",
+                    required = true,
+                    content = @Content(mediaType = "application/x-ndjson", schema = @Schema(implementation = CreateBookIndexRequest.class))))
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/x-ndjson"))
+    public ResponseEntity<StreamingResponseBody> bulkCreateBooks(InputStream body) {
+
+        log.info("Bulk ingestion requested");
+        StreamingResponseBody response = outputStream -> service.bulkCreateBooks(body, outputStream);
+        return ResponseEntity.ok().contentType(NDJSON).body(response);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleBadRequest(IllegalArgumentException e) {
+        log.warn("Bad request: {}", e.getMessage());
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
 }
\ No newline at end of file
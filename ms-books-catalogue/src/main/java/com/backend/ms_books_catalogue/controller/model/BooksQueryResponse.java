@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.util.List;
+import java.util.Map;
 
 @AllArgsConstructor
 @NoArgsConstructor
@@ -15,6 +16,7 @@ import java.util.List;
 public class BooksQueryResponse {
 
     private List<BookIndex> books;
-    private List<AggregationDetails> aggs;
+    private Map<String, List<AggregationDetails>> aggs;
+    private String nextCursor;
 
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.backend.ms_books_catalogue.controller.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class StockReservationFailure {
+
+    private String bookId;
+    // NOT_FOUND, NOT_VISIBLE, INSUFFICIENT_STOCK o ERROR
+    private String reason;
+    private Integer available;
+}
@@ -0,0 +1,18 @@
+package com.backend.ms_books_catalogue.controller.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class StockReservationResponse {
+
+    private boolean reserved;
+    private List<StockReservationFailure> failures;
+}
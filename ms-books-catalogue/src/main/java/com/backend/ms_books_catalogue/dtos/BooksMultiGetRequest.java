@@ -0,0 +1,15 @@
+package com.backend.ms_books_catalogue.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BooksMultiGetRequest {
+
+    private List<String> ids;
+}
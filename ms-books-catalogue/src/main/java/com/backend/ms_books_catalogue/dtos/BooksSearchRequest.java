@@ -0,0 +1,27 @@
+package com.backend.ms_books_catalogue.dtos;
+
+import com.backend.ms_books_catalogue.utils.TitleSearchMode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BooksSearchRequest {
+    private String title;
+    private TitleSearchMode titleMode;
+    private String author;
+    private String editorial;
+    private String genres;
+    private String rating;
+    private String price;
+    private Boolean aggregate;
+    private String cursor;
+    private Integer size;
+    private Set<String> fields;
+}
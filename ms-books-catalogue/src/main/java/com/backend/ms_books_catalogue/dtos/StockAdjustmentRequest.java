@@ -0,0 +1,14 @@
+package com.backend.ms_books_catalogue.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockAdjustmentRequest {
+
+    // Variacion de stock: negativa para una compra, positiva para una reposicion
+    private Integer delta;
+}
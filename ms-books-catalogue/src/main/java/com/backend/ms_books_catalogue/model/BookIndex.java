@@ -1,5 +1,7 @@
 package com.backend.ms_books_catalogue.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.elasticsearch.annotations.DateFormat;
 import org.springframework.data.elasticsearch.annotations.Document;
@@ -14,8 +16,11 @@ import lombok.Setter;
 import lombok.ToString;
 
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 
 @Document(indexName = "books", createIndex = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Getter
 @Setter
 @AllArgsConstructor
@@ -63,4 +68,20 @@ public class BookIndex {
     @Field(type = FieldType.Boolean, name = "visible")
     private Boolean visible;
 
+    // Copia del id como keyword (con doc_values) para desempatar la paginacion; no se expone en la API
+    @JsonIgnore
+    @Field(type = FieldType.Keyword, name = "sortId")
+    private String sortId;
+
+    // Idempotency-Key aplicadas al stock con el instante (epoch ms) en que se aplicaron; las mantienen los scripts de
+    // stock durante catalogue.stock.idempotency-window y no se exponen en la API
+    @JsonIgnore
+    @Field(type = FieldType.Object, name = "stockKeys", enabled = false)
+    private Map<String, Long> stockKeys;
+
+    // Formato anterior (ultimas N claves, sin fecha): el siguiente script de stock las pasa a stockKeys y lo borra
+    @JsonIgnore
+    @Field(type = FieldType.Keyword, name = "stockOps", index = false)
+    private List<String> stockOps;
+
 }
\ No newline at end of file
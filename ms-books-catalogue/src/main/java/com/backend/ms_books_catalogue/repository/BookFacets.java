@@ -0,0 +1,160 @@
+package com.backend.ms_books_catalogue.repository;
+
+import com.backend.ms_books_catalogue.controller.model.AggregationDetails;
+import com.backend.ms_books_catalogue.dtos.BooksSearchRequest;
+import com.backend.ms_books_catalogue.utils.Consts;
+import org.opensearch.search.aggregations.AbstractAggregationBuilder;
+import org.opensearch.search.aggregations.AggregationBuilders;
+import org.opensearch.search.aggregations.Aggregations;
+import org.opensearch.search.aggregations.bucket.histogram.Histogram;
+import org.opensearch.search.aggregations.bucket.range.Range;
+import org.opensearch.search.aggregations.bucket.range.RangeAggregationBuilder;
+import org.opensearch.search.aggregations.bucket.sampler.SamplerAggregationBuilder;
+import org.opensearch.search.aggregations.bucket.sampler.Sampler;
+import org.opensearch.search.aggregations.bucket.terms.Terms;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Facetas de GET /books?aggregate=true: terminos sobre genres y editorial, histograma de rating y rangos de price.
+ * Se calculan en la misma busqueda que devuelve los libros. Si se configura un tamaño de muestra, las facetas
+ * se calculan sobre los mejores documentos de cada shard (sampler) en lugar de sobre todo el resultado.
+ */
+@Component
+public class BookFacets {
+
+    private static final String SAMPLE = "sample";
+
+    @Value("${server.fullAddress}")
+    private String serverFullAddress;
+
+    @Value("${catalogue.facets.terms-size:10}")
+    private int termsSize;
+
+    @Value("${catalogue.facets.sample-size:0}")
+    private int sampleSize;
+
+    // Rangos de precio, p.ej. "..10,10..20,20..50,50..". Como en cualquier agregacion range, el extremo superior
+    // es exclusivo: un libro de 20 cuenta en 20..50
+    @Value("${catalogue.facets.price-ranges:..10,10..20,20..50,50..}")
+    private List<String> priceRanges;
+
+    public List<AbstractAggregationBuilder<?>> aggregations() {
+        List<AbstractAggregationBuilder<?>> facets = List.of(
+                AggregationBuilders.terms(Consts.GENRES).field(Consts.GENRES).size(termsSize),
+                AggregationBuilders.terms(Consts.EDITORIAL).field(Consts.EDITORIAL).size(termsSize),
+                AggregationBuilders.histogram(Consts.RATING).field(Consts.RATING).interval(1).minDocCount(1),
+                priceAggregation());
+
+        if (sampleSize <= 0) {
+            return facets;
+        }
+        SamplerAggregationBuilder sampler = AggregationBuilders.sampler(SAMPLE).shardSize(sampleSize);
+        facets.forEach(sampler::subAggregation);
+        return List.of(sampler);
+    }
+
+    public Map<String, List<AggregationDetails>> parse(Aggregations aggregations, BooksSearchRequest request) {
+        Aggregations facets = aggregations.get(SAMPLE) != null
+                ? ((Sampler) aggregations.get(SAMPLE)).getAggregations()
+                : aggregations;
+
+        Map<String, List<AggregationDetails>> response = new LinkedHashMap<>();
+        response.put(Consts.GENRES, terms(facets.get(Consts.GENRES), Consts.GENRES, request));
+        response.put(Consts.EDITORIAL, terms(facets.get(Consts.EDITORIAL), Consts.EDITORIAL, request));
+
+        List<AggregationDetails> ratings = new ArrayList<>();
+        Histogram rating = facets.get(Consts.RATING);
+        rating.getBuckets().forEach(bucket -> {
+            String value = String.valueOf(((Number) bucket.getKey()).intValue());
+            ratings.add(new AggregationDetails(value, (int) bucket.getDocCount(), uri(request, Consts.RATING, value)));
+        });
+        response.put(Consts.RATING, ratings);
+
+        List<AggregationDetails> prices = new ArrayList<>();
+        Range price = facets.get(Consts.PRICE);
+        price.getBuckets().forEach(bucket -> prices.add(new AggregationDetails(
+                bucket.getKeyAsString(), (int) bucket.getDocCount(), uri(request, Consts.PRICE, priceFilter(bucket)))));
+        response.put(Consts.PRICE, prices);
+        return response;
+    }
+
+    private List<AggregationDetails> terms(Terms terms, String param, BooksSearchRequest request) {
+        return terms.getBuckets().stream()
+                .map(bucket -> new AggregationDetails(bucket.getKeyAsString(), (int) bucket.getDocCount(),
+                        uri(request, param, bucket.getKeyAsString())))
+                .toList();
+    }
+
+    private RangeAggregationBuilder priceAggregation() {
+        RangeAggregationBuilder range = AggregationBuilders.range(Consts.PRICE).field(Consts.PRICE);
+        for (String priceRange : priceRanges) {
+            String[] bounds = priceRange.trim().split("\\.\\.", -1);
+            if (bounds.length != 2) {
+                throw new IllegalStateException("Rango de precio no valido en catalogue.facets.price-ranges: " + priceRange);
+            }
+            String key = priceRange.trim();
+            if (bounds[0].isBlank()) {
+                range.addUnboundedTo(key, Double.parseDouble(bounds[1]));
+            } else if (bounds[1].isBlank()) {
+                range.addUnboundedFrom(key, Double.parseDouble(bounds[0]));
+            } else {
+                range.addRange(key, Double.parseDouble(bounds[0]), Double.parseDouble(bounds[1]));
+            }
+        }
+        return range;
+    }
+
+    /**
+     * Filtro equivalente a un bucket de precio. En la agregacion "to" es exclusivo, mientras que "10..20" en el
+     * filtro price incluye el 20: se usa ">=10,<20" para que la URI devuelva exactamente los libros contados.
+     */
+    private String priceFilter(Range.Bucket bucket) {
+        List<String> conditions = new ArrayList<>();
+        double from = ((Number) bucket.getFrom()).doubleValue();
+        double to = ((Number) bucket.getTo()).doubleValue();
+        if (!Double.isInfinite(from)) {
+            conditions.add(">=" + number(from));
+        }
+        if (!Double.isInfinite(to)) {
+            conditions.add("<" + number(to));
+        }
+        return String.join(",", conditions);
+    }
+
+    private String number(double value) {
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * URI de la busqueda actual con la faceta aplicada como filtro (sustituye el valor previo de ese parametro).
+     */
+    private String uri(BooksSearchRequest request, String param, String value) {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromUriString(serverFullAddress).path("/books");
+        addParam(uri, Consts.TITLE, request.getTitle());
+        if (request.getTitleMode() != null && request.getTitle() != null) {
+            addParam(uri, "titleMode", request.getTitleMode().name().toLowerCase(Locale.ROOT));
+        }
+        addParam(uri, Consts.AUTHOR, request.getAuthor());
+        addParam(uri, Consts.EDITORIAL, request.getEditorial());
+        addParam(uri, Consts.GENRES, request.getGenres());
+        addParam(uri, Consts.RATING, request.getRating());
+        addParam(uri, Consts.PRICE, request.getPrice());
+        uri.replaceQueryParam(param, value);
+        return uri.encode().build().toUriString();
+    }
+
+    private void addParam(UriComponentsBuilder uri, String name, String value) {
+        if (value != null && !value.isBlank()) {
+            uri.queryParam(name, value);
+        }
+    }
+}
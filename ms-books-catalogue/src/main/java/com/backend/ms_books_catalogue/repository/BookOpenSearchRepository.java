@@ -1,25 +1,49 @@
 package com.backend.ms_books_catalogue.repository;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
 import com.backend.ms_books_catalogue.controller.model.AggregationDetails;
 import com.backend.ms_books_catalogue.controller.model.BooksQueryResponse;
+import com.backend.ms_books_catalogue.controller.model.StockReservationFailure;
+import com.backend.ms_books_catalogue.dtos.BooksSearchRequest;
 import com.backend.ms_books_catalogue.model.BookIndex;
+import com.backend.ms_books_catalogue.utils.BooksCursor;
+import com.backend.ms_books_catalogue.utils.Consts;
+import com.backend.ms_books_catalogue.utils.RangeFilterParser;
+import com.backend.ms_books_catalogue.utils.SearchStatement;
+import com.backend.ms_books_catalogue.utils.StockUpdateResult;
+import com.backend.ms_books_catalogue.utils.TitleSearchMode;
+import com.github.benmanes.caffeine.cache.Cache;
 import lombok.SneakyThrows;
 import org.apache.commons.lang.StringUtils;
 import org.opensearch.data.client.orhlc.NativeSearchQueryBuilder;
 import org.opensearch.data.client.orhlc.OpenSearchAggregations;
 import org.opensearch.index.query.BoolQueryBuilder;
-import org.opensearch.index.query.MultiMatchQueryBuilder.Type;
+import org.opensearch.index.query.QueryBuilder;
 import org.opensearch.index.query.QueryBuilders;
-import org.opensearch.search.aggregations.Aggregation;
-import org.opensearch.search.aggregations.AggregationBuilders;
-import org.opensearch.search.aggregations.bucket.terms.ParsedStringTerms;
+import org.opensearch.search.aggregations.AbstractAggregationBuilder;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.BulkFailureException;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.MultiGetItem;
 import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilterBuilder;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
 import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.data.elasticsearch.core.query.ScriptType;
+import org.springframework.data.elasticsearch.core.query.SourceFilter;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.data.elasticsearch.core.query.UpdateResponse;
 import org.springframework.stereotype.Repository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,84 +52,595 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 @Slf4j
 public class BookOpenSearchRepository {
-    @Value("${server.fullAddress}")
-    private String serverFullAddress;
+    // _score y despues sortId (copia keyword del id, con doc_values): orden total y estable, necesario para que
+    // search_after no repita ni salte libros cuando muchos empatan en _score (p.ej. consultas solo con filtros).
+    // No se usa _id, que exige fielddata, ni _shard_doc, que OpenSearch 2.x no garantiza
+    private static final Sort PAGINATION_SORT = Sort.by(Sort.Order.desc("_score"), Sort.Order.asc(Consts.SORT_ID));
+
+    private static final Sort EXPORT_SORT = Sort.by(Sort.Order.asc(Consts.SORT_ID));
+    private static final BulkOptions BULK_OPTIONS = BulkOptions.builder().withRefreshPolicy(RefreshPolicy.NONE).build();
+
+    // Las claves de stockKeys (y las de stockOps aun sin migrar) solo las usan los scripts de stock y la comprobacion
+    // previa de reserveStock: las lecturas (por id, mget, busqueda y exportacion) no las piden, asi que no viajan ni
+    // ocupan la cache
+    private static final String STOCK_KEYS = "stockKeys";
+    private static final String STOCK_OPS = "stockOps";
+    private static final SourceFilter WITHOUT_STOCK_OPS = new FetchSourceFilterBuilder().withExcludes(STOCK_KEYS, STOCK_OPS).build();
+    private static final SourceFilter RESERVATION_CHECK = new FetchSourceFilterBuilder()
+            .withIncludes(Consts.STOCK, Consts.VISIBLE, STOCK_KEYS, STOCK_OPS).build();
+
+    // El ajuste se hace dentro de OpenSearch: si el stock quedaria negativo el script no modifica el documento (noop)
+    static final String ADJUST_STOCK_SCRIPT = """
+            int current = ctx._source.stock == null ? 0 : ctx._source.stock;
+            if (current + params.delta < 0) { ctx.op = 'noop'; } else { ctx._source.stock = current + params.delta; }""";
+
+    // Comun a los scripts con clave: las claves se guardan en el propio documento con el instante en que se aplicaron
+    // y se retiran al pasar params.window, no por numero. Un libro muy vendido acumula muchas escrituras en poco
+    // tiempo, pero un reintento sigue encontrando su clave mientras llegue dentro de la ventana. Las claves del
+    // formato anterior (stockOps) se migran con el instante actual
+    private static final String STOCK_KEYS_PRELUDE = """
+            Map keys = ctx._source.stockKeys;
+            if (keys == null) { keys = new HashMap(); ctx._source.stockKeys = keys; }
+            if (ctx._source.stockOps != null) {
+                for (def op : ctx._source.stockOps) { keys.putIfAbsent(op, params.now); }
+                ctx._source.remove('stockOps');
+            }
+            long oldest = params.now - params.window;
+            keys.values().removeIf(at -> at < oldest);
+            """;
+
+    // Igual que ADJUST_STOCK_SCRIPT, pero recuerda las claves aplicadas: un reintento con la misma clave no vuelve a
+    // sumar y responde como el primero (updated)
+    static final String IDEMPOTENT_ADJUST_STOCK_SCRIPT = STOCK_KEYS_PRELUDE + """
+            if (!keys.containsKey(params.key)) {
+                int current = ctx._source.stock == null ? 0 : ctx._source.stock;
+                if (current + params.delta < 0) { ctx.op = 'noop'; } else {
+                    ctx._source.stock = current + params.delta;
+                    keys.put(params.key, params.now);
+                }
+            }""";
+
+    // En una reserva el fallo tiene que aparecer en la respuesta bulk, asi que el script lanza en lugar de hacer noop
+    static final String RESERVE_STOCK_SCRIPT = """
+            int current = ctx._source.stock == null ? 0 : ctx._source.stock;
+            if (current < params.quantity) { throw new IllegalArgumentException('insufficient_stock'); }
+            ctx._source.stock = current - params.quantity;""";
+
+    // Reserva con id: anota la clave de la reserva en el libro, asi un reintento no vuelve a descontar. Si la
+    // reserva ya se libero (el cliente dio la llamada por perdida) no se aplica aunque llegue tarde
+    static final String IDEMPOTENT_RESERVE_STOCK_SCRIPT = STOCK_KEYS_PRELUDE + """
+            if (keys.containsKey(params.releaseKey)) { throw new IllegalArgumentException('reservation_released'); }
+            if (!keys.containsKey(params.key)) {
+                int current = ctx._source.stock == null ? 0 : ctx._source.stock;
+                if (current < params.quantity) { throw new IllegalArgumentException('insufficient_stock'); }
+                ctx._source.stock = current - params.quantity;
+                keys.put(params.key, params.now);
+            } else { ctx.op = 'noop'; }""";
+
+    // Libera una reserva por su id: devuelve el stock solo si la reserva se aplico, y una sola vez. La marca de
+    // liberacion se guarda aunque la reserva no haya llegado, para que ya no se aplique si llega despues
+    static final String IDEMPOTENT_RELEASE_STOCK_SCRIPT = STOCK_KEYS_PRELUDE + """
+            if (keys.containsKey(params.releaseKey)) { ctx.op = 'noop'; } else {
+                if (keys.containsKey(params.key)) {
+                    int current = ctx._source.stock == null ? 0 : ctx._source.stock;
+                    ctx._source.stock = current + params.quantity;
+                }
+                keys.put(params.releaseKey, params.now);
+            }""";
+
+    @Value("${catalogue.pagination.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${catalogue.pagination.max-size:100}")
+    private int maxPageSize;
+
+    @Value("${catalogue.pagination.keep-alive:1m}")
+    private Duration pitKeepAlive;
+
+    @Value("${catalogue.export.batch-size:1000}")
+    private int exportBatchSize;
+
+    @Value("${catalogue.export.keep-alive:5m}")
+    private Duration exportKeepAlive;
+
+    @Value("${catalogue.stock.retry-on-conflict:5}")
+    private int stockRetryOnConflict;
+
+    @Value("${catalogue.stock.idempotency-window:1h}")
+    private Duration idempotencyWindow;
 
     // Esta clase (y bean) es la unica que usan directamente los servicios para
     // acceder a los datos.
     private final IBookOpenSearchRepository bookRepository;
     private final ElasticsearchOperations elasticsearchOperations;
+    private final Cache<String, Optional<BookIndex>> bookByIdCache;
+    private final Cache<BooksQueryKey, BooksQueryResponse> booksQueryCache;
+    private final BookFacets bookFacets;
 
-    private final String[] descriptionSearchFields = {"description", "description._2gram", "description._3gram"};
+    // Version de la cache de resultados de esta instancia: sube con cada alta, cambio o borrado local y la invalida
+    // en bloque. Los cambios de stock solo retiran las paginas afectadas (evictPagesWith).
+    // La version comun a todas las instancias, la que se publica a los clientes, es CatalogueVersion
+    private final AtomicLong catalogueVersion = new AtomicLong();
 
     public BookIndex save(BookIndex BookIndex) {
-        return bookRepository.save(BookIndex);
+        BookIndex saved = bookRepository.save(withSortId(BookIndex));
+        bookByIdCache.invalidate(saved.getId());
+        catalogueVersion.incrementAndGet();
+        return saved;
+    }
+
+    /**
+     * El id se genera aqui si no viene (como en la carga masiva) para copiarlo a sortId en la misma escritura.
+     */
+    private static BookIndex withSortId(BookIndex book) {
+        if (book.getId() == null) {
+            book.setId(UUID.randomUUID().toString().replace("-", ""));
+        }
+        book.setSortId(book.getId());
+        return book;
     }
 
     public Boolean delete(BookIndex BookIndex) {
         bookRepository.delete(BookIndex);
+        bookByIdCache.invalidate(BookIndex.getId());
+        catalogueVersion.incrementAndGet();
         return Boolean.TRUE;
     }
 
     public Optional<BookIndex> findById(String id) {
-        return bookRepository.findById(id);
+        return bookByIdCache.get(id, key -> load(List.of(key)).get(key));
     }
 
-    @SneakyThrows
-    public BooksQueryResponse findBooks(String title, String author, String editorial, String genres, String rating, String price, Boolean aggregate) {
+    /**
+     * Lectura por id sin pasar por la cache, para las respuestas que se publican con la version del catalogo: una
+     * entrada cacheada puede ser anterior a esa version y el cliente la tomaria por actual.
+     */
+    public Optional<BookIndex> findCurrentById(String id) {
+        return load(List.of(id)).get(id);
+    }
 
-        BoolQueryBuilder querySpec = QueryBuilders.boolQuery();
+    /**
+     * Lectura de varios libros por id: los que estan en la cache no salen a OpenSearch y el resto se
+     * piden en un unico mget. Los ids inexistentes tambien se cachean (Optional vacio), igual que en findById.
+     */
+    public Map<String, Optional<BookIndex>> findAllById(Collection<String> ids) {
+        return bookByIdCache.getAll(ids, this::load);
+    }
+
+    /**
+     * mget sin stockOps. Es de tiempo real como un get: un libro recien creado se encuentra aunque el indice no
+     * se haya refrescado.
+     */
+    private Map<String, Optional<BookIndex>> load(Collection<? extends String> ids) {
+        List<String> pending = new ArrayList<>(ids);
+        // mget devuelve un elemento por id y en el mismo orden, tambien para los que no existen
+        List<MultiGetItem<BookIndex>> items = elasticsearchOperations.multiGet(
+                new NativeSearchQueryBuilder().withIds(pending).withSourceFilter(WITHOUT_STOCK_OPS).build(),
+                BookIndex.class, elasticsearchOperations.getIndexCoordinatesFor(BookIndex.class));
+        Map<String, Optional<BookIndex>> loaded = new HashMap<>();
+        for (int i = 0; i < pending.size(); i++) {
+            if (items.get(i).isFailed()) {
+                // Un error no se cachea como libro inexistente
+                throw new IllegalStateException("No se ha podido leer el libro " + pending.get(i));
+            }
+            loaded.put(pending.get(i), Optional.ofNullable(items.get(i).getItem()));
+        }
+        return loaded;
+    }
+
+    /**
+     * Indexa un lote de libros en una unica peticion bulk, sin esperar al refresco del indice.
+     * Devuelve los errores por id de documento; vacio si todo el lote se indexo.
+     */
+    public Map<String, String> bulkSave(List<BookIndex> books) {
+        List<IndexQuery> queries = books.stream()
+                .map(BookOpenSearchRepository::withSortId)
+                .map(book -> new IndexQueryBuilder().withId(book.getId()).withObject(book).build())
+                .toList();
+        try {
+            elasticsearchOperations.bulkIndex(queries, BULK_OPTIONS, elasticsearchOperations.getIndexCoordinatesFor(BookIndex.class));
+            return Map.of();
+        } catch (BulkFailureException e) {
+            Map<String, String> failures = new HashMap<>();
+            e.getFailedDocuments().forEach((id, details) -> failures.put(id, details.errorMessage()));
+            return failures;
+        } finally {
+            bookByIdCache.invalidateAll(books.stream().map(BookIndex::getId).toList());
+            catalogueVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Suma delta al stock del libro en una unica peticion de update con script. OpenSearch serializa las
+     * escrituras sobre el documento y reintenta ante conflictos de version, por lo que no se pierden compras
+     * concurrentes.
+     */
+    public StockUpdateResult adjustStock(String id, int delta) {
+        return adjustStock(id, delta, null);
+    }
+
+    /**
+     * Con idempotencyKey, el ajuste se aplica como mucho una vez por clave mientras la clave siga en el libro
+     * (catalogue.stock.idempotency-window desde que se aplico), de modo que un cliente puede reintentar sin duplicar.
+     */
+    public StockUpdateResult adjustStock(String id, int delta, String idempotencyKey) {
+        UpdateQuery query = idempotencyKey == null
+                ? stockUpdate(id, ADJUST_STOCK_SCRIPT, "delta", delta)
+                : stockUpdate(id, IDEMPOTENT_ADJUST_STOCK_SCRIPT,
+                        Map.<String, Object>of("delta", delta, "key", idempotencyKey,
+                                "now", System.currentTimeMillis(), "window", idempotencyWindow.toMillis()));
+        UpdateResponse response;
+        try {
+            response = elasticsearchOperations.update(query, elasticsearchOperations.getIndexCoordinatesFor(BookIndex.class));
+        } catch (DataAccessException e) {
+            // OpenSearch responde 404 (document_missing) si el libro no existe
+            if (!bookRepository.existsById(id)) {
+                return StockUpdateResult.NOT_FOUND;
+            }
+            throw e;
+        }
+        if (response.getResult() == UpdateResponse.Result.NOOP) {
+            return StockUpdateResult.INSUFFICIENT_STOCK;
+        }
+        bookByIdCache.invalidate(id);
+        evictPagesWith(Set.of(id));
+        return StockUpdateResult.UPDATED;
+    }
+
+    /**
+     * Reserva (descuenta) el stock de varios libros a la vez: todo o nada.
+     * Primero un multi-get valida existencia, visibilidad y stock sin escribir nada; despues un unico bulk
+     * update descuenta todas las lineas. Si alguna falla en el bulk (otra compra se adelanto), se devuelve el
+     * stock de las lineas que si se descontaron. Devuelve los fallos; vacio si la reserva se completo.
+     */
+    public List<StockReservationFailure> reserveStock(Map<String, Integer> quantities) {
+        return reserveStock(quantities, null);
+    }
+
+    /**
+     * Con reservationId la reserva es idempotente por libro (como adjustStock con clave): un reintento con el
+     * mismo id no descuenta dos veces, y {@link #releaseStock(Map, String)} con ese id la deshace aunque el
+     * cliente no sepa si llego a aplicarse. Una reserva ya liberada no se puede repetir (RELEASED).
+     */
+    public List<StockReservationFailure> reserveStock(Map<String, Integer> quantities, String reservationId) {
+        IndexCoordinates index = elasticsearchOperations.getIndexCoordinatesFor(BookIndex.class);
+        List<String> ids = new ArrayList<>(quantities.keySet());
+        // mget devuelve un elemento por id y en el mismo orden, tambien para los que no existen
+        List<MultiGetItem<BookIndex>> current = elasticsearchOperations.multiGet(
+                new NativeSearchQueryBuilder().withIds(ids).withSourceFilter(RESERVATION_CHECK).build(), BookIndex.class, index);
+
+        List<StockReservationFailure> failures = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i);
+            BookIndex book = current.get(i).getItem();
+            if (book == null) {
+                failures.add(new StockReservationFailure(id, "NOT_FOUND", null));
+            } else if (reservationId != null && hasStockKey(book, releaseKey(reservationId))) {
+                failures.add(new StockReservationFailure(id, "RELEASED", null));
+            } else if (reservationId != null && hasStockKey(book, reserveKey(reservationId))) {
+                // Reintento de una reserva ya aplicada en este libro: el stock ya esta descontado
+                continue;
+            } else if (!Boolean.TRUE.equals(book.getVisible())) {
+                failures.add(new StockReservationFailure(id, "NOT_VISIBLE", null));
+            } else if (book.getStock() == null || book.getStock() < quantities.get(id)) {
+                failures.add(new StockReservationFailure(id, "INSUFFICIENT_STOCK", book.getStock()));
+            }
+        }
+        if (!failures.isEmpty()) {
+            return failures;
+        }
+
+        try {
+            elasticsearchOperations.bulkUpdate(reservationId == null
+                    ? stockUpdates(quantities, RESERVE_STOCK_SCRIPT, "quantity")
+                    : reservationUpdates(quantities, IDEMPOTENT_RESERVE_STOCK_SCRIPT, reservationId), BULK_OPTIONS, index);
+        } catch (BulkFailureException e) {
+            Map<String, Integer> applied = new HashMap<>(quantities);
+            applied.keySet().removeAll(e.getFailedDocuments().keySet());
+            log.warn("Stock reservation failed for {}, releasing {}", e.getFailedDocuments().keySet(), applied.keySet());
+            if (!applied.isEmpty()) {
+                elasticsearchOperations.bulkUpdate(reservationId == null
+                        ? stockUpdates(applied, ADJUST_STOCK_SCRIPT, "delta")
+                        : reservationUpdates(applied, IDEMPOTENT_RELEASE_STOCK_SCRIPT, reservationId), BULK_OPTIONS, index);
+            }
+            e.getFailedDocuments().forEach((id, details) -> failures.add(new StockReservationFailure(id, failureReason(details.errorMessage()), null)));
+        } finally {
+            bookByIdCache.invalidateAll(quantities.keySet());
+            evictPagesWith(quantities.keySet());
+        }
+        return failures;
+    }
+
+    /**
+     * Devuelve al stock las cantidades de una reserva que no llego a completarse (compensacion).
+     */
+    public void releaseStock(Map<String, Integer> quantities) {
+        releaseStock(quantities, null);
+    }
+
+    /**
+     * Con reservationId solo se devuelve el stock de los libros en los que esa reserva se aplico, y una sola vez
+     * aunque la liberacion se repita. Es seguro llamarlo tras un timeout de la reserva.
+     */
+    public void releaseStock(Map<String, Integer> quantities, String reservationId) {
+        try {
+            elasticsearchOperations.bulkUpdate(reservationId == null
+                            ? stockUpdates(quantities, ADJUST_STOCK_SCRIPT, "delta")
+                            : reservationUpdates(quantities, IDEMPOTENT_RELEASE_STOCK_SCRIPT, reservationId), BULK_OPTIONS,
+                    elasticsearchOperations.getIndexCoordinatesFor(BookIndex.class));
+        } finally {
+            bookByIdCache.invalidateAll(quantities.keySet());
+            evictPagesWith(quantities.keySet());
+        }
+    }
+
+    /**
+     * Un cambio de stock no altera que libros casan con una busqueda (no se filtra por stock), solo el stock que
+     * muestran. Por eso no sube la version y solo se retiran de la cache las paginas que contienen esos libros:
+     * cada compra no vacia la cache de busquedas entera.
+     */
+    private void evictPagesWith(Set<String> ids) {
+        booksQueryCache.asMap().values().removeIf(page -> page.getBooks() != null
+                && page.getBooks().stream().anyMatch(book -> ids.contains(book.getId())));
+    }
+
+    private List<UpdateQuery> stockUpdates(Map<String, Integer> quantities, String script, String param) {
+        return quantities.entrySet().stream()
+                .map(entry -> stockUpdate(entry.getKey(), script, param, entry.getValue()))
+                .toList();
+    }
+
+    private List<UpdateQuery> reservationUpdates(Map<String, Integer> quantities, String script, String reservationId) {
+        long now = System.currentTimeMillis();
+        return quantities.entrySet().stream()
+                .map(entry -> stockUpdate(entry.getKey(), script, Map.<String, Object>of(
+                        "quantity", entry.getValue(),
+                        "key", reserveKey(reservationId),
+                        "releaseKey", releaseKey(reservationId),
+                        "now", now,
+                        "window", idempotencyWindow.toMillis())))
+                .toList();
+    }
+
+    // Igual que los scripts: vale una clave de stockKeys dentro de la ventana o una del formato anterior sin migrar
+    private boolean hasStockKey(BookIndex book, String key) {
+        Long appliedAt = book.getStockKeys() == null ? null : book.getStockKeys().get(key);
+        if (appliedAt != null) {
+            return appliedAt >= System.currentTimeMillis() - idempotencyWindow.toMillis();
+        }
+        return book.getStockOps() != null && book.getStockOps().contains(key);
+    }
+
+    private static String reserveKey(String reservationId) {
+        return "reserve:" + reservationId;
+    }
 
-        if (!StringUtils.isEmpty(title)) {
-            querySpec.must(QueryBuilders.wildcardQuery("title", "*" + title.toLowerCase() + "*"));
+    private static String releaseKey(String reservationId) {
+        return "release:" + reservationId;
+    }
+
+    private static String failureReason(String errorMessage) {
+        if (errorMessage != null && errorMessage.contains("insufficient_stock")) {
+            return "INSUFFICIENT_STOCK";
+        }
+        if (errorMessage != null && errorMessage.contains("reservation_released")) {
+            return "RELEASED";
         }
+        return "ERROR";
+    }
+
+    private UpdateQuery stockUpdate(String id, String script, String param, int value) {
+        return stockUpdate(id, script, Map.<String, Object>of(param, value));
+    }
 
-        if (!StringUtils.isEmpty(author)) {
-            querySpec.must(QueryBuilders.matchQuery("author", author));
+    private UpdateQuery stockUpdate(String id, String script, Map<String, Object> params) {
+        return UpdateQuery.builder(id)
+                .withScript(script)
+                .withScriptType(ScriptType.INLINE)
+                .withLang("painless")
+                .withParams(params)
+                .withRetryOnConflict(stockRetryOnConflict)
+                .build();
+    }
+
+    /**
+     * Las primeras paginas se sirven desde la cache de resultados; las paginas con cursor van siempre a OpenSearch.
+     * La primera pagina no abre PIT: su cursor solo lleva la posicion, asi que se puede cachear y compartir. El PIT
+     * se abre al pedir la segunda pagina y es de ese cliente: viaja en sus cursores y se cierra en su ultima pagina.
+     */
+    public BooksQueryResponse findBooks(BooksSearchRequest request) {
+        int size = pageSize(request.getSize());
+        if (!StringUtils.isEmpty(request.getCursor())) {
+            return search(request, size);
         }
+        return booksQueryCache.get(BooksQueryKey.of(request, size, catalogueVersion.get()), key -> search(request, size));
+    }
+
+    long getQueryCacheVersion() {
+        return catalogueVersion.get();
+    }
+
+    @SneakyThrows
+    private BooksQueryResponse search(BooksSearchRequest request, int size) {
 
-        querySpec.must(QueryBuilders.termQuery("visible", true));
+        NativeSearchQueryBuilder nativeSearchQueryBuilder = new NativeSearchQueryBuilder().withQuery(buildQuery(request));
 
-        NativeSearchQueryBuilder nativeSearchQueryBuilder = new NativeSearchQueryBuilder().withQuery(querySpec);
+        BooksCursor cursor = StringUtils.isEmpty(request.getCursor()) ? null : BooksCursor.decode(request.getCursor());
 
+        // Las facetas solo se calculan en la primera pagina, en la misma peticion que los libros
+        boolean aggregate = Boolean.TRUE.equals(request.getAggregate()) && cursor == null;
         if (aggregate) {
-            nativeSearchQueryBuilder.withAggregations(AggregationBuilders.terms("Title Aggregation").field("title").size(1000));
-            // Mas info sobre size 1000 - https://www.elastic.co/guide/en/elasticsearch/reference/7.10/search-aggregations-bucket-terms-aggregation.html#search-aggregations-bucket-terms-aggregation-size
-            nativeSearchQueryBuilder.withMaxResults(0);
+            nativeSearchQueryBuilder.withAggregations(bookFacets.aggregations().toArray(new AbstractAggregationBuilder<?>[0]));
         }
 
-        //Opcionalmente, podemos paginar los resultados
-        //nativeSearchQueryBuilder.withPageable(PageRequest.of(0, 10));
-        //Pagina 0, 10 elementos por pagina. El tam de pagina puede venir como qParam y tambien el numero de pagina
+        // Paginacion con search_after sobre un orden total, de modo que el coste no crece con la profundidad como
+        // ocurre con from/size. A partir de la segunda pagina se fija un PIT propio del cliente.
+        String pitId = null;
+        boolean openedHere = false;
+        if (cursor != null) {
+            pitId = cursor.getPitId();
+            if (pitId == null) {
+                pitId = elasticsearchOperations.openPointInTime(elasticsearchOperations.getIndexCoordinatesFor(BookIndex.class), pitKeepAlive, Boolean.FALSE);
+                openedHere = true;
+            }
+            nativeSearchQueryBuilder
+                    .withPointInTime(new Query.PointInTime(pitId, pitKeepAlive))
+                    .withSearchAfter(cursor.getSearchAfter());
+        }
 
-        Query query = nativeSearchQueryBuilder.build();
-        SearchHits<BookIndex> result = elasticsearchOperations.search(query, BookIndex.class);
+        // Un libro de mas para saber si hay siguiente pagina sin tener que pedir una pagina vacia
+        nativeSearchQueryBuilder
+                .withSort(PAGINATION_SORT)
+                .withMaxResults(size + 1)
+                .withTrackTotalHits(false);
+        if (request.getFields() != null) {
+            // Solo se leen de _source los campos pedidos: menos red y menos deserializacion
+            nativeSearchQueryBuilder.withSourceFilter(new FetchSourceFilterBuilder()
+                    .withIncludes(request.getFields().toArray(new String[0]))
+                    .build());
+        } else {
+            nativeSearchQueryBuilder.withSourceFilter(WITHOUT_STOCK_OPS);
+        }
 
-        List<AggregationDetails> responseAggs = new LinkedList<>();
+        Query query = nativeSearchQueryBuilder.build();
+        SearchHits<BookIndex> result;
+        try {
+            result = elasticsearchOperations.search(query, BookIndex.class);
+        } catch (RuntimeException e) {
+            if (openedHere) {
+                closePointInTime(pitId);
+            }
+            throw e;
+        }
 
-        if (result.hasAggregations()) {
+        Map<String, List<AggregationDetails>> responseAggs = new LinkedHashMap<>();
+        if (aggregate && result.hasAggregations()) {
             OpenSearchAggregations aggregations = (OpenSearchAggregations) result.getAggregations();
-            Map<String, Aggregation> aggs = Objects.requireNonNull(aggregations).aggregations().asMap();
-            ParsedStringTerms titleAgg = (ParsedStringTerms) aggs.get("Title Aggregation");
-
-            //Componemos una URI basada en serverFullAddress y query params para cada argumento, siempre que no viniesen vacios
-            String queryParams = getQueryParams(title, author, editorial);
-            titleAgg.getBuckets()
-                    .forEach(
-                            bucket -> responseAggs.add(
-                                    new AggregationDetails(
-                                            bucket.getKey().toString(),
-                                            (int) bucket.getDocCount(),
-                                            serverFullAddress + "/book?title=" + bucket.getKey() + queryParams)));
-        }
-        return new BooksQueryResponse(result.getSearchHits().stream().map(SearchHit::getContent).toList(), responseAggs);
-    }
-
-    private String getQueryParams(String title, String author, String editorial) {
-        String queryParams = (StringUtils.isEmpty(title) ? "" : "&title=" + title)
-                + (StringUtils.isEmpty(author) ? "" : "&author=" + author)
-                + (StringUtils.isEmpty(author) ? "" : "&editorial=" + editorial);
-        // Eliminamos el ultimo & si existe
-        return queryParams.endsWith("&") ? queryParams.substring(0, queryParams.length() - 1) : queryParams;
+            responseAggs = bookFacets.parse(Objects.requireNonNull(aggregations).aggregations(), request);
+        }
+
+        List<SearchHit<BookIndex>> hits = result.getSearchHits();
+        String currentPitId = pitId != null && result.getPointInTimeId() != null ? result.getPointInTimeId() : pitId;
+        String nextCursor = null;
+        if (hits.size() > size) {
+            hits = hits.subList(0, size);
+            nextCursor = new BooksCursor(currentPitId, hits.getLast().getSortValues()).encode();
+        } else if (currentPitId != null) {
+            // Ultima pagina: el PIT solo lo conoce este cliente
+            closePointInTime(currentPitId);
+        }
+        return new BooksQueryResponse(hits.stream().map(SearchHit::getContent).toList(), responseAggs, nextCursor);
+    }
+
+    private void closePointInTime(String pitId) {
+        try {
+            elasticsearchOperations.closePointInTime(pitId);
+        } catch (RuntimeException e) {
+            // Si no se puede cerrar caduca solo tras keepAlive
+            log.warn("No se pudo cerrar el PIT: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Recorre todos los libros visibles por lotes, ordenados por sortId dentro de un unico PIT.
+     * Tras cada lote se entrega un checkpoint con el PIT y la posicion, con el que se puede reanudar la
+     * exportacion en otra peticion mientras el PIT siga vivo (catalogue.export.keep-alive). El PIT se cierra
+     * cuando la exportacion termina; si se interrumpe se deja abierto para poder reanudarla.
+     */
+    public void exportBooks(String checkpoint, BiConsumer<List<BookIndex>, String> batchConsumer) {
+        BooksCursor resume = StringUtils.isEmpty(checkpoint) ? null : BooksCursor.decode(checkpoint);
+        List<Object> searchAfter = resume == null ? null : resume.getSearchAfter();
+        String pitId = resume != null
+                ? resume.getPitId()
+                : elasticsearchOperations.openPointInTime(elasticsearchOperations.getIndexCoordinatesFor(BookIndex.class), exportKeepAlive, Boolean.FALSE);
+        if (pitId == null) {
+            throw new IllegalArgumentException("Checkpoint no valido");
+        }
+        while (true) {
+            NativeSearchQueryBuilder nativeSearchQueryBuilder = new NativeSearchQueryBuilder()
+                    .withQuery(buildQuery(new BooksSearchRequest()))
+                    .withPointInTime(new Query.PointInTime(pitId, exportKeepAlive))
+                    .withSort(EXPORT_SORT)
+                    .withSourceFilter(WITHOUT_STOCK_OPS)
+                    .withMaxResults(exportBatchSize)
+                    .withTrackTotalHits(false);
+            if (searchAfter != null) {
+                nativeSearchQueryBuilder.withSearchAfter(searchAfter);
+            }
+
+            SearchHits<BookIndex> result = elasticsearchOperations.search(nativeSearchQueryBuilder.build(), BookIndex.class);
+            List<SearchHit<BookIndex>> hits = result.getSearchHits();
+            if (result.getPointInTimeId() != null) {
+                pitId = result.getPointInTimeId();
+            }
+            if (hits.isEmpty()) {
+                closePointInTime(pitId);
+                return;
+            }
+            searchAfter = hits.get(hits.size() - 1).getSortValues();
+            batchConsumer.accept(hits.stream().map(SearchHit::getContent).toList(), new BooksCursor(pitId, searchAfter).encode());
+            if (hits.size() < exportBatchSize) {
+                closePointInTime(pitId);
+                return;
+            }
+        }
+    }
+
+    BoolQueryBuilder buildQuery(BooksSearchRequest request) {
+
+        BoolQueryBuilder querySpec = QueryBuilders.boolQuery();
+
+        if (!StringUtils.isEmpty(request.getTitle())) {
+            TitleSearchMode titleMode = request.getTitleMode() != null ? request.getTitleMode() : TitleSearchMode.PREFIX;
+            querySpec.must(titleMode.query(request.getTitle()));
+        }
+
+        if (!StringUtils.isEmpty(request.getAuthor())) {
+            querySpec.must(QueryBuilders.matchQuery(Consts.AUTHOR, request.getAuthor()));
+        }
+
+        // Los filtros no puntuan y OpenSearch puede cachearlos, por eso van en contexto filter
+        querySpec.filter(QueryBuilders.termQuery(Consts.VISIBLE, true));
+
+        if (!StringUtils.isEmpty(request.getEditorial())) {
+            querySpec.filter(QueryBuilders.termsQuery(Consts.EDITORIAL, splitValues(request.getEditorial())));
+        }
+
+        if (!StringUtils.isEmpty(request.getGenres())) {
+            querySpec.filter(QueryBuilders.termsQuery(Consts.GENRES, splitValues(request.getGenres())));
+        }
+
+        RangeFilterParser.parse(Consts.RATING, request.getRating()).forEach(statement -> querySpec.filter(toFilter(statement)));
+        RangeFilterParser.parse(Consts.PRICE, request.getPrice()).forEach(statement -> querySpec.filter(toFilter(statement)));
+        return querySpec;
+    }
+
+    private int pageSize(Integer size) {
+        if (size == null) {
+            return defaultPageSize;
+        }
+        if (size < 1 || size > maxPageSize) {
+            throw new IllegalArgumentException("El tamaño de pagina debe estar entre 1 y " + maxPageSize);
+        }
+        return size;
+    }
+
+    private List<String> splitValues(String values) {
+        return Arrays.stream(values.split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .toList();
+    }
+
+    private QueryBuilder toFilter(SearchStatement statement) {
+        return switch (statement.getOperation()) {
+            case GREATER_THAN -> QueryBuilders.rangeQuery(statement.getKey()).gt(statement.getValue());
+            case GREATER_THAN_EQUAL -> QueryBuilders.rangeQuery(statement.getKey()).gte(statement.getValue());
+            case LESS_THAN -> QueryBuilders.rangeQuery(statement.getKey()).lt(statement.getValue());
+            case LESS_THAN_EQUAL -> QueryBuilders.rangeQuery(statement.getKey()).lte(statement.getValue());
+            case NOT_EQUAL -> QueryBuilders.boolQuery().mustNot(QueryBuilders.termQuery(statement.getKey(), statement.getValue()));
+            case EQUAL -> QueryBuilders.termQuery(statement.getKey(), statement.getValue());
+            default -> throw new IllegalArgumentException("Operacion no soportada como filtro: " + statement.getOperation());
+        };
     }
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.backend.ms_books_catalogue.repository;
+
+import com.backend.ms_books_catalogue.dtos.BooksSearchRequest;
+import com.backend.ms_books_catalogue.utils.TitleSearchMode;
+import lombok.Value;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Clave de la cache de resultados de busqueda. Normaliza los parametros para que variantes equivalentes
+ * de la misma busqueda compartan entrada: se recortan espacios, null y vacio son lo mismo, y titulo y autor
+ * (campos analizados) se pasan a minusculas. Editorial y generos se comparan como keyword, que distingue
+ * mayusculas, asi que solo se recortan.
+ * Incluye la version del catalogo: cualquier escritura la incrementa y deja inalcanzables las entradas anteriores.
+ */
+@Value
+public class BooksQueryKey {
+
+    String title;
+    TitleSearchMode titleMode;
+    String author;
+    String editorial;
+    String genres;
+    String rating;
+    String price;
+    boolean aggregate;
+    int size;
+    Set<String> fields;
+    long catalogueVersion;
+
+    public static BooksQueryKey of(BooksSearchRequest request, int size, long catalogueVersion) {
+        return new BooksQueryKey(
+                lowerCase(request.getTitle()),
+                request.getTitleMode() != null ? request.getTitleMode() : TitleSearchMode.PREFIX,
+                lowerCase(request.getAuthor()),
+                trim(request.getEditorial()),
+                trim(request.getGenres()),
+                compact(request.getRating()),
+                compact(request.getPrice()),
+                Boolean.TRUE.equals(request.getAggregate()),
+                size,
+                request.getFields(),
+                catalogueVersion);
+    }
+
+    private static String trim(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.trim();
+    }
+
+    private static String lowerCase(String value) {
+        String trimmed = trim(value);
+        return trimmed != null ? trimmed.toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static String compact(String value) {
+        String trimmed = trim(value);
+        return trimmed != null ? trimmed.replace(" ", "") : null;
+    }
+}
@@ -0,0 +1,90 @@
+package com.backend.ms_books_catalogue.repository;
+
+import com.backend.ms_books_catalogue.model.BookIndex;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.opensearch.client.Request;
+import org.opensearch.client.Response;
+import org.opensearch.client.RestHighLevelClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+/**
+ * Version del catalogo comun a todas las instancias: la suma del max_seq_no de los shards primarios del indice.
+ * OpenSearch asigna un _seq_no nuevo a cada escritura (alta, cambio, borrado o ajuste de stock), asi que la
+ * version sube con cualquier cambio venga de la instancia que venga y sobrevive a los reinicios. Si el indice se
+ * recrea puede retroceder; los clientes lo tratan como un cambio. Pasado catalogue.version.refresh-interval se
+ * relee en segundo plano y mientras tanto se sirve la ultima leida: ninguna lectura de GET /books/{id} espera a
+ * _stats salvo la primera. Una version algo antigua solo hace que los clientes invaliden antes. Si las relecturas
+ * fallan durante catalogue.version.max-age la version caduca y current() devuelve -1.
+ */
+@Component
+@Slf4j
+public class CatalogueVersion {
+
+    private static final String FILTER_PATH = "indices.*.shards.*.routing.primary,indices.*.shards.*.seq_no.max_seq_no";
+
+    private final RestHighLevelClient client;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final JsonMapper jsonMapper;
+    private final LoadingCache<String, Long> versions;
+
+    public CatalogueVersion(
+            RestHighLevelClient client,
+            ElasticsearchOperations elasticsearchOperations,
+            JsonMapper jsonMapper,
+            @Value("${catalogue.version.refresh-interval:250ms}") Duration refreshInterval,
+            @Value("${catalogue.version.max-age:5s}") Duration maxAge) {
+        this.client = client;
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.jsonMapper = jsonMapper;
+        this.versions = Caffeine.newBuilder()
+                .refreshAfterWrite(refreshInterval)
+                .expireAfterWrite(maxAge)
+                .build(this::read);
+    }
+
+    /**
+     * Version actual, o -1 si no se ha podido leer (los clientes no deben fiarse de sus caches).
+     */
+    public long current() {
+        try {
+            return versions.get(elasticsearchOperations.getIndexCoordinatesFor(BookIndex.class).getIndexName());
+        } catch (RuntimeException e) {
+            log.warn("No se ha podido leer la version del catalogo: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    private long read(String index) {
+        Request request = new Request("GET", "/" + index + "/_stats");
+        request.addParameter("level", "shards");
+        request.addParameter("filter_path", FILTER_PATH);
+        try {
+            Response response = client.getLowLevelClient().performRequest(request);
+            try (InputStream body = response.getEntity().getContent()) {
+                long version = 0;
+                for (JsonNode copies : jsonMapper.readTree(body).path("indices").path(index).path("shards")) {
+                    for (JsonNode copy : copies) {
+                        if (copy.path("routing").path("primary").asBoolean()) {
+                            // max_seq_no es -1 en un shard vacio: se suma el numero de escrituras
+                            version += copy.path("seq_no").path("max_seq_no").asLong(-1) + 1;
+                        }
+                    }
+                }
+                return version;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
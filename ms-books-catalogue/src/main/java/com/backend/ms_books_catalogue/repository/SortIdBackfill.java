@@ -0,0 +1,56 @@
+package com.backend.ms_books_catalogue.repository;
+
+import com.backend.ms_books_catalogue.model.BookIndex;
+import com.backend.ms_books_catalogue.utils.Consts;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.opensearch.data.client.orhlc.NativeSearchQueryBuilder;
+import org.opensearch.index.query.QueryBuilders;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.query.ByQueryResponse;
+import org.springframework.data.elasticsearch.core.query.ScriptType;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.stereotype.Component;
+
+/**
+ * Los libros indexados antes de existir sortId no lo tienen, y sin el la paginacion vuelve a depender del orden
+ * de los empates. Al arrancar se anade el campo al mapping y se copia el id en los libros que no lo tienen
+ * (update_by_query). Es idempotente: con todo el indice migrado no actualiza nada.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SortIdBackfill {
+
+    private final ElasticsearchOperations elasticsearchOperations;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        try {
+            IndexOperations indexOps = elasticsearchOperations.indexOps(BookIndex.class);
+            if (!indexOps.exists()) {
+                return;
+            }
+            indexOps.putMapping(indexOps.createMapping());
+            UpdateQuery query = UpdateQuery.builder(new NativeSearchQueryBuilder()
+                            .withQuery(QueryBuilders.boolQuery().mustNot(QueryBuilders.existsQuery(Consts.SORT_ID)))
+                            .build())
+                    .withScript("ctx._source." + Consts.SORT_ID + " = ctx._id")
+                    .withScriptType(ScriptType.INLINE)
+                    .withLang("painless")
+                    .withAbortOnVersionConflict(false)
+                    .build();
+            ByQueryResponse response = elasticsearchOperations.updateByQuery(query,
+                    elasticsearchOperations.getIndexCoordinatesFor(BookIndex.class));
+            if (response.getUpdated() > 0) {
+                log.info("sortId copiado en {} libros", response.getUpdated());
+            }
+        } catch (RuntimeException e) {
+            // La aplicacion funciona igual; solo los libros sin sortId quedan al final y sin desempate
+            log.warn("No se pudo completar sortId en el indice: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.backend.ms_books_catalogue.service;
+
+import com.backend.ms_books_catalogue.dtos.CreateBookIndexRequest;
+import com.backend.ms_books_catalogue.model.BookIndex;
+import com.backend.ms_books_catalogue.repository.BookOpenSearchRepository;
+import lombok.extern.slf4j.Slf4j;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Carga masiva de libros para una unica peticion de POST /books/_bulk.
+ * Lee el cuerpo (NDJSON o array JSON) documento a documento, aplica la misma validacion que el alta individual
+ * y agrupa los libros validos en peticiones bulk limitadas por numero de documentos y por bytes.
+ * Como mucho hay {@code concurrency} lotes en vuelo: si se alcanza el limite se deja de leer la entrada
+ * hasta que termine alguno, de modo que nunca se tiene la subida completa en memoria.
+ * El resultado de cada documento se escribe en la salida como NDJSON segun se conoce.
+ */
+@Slf4j
+class BookBulkIngestion {
+
+    private final BookOpenSearchService service;
+    private final BookOpenSearchRepository repository;
+    private final JsonMapper jsonMapper;
+    private final int maxActions;
+    private final long maxBytes;
+    private final int concurrency;
+    private final Semaphore inFlight;
+
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private OutputStream outputStream;
+
+    BookBulkIngestion(BookOpenSearchService service, BookOpenSearchRepository repository, JsonMapper jsonMapper,
+                      int maxActions, long maxBytes, int concurrency) {
+        this.service = service;
+        this.repository = repository;
+        this.jsonMapper = jsonMapper;
+        this.maxActions = maxActions;
+        this.maxBytes = maxBytes;
+        this.concurrency = concurrency;
+        this.inFlight = new Semaphore(concurrency);
+    }
+
+    void run(InputStream inputStream, OutputStream outputStream) {
+        this.outputStream = outputStream;
+        long line = 0;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             JsonParser parser = jsonMapper.createParser(inputStream)) {
+
+            Batch batch = new Batch();
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+
+            try {
+                while (token == JsonToken.START_OBJECT) {
+                    line++;
+                    CreateBookIndexRequest request = jsonMapper.readValue(parser, CreateBookIndexRequest.class);
+                    BookIndex book = validate(request);
+                    if (book == null) {
+                        failed.incrementAndGet();
+                        writeResult(line, null, 400, "Datos incorrectos");
+                    } else {
+                        book.setId(UUID.randomUUID().toString().replace("-", ""));
+                        batch.add(line, book, jsonMapper.writeValueAsBytes(book).length);
+                        if (batch.size() >= maxActions || batch.bytes >= maxBytes) {
+                            submit(executor, batch);
+                            batch = new Batch();
+                        }
+                    }
+                    token = parser.nextToken();
+                }
+                if (token != null && !(array && token == JsonToken.END_ARRAY)) {
+                    throw new IllegalArgumentException("Se esperaba un objeto JSON en el documento " + (line + 1));
+                }
+            } catch (RuntimeException e) {
+                // Un documento mal formado impide seguir leyendo: lo indexado hasta ahora se mantiene
+                log.warn("Bulk ingestion stopped at document {}: {}", line + 1, e.getMessage());
+                writeResult(line + 1, null, 400, "JSON no valido: " + e.getMessage());
+            }
+
+            if (batch.size() > 0) {
+                submit(executor, batch);
+            }
+            inFlight.acquireUninterruptibly(concurrency);
+        }
+
+        writeLine(Map.of("indexed", indexed.get(), "failed", failed.get()));
+        log.info("Bulk ingestion finished: {} indexed, {} failed", indexed.get(), failed.get());
+    }
+
+    private BookIndex validate(CreateBookIndexRequest request) {
+        try {
+            return service.toBookIndex(request);
+        } catch (RuntimeException e) {
+            // La validacion original asume campos no nulos; un campo ausente es un documento invalido
+            return null;
+        }
+    }
+
+    private void submit(ExecutorService executor, Batch batch) {
+        inFlight.acquireUninterruptibly();
+        executor.execute(() -> {
+            try {
+                Map<String, String> failures = repository.bulkSave(batch.books);
+                for (int i = 0; i < batch.books.size(); i++) {
+                    String id = batch.books.get(i).getId();
+                    String error = failures.get(id);
+                    if (error == null) {
+                        indexed.incrementAndGet();
+                        writeResult(batch.lines.get(i), id, 201, null);
+                    } else {
+                        failed.incrementAndGet();
+                        writeResult(batch.lines.get(i), id, 500, error);
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.error("Bulk request failed", e);
+                failed.addAndGet(batch.size());
+                batch.lines.forEach(line -> writeResult(line, null, 500, e.getMessage()));
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void writeResult(long line, String id, int status, String error) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("item", line);
+        if (id != null) {
+            result.put("id", id);
+        }
+        result.put("status", status);
+        if (error != null) {
+            result.put("error", error);
+        }
+        writeLine(result);
+    }
+
+    private synchronized void writeLine(Map<String, Object> content) {
+        try {
+            outputStream.write(jsonMapper.writeValueAsBytes(content));
+            outputStream.write("\n".getBytes(StandardCharsets.UTF_8));
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class Batch {
+        private final List<Long> lines = new ArrayList<>();
+        private final List<BookIndex> books = new ArrayList<>();
+        private long bytes;
+
+        void add(long line, BookIndex book, int size) {
+            lines.add(line);
+            books.add(book);
+            bytes += size;
+        }
+
+        int size() {
+            return books.size();
+        }
+    }
+}
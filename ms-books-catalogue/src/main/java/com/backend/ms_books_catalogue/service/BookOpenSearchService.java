@@ -1,25 +1,64 @@
 package com.backend.ms_books_catalogue.service;
 
+import com.backend.ms_books_catalogue.controller.model.BooksMultiGetResponse;
 import com.backend.ms_books_catalogue.controller.model.BooksQueryResponse;
+import com.backend.ms_books_catalogue.controller.model.StockReservationFailure;
+import com.backend.ms_books_catalogue.controller.model.StockReservationResponse;
+import com.backend.ms_books_catalogue.dtos.BooksSearchRequest;
 import com.backend.ms_books_catalogue.dtos.CreateBookIndexRequest;
+import com.backend.ms_books_catalogue.dtos.StockReservationRequest;
 import com.backend.ms_books_catalogue.model.BookIndex;
 import com.backend.ms_books_catalogue.repository.BookOpenSearchRepository;
+import com.backend.ms_books_catalogue.repository.CatalogueVersion;
+import com.backend.ms_books_catalogue.utils.BookFields;
+import com.backend.ms_books_catalogue.utils.StockUpdateResult;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import tools.jackson.databind.json.JsonMapper;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class BookOpenSearchService implements IBookOpenSearchService {
 
+    private static final byte[] NEW_LINE = {'\n'};
+
     private final BookOpenSearchRepository repository;
+    private final CatalogueVersion catalogueVersion;
+    private final JsonMapper jsonMapper;
+
+    @Value("${catalogue.bulk.max-actions:500}")
+    private int bulkMaxActions;
+
+    @Value("${catalogue.bulk.max-bytes:5MB}")
+    private DataSize bulkMaxBytes;
+
+    @Value("${catalogue.bulk.concurrency:4}")
+    private int bulkConcurrency;
+
+    @Value("${catalogue.mget.max-ids:100}")
+    private int mgetMaxIds;
 
     @Override
-    public BooksQueryResponse getBooks(String title, String author, String editorial, String genres, String rating, String price, Boolean aggregate) {
+    public BooksQueryResponse getBooks(BooksSearchRequest request) {
         //Ahora por defecto solo devolvera libros visibles
-        return repository.findBooks(title, author, editorial, genres, rating, price, aggregate);
+        return repository.findBooks(request);
     }
 
     @Override
@@ -27,6 +66,84 @@ public class BookOpenSearchService implements IBookOpenSearchService {
         return repository.findById(bookId).orElse(null);
     }
 
+    @Override
+    public BookIndex getBook(String bookId, Set<String> fields) {
+        // La cache guarda el documento completo; la proyeccion se aplica al responder
+        return BookFields.project(getBook(bookId), fields);
+    }
+
+    @Override
+    public BookIndex getCurrentBook(String bookId, Set<String> fields) {
+        // Sin cache por id: el libro tiene que ser al menos tan reciente como la version que se publica con el
+        return BookFields.project(repository.findCurrentById(bookId).orElse(null), fields);
+    }
+
+    @Override
+    public BooksMultiGetResponse getBooks(List<String> bookIds, Set<String> fields) {
+        if (bookIds == null || bookIds.isEmpty()) {
+            throw new IllegalArgumentException("No se ha indicado ningun id");
+        }
+        Set<String> ids = new LinkedHashSet<>(bookIds);
+        if (ids.size() > mgetMaxIds) {
+            throw new IllegalArgumentException("Se admiten como maximo " + mgetMaxIds + " ids por peticion");
+        }
+        Map<String, Optional<BookIndex>> found = repository.findAllById(ids);
+        List<BookIndex> books = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        // Se respeta el orden de la peticion
+        for (String id : ids) {
+            Optional<BookIndex> book = found.getOrDefault(id, Optional.empty());
+            if (book.isPresent()) {
+                books.add(BookFields.project(book.get(), fields));
+            } else {
+                missing.add(id);
+            }
+        }
+        return new BooksMultiGetResponse(books, missing);
+    }
+
+    @Override
+    public StockUpdateResult adjustStock(String bookId, Integer delta, String idempotencyKey) {
+        if (delta == null || delta == 0) {
+            throw new IllegalArgumentException("delta debe ser distinto de 0");
+        }
+        return repository.adjustStock(bookId, delta, StringUtils.hasText(idempotencyKey) ? idempotencyKey : null);
+    }
+
+    @Override
+    public StockReservationResponse reserveBooks(StockReservationRequest request, String reservationId) {
+        List<StockReservationFailure> failures = repository.reserveStock(quantities(request),
+                StringUtils.hasText(reservationId) ? reservationId : null);
+        return new StockReservationResponse(failures.isEmpty(), failures);
+    }
+
+    @Override
+    public void releaseBooks(StockReservationRequest request, String reservationId) {
+        repository.releaseStock(quantities(request), StringUtils.hasText(reservationId) ? reservationId : null);
+    }
+
+    /**
+     * Agrupa las lineas por libro (un mismo libro puede venir en varias lineas del carrito).
+     */
+    private Map<String, Integer> quantities(StockReservationRequest request) {
+        if (request == null || request.getItems() == null || request.getItems().isEmpty()) {
+            throw new IllegalArgumentException("La reserva no contiene libros");
+        }
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (StockReservationRequest.Item item : request.getItems()) {
+            if (!StringUtils.hasText(item.getBookId()) || item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Linea de reserva no valida: " + item.getBookId());
+            }
+            quantities.merge(item.getBookId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    @Override
+    public long getCatalogueVersion() {
+        return catalogueVersion.current();
+    }
+
     @Override
     public Boolean removeBook(String bookId) {
 
@@ -41,6 +158,15 @@ public class BookOpenSearchService implements IBookOpenSearchService {
 
     @Override
     public BookIndex createBook(CreateBookIndexRequest request) {
+        BookIndex book = toBookIndex(request);
+        return book != null ? repository.save(book) : null;
+    }
+
+    /**
+     * Valida la peticion y construye el documento. Devuelve null si algun dato es incorrecto.
+     * La usan tanto el alta individual como la carga masiva.
+     */
+    BookIndex toBookIndex(CreateBookIndexRequest request) {
 
         if (request != null && StringUtils.hasLength(request.getTitle().trim())
                 && StringUtils.hasLength(request.getAuthor().trim())
@@ -55,7 +181,7 @@ public class BookOpenSearchService implements IBookOpenSearchService {
                 && request.getStock() >= 0
                 && request.getVisible() != null) {
 
-            BookIndex book = BookIndex.builder()
+            return BookIndex.builder()
                     .title(request.getTitle())
                     .author(request.getAuthor())
                     .editorial(request.getEditorial())
@@ -68,11 +194,32 @@ public class BookOpenSearchService implements IBookOpenSearchService {
                     .dimensions(request.getDimensions())
                     .stock(request.getStock())
                     .visible(request.getVisible()).build();
-
-            return repository.save(book);
         } else {
             return null;
         }
     }
 
-}
\ No newline at end of file
+    @Override
+    public void exportBooks(String checkpoint, OutputStream outputStream) {
+        // Cada lote se escribe y se vuelca antes de pedir el siguiente, asi la memoria no depende del tamaño del catalogo
+        repository.exportBooks(checkpoint, (books, nextCheckpoint) -> {
+            try {
+                for (BookIndex book : books) {
+                    outputStream.write(jsonMapper.writeValueAsBytes(book));
+                    outputStream.write(NEW_LINE);
+                }
+                outputStream.write(("{\"_checkpoint\":\"" + nextCheckpoint + "\"}\n").getBytes(StandardCharsets.UTF_8));
+                outputStream.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void bulkCreateBooks(InputStream inputStream, OutputStream outputStream) {
+        new BookBulkIngestion(this, repository, jsonMapper, bulkMaxActions, bulkMaxBytes.toBytes(), bulkConcurrency)
+                .run(inputStream, outputStream);
+    }
+
+}
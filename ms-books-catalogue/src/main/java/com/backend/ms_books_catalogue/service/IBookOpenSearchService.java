@@ -1,15 +1,43 @@
 package com.backend.ms_books_catalogue.service;
 
+import com.backend.ms_books_catalogue.controller.model.BooksMultiGetResponse;
 import com.backend.ms_books_catalogue.controller.model.BooksQueryResponse;
+import com.backend.ms_books_catalogue.controller.model.StockReservationResponse;
+import com.backend.ms_books_catalogue.dtos.BooksSearchRequest;
 import com.backend.ms_books_catalogue.dtos.CreateBookIndexRequest;
+import com.backend.ms_books_catalogue.dtos.StockReservationRequest;
 import com.backend.ms_books_catalogue.model.BookIndex;
+import com.backend.ms_books_catalogue.utils.StockUpdateResult;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Set;
 
 public interface IBookOpenSearchService {
-    BooksQueryResponse getBooks(String title, String author, String editorial, String genres, String rating, String price, Boolean aggregate);
+    BooksQueryResponse getBooks(BooksSearchRequest request);
 
     BookIndex getBook(String bookId);
 
+    BookIndex getBook(String bookId, Set<String> fields);
+
+    BookIndex getCurrentBook(String bookId, Set<String> fields);
+
+    BooksMultiGetResponse getBooks(List<String> bookIds, Set<String> fields);
+
+    StockUpdateResult adjustStock(String bookId, Integer delta, String idempotencyKey);
+
+    StockReservationResponse reserveBooks(StockReservationRequest request, String reservationId);
+
+    void releaseBooks(StockReservationRequest request, String reservationId);
+
+    long getCatalogueVersion();
+
     Boolean removeBook(String bookId);
 
     BookIndex createBook(CreateBookIndexRequest request);
+
+    void exportBooks(String checkpoint, OutputStream outputStream);
+
+    void bulkCreateBooks(InputStream inputStream, OutputStream outputStream);
 }
\ No newline at end of file
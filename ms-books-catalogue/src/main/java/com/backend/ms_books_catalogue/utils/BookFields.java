@@ -0,0 +1,63 @@
+package com.backend.ms_books_catalogue.utils;
+
+import com.backend.ms_books_catalogue.model.BookIndex;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Proyeccion de campos (parametro fields=) sobre las lecturas del catalogo.
+ * El id se devuelve siempre; el resto de campos no pedidos quedan a null y no se serializan.
+ */
+public final class BookFields {
+
+    public static final Set<String> ALL = Set.of(
+            "id", Consts.TITLE, Consts.AUTHOR, Consts.EDITORIAL, "pages", Consts.GENRES, "publishedDate",
+            Consts.RATING, Consts.PRICE, "coverImage", "dimensions", "stock", Consts.VISIBLE);
+
+    private BookFields() {
+    }
+
+    /**
+     * Devuelve los campos pedidos ordenados, o null si no se pidio proyeccion.
+     */
+    public static Set<String> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> parsed = new TreeSet<>();
+        Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .forEach(field -> {
+                    if (!ALL.contains(field)) {
+                        throw new IllegalArgumentException("Campo desconocido en fields: " + field);
+                    }
+                    parsed.add(field);
+                });
+        return parsed.isEmpty() ? null : Collections.unmodifiableSet(parsed);
+    }
+
+    public static BookIndex project(BookIndex book, Set<String> fields) {
+        if (book == null || fields == null) {
+            return book;
+        }
+        return BookIndex.builder()
+                .id(book.getId())
+                .title(fields.contains(Consts.TITLE) ? book.getTitle() : null)
+                .author(fields.contains(Consts.AUTHOR) ? book.getAuthor() : null)
+                .editorial(fields.contains(Consts.EDITORIAL) ? book.getEditorial() : null)
+                .pages(fields.contains("pages") ? book.getPages() : null)
+                .genres(fields.contains(Consts.GENRES) ? book.getGenres() : null)
+                .publishedDate(fields.contains("publishedDate") ? book.getPublishedDate() : null)
+                .rating(fields.contains(Consts.RATING) ? book.getRating() : null)
+                .price(fields.contains(Consts.PRICE) ? book.getPrice() : null)
+                .coverImage(fields.contains("coverImage") ? book.getCoverImage() : null)
+                .dimensions(fields.contains("dimensions") ? book.getDimensions() : null)
+                .stock(fields.contains("stock") ? book.getStock() : null)
+                .visible(fields.contains(Consts.VISIBLE) ? book.getVisible() : null)
+                .build();
+    }
+}
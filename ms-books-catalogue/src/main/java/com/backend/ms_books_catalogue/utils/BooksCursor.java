@@ -0,0 +1,61 @@
+package com.backend.ms_books_catalogue.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cursor opaco para paginar con point-in-time y search_after.
+ * Guarda el identificador del PIT y los valores de ordenacion del ultimo documento devuelto,
+ * serializados como JSON en Base64 (URL safe) para que el cliente lo reenvie tal cual.
+ * La exportacion usa el mismo formato para sus checkpoints.
+ */
+@Getter
+@AllArgsConstructor
+@Slf4j
+public class BooksCursor {
+
+    private static final JsonMapper MAPPER = JsonMapper.builder().build();
+    private static final String PIT = "pit";
+    private static final String AFTER = "after";
+
+    private final String pitId;
+    private final List<Object> searchAfter;
+
+    public String encode() {
+        Map<String, Object> content = new LinkedHashMap<>();
+        if (pitId != null) {
+            content.put(PIT, pitId);
+        }
+        content.put(AFTER, searchAfter);
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(content));
+        } catch (Exception e) {
+            throw new IllegalStateException("No se pudo generar el cursor", e);
+        }
+    }
+
+    public static BooksCursor decode(String cursor) {
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(cursor.getBytes(StandardCharsets.US_ASCII));
+            Map<String, Object> content = MAPPER.readValue(json, new TypeReference<>() {});
+            @SuppressWarnings("unchecked")
+            List<Object> searchAfter = (List<Object>) content.get(AFTER);
+            String pitId = (String) content.get(PIT);
+            if (searchAfter != null && !searchAfter.isEmpty()) {
+                return new BooksCursor(pitId, searchAfter);
+            }
+        } catch (Exception e) {
+            log.debug("Cursor no valido: {}", e.getMessage());
+        }
+        throw new IllegalArgumentException("Cursor no valido");
+    }
+}
@@ -6,6 +6,13 @@ public class Consts {
     public static final String TITLE = "title";
     public static final String AUTHOR = "author";
     public static final String EDITORIAL = "editorial";
+    public static final String GENRES = "genres";
+    public static final String RATING = "rating";
+    public static final String PRICE = "price";
     public static final String VISIBLE = "visible";
+    public static final String STOCK = "stock";
+    public static final String SORT_ID = "sortId";
+    public static final String CATALOGUE_VERSION_HEADER = "X-Catalogue-Version";
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
 
 }
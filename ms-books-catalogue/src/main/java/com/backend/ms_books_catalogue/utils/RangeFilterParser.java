@@ -0,0 +1,105 @@
+package com.backend.ms_books_catalogue.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Traduce los filtros numericos recibidos como query param a {@link SearchStatement}.
+ * Sintaxis admitida: "4" (igual), "10..30", "10..", "..30", ">=4", ">4", "<=30", "<30" y "!=3". Varias
+ * condiciones separadas por comas se combinan con AND, p.ej. ">=10,<20" (rango con el extremo superior abierto).
+ */
+public final class RangeFilterParser {
+
+    private static final String RANGE_SEPARATOR = "..";
+    private static final String CONDITION_SEPARATOR = ",";
+    private static final String OPERATORS = "<>!";
+
+    private RangeFilterParser() {
+    }
+
+    /**
+     * Reconstruye la expresion de un filtro cuyo operador acaba en el nombre del parametro. "?rating>=4" llega
+     * como el parametro "rating>" con valor "4", y "?rating<3" como el parametro "rating<3" sin valor. Varias
+     * condiciones ("?price>=10&price<20") se combinan con comas. Una sintaxis que no se entiende lanza
+     * IllegalArgumentException (400) en lugar de ignorarse.
+     */
+    public static String fromQueryParams(String key, String value, Map<String, String> queryParams) {
+        List<String> conditions = new ArrayList<>();
+        if (value != null && !value.isBlank()) {
+            conditions.add(value.trim());
+        }
+        queryParams.forEach((name, paramValue) -> {
+            if (name.length() > key.length() && name.startsWith(key) && OPERATORS.indexOf(name.charAt(key.length())) >= 0) {
+                String operator = name.substring(key.length());
+                conditions.add(paramValue == null || paramValue.isEmpty() ? operator : operator + "=" + paramValue);
+            }
+        });
+        if (conditions.isEmpty()) {
+            return null;
+        }
+        String expression = String.join(CONDITION_SEPARATOR, conditions);
+        parse(key, expression);
+        return expression;
+    }
+
+    public static List<SearchStatement> parse(String key, String expression) {
+        if (expression == null || expression.isBlank()) {
+            return List.of();
+        }
+        if (expression.contains(CONDITION_SEPARATOR)) {
+            List<SearchStatement> statements = new ArrayList<>();
+            for (String condition : expression.split(CONDITION_SEPARATOR, -1)) {
+                if (condition.isBlank()) {
+                    throw new IllegalArgumentException("Condicion vacia para " + key + ": " + expression);
+                }
+                statements.addAll(parse(key, condition));
+            }
+            return statements;
+        }
+        String value = expression.trim();
+
+        int separator = value.indexOf(RANGE_SEPARATOR);
+        if (separator >= 0) {
+            String from = value.substring(0, separator).trim();
+            String to = value.substring(separator + RANGE_SEPARATOR.length()).trim();
+            if (from.isEmpty() && to.isEmpty()) {
+                throw new IllegalArgumentException("Rango vacio para " + key + ": " + expression);
+            }
+            if (from.isEmpty()) {
+                return List.of(new SearchStatement(key, number(key, to), SearchOperation.LESS_THAN_EQUAL));
+            }
+            if (to.isEmpty()) {
+                return List.of(new SearchStatement(key, number(key, from), SearchOperation.GREATER_THAN_EQUAL));
+            }
+            return List.of(
+                    new SearchStatement(key, number(key, from), SearchOperation.GREATER_THAN_EQUAL),
+                    new SearchStatement(key, number(key, to), SearchOperation.LESS_THAN_EQUAL));
+        }
+
+        if (value.startsWith(">=")) {
+            return List.of(new SearchStatement(key, number(key, value.substring(2)), SearchOperation.GREATER_THAN_EQUAL));
+        }
+        if (value.startsWith("<=")) {
+            return List.of(new SearchStatement(key, number(key, value.substring(2)), SearchOperation.LESS_THAN_EQUAL));
+        }
+        if (value.startsWith("!=")) {
+            return List.of(new SearchStatement(key, number(key, value.substring(2)), SearchOperation.NOT_EQUAL));
+        }
+        if (value.startsWith(">")) {
+            return List.of(new SearchStatement(key, number(key, value.substring(1)), SearchOperation.GREATER_THAN));
+        }
+        if (value.startsWith("<")) {
+            return List.of(new SearchStatement(key, number(key, value.substring(1)), SearchOperation.LESS_THAN));
+        }
+        return List.of(new SearchStatement(key, number(key, value), SearchOperation.EQUAL));
+    }
+
+    private static Double number(String key, String value) {
+        try {
+            return Double.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor numerico no valido para " + key + ": " + value);
+        }
+    }
+}
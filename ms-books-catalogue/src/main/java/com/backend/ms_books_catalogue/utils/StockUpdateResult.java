@@ -0,0 +1,10 @@
+package com.backend.ms_books_catalogue.utils;
+
+/**
+ * Resultado de un ajuste atomico de stock.
+ */
+public enum StockUpdateResult {
+    UPDATED,
+    INSUFFICIENT_STOCK,
+    NOT_FOUND
+}
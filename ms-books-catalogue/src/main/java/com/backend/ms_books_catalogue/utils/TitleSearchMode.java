@@ -0,0 +1,39 @@
+package com.backend.ms_books_catalogue.utils;
+
+import org.opensearch.index.query.MultiMatchQueryBuilder.Type;
+import org.opensearch.index.query.QueryBuilder;
+import org.opensearch.index.query.QueryBuilders;
+
+import java.util.Locale;
+
+/**
+ * Modos de busqueda por titulo.
+ * PREFIX usa los subcampos que genera el mapeo search_as_you_type de "title" (bool_prefix).
+ * WILDCARD mantiene el comportamiento anterior ("*texto*"), que recorre todo el diccionario
+ * de terminos, y solo se usa si el cliente lo pide explicitamente.
+ */
+public enum TitleSearchMode {
+    PREFIX,
+    WILDCARD;
+
+    private static final String[] TITLE_SEARCH_FIELDS = {
+            Consts.TITLE, Consts.TITLE + "._2gram", Consts.TITLE + "._3gram", Consts.TITLE + "._index_prefix"};
+
+    public QueryBuilder query(String title) {
+        if (this == WILDCARD) {
+            return QueryBuilders.wildcardQuery(Consts.TITLE, "*" + title.toLowerCase(Locale.ROOT) + "*");
+        }
+        return QueryBuilders.multiMatchQuery(title, TITLE_SEARCH_FIELDS).type(Type.BOOL_PREFIX);
+    }
+
+    public static TitleSearchMode from(String value) {
+        if (value == null || value.isBlank()) {
+            return PREFIX;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("titleMode no soportado: " + value);
+        }
+    }
+}
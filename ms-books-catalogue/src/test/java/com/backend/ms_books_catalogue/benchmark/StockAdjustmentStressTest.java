@@ -0,0 +1,126 @@
+package com.backend.ms_books_catalogue.benchmark;
+
+import com.backend.ms_books_catalogue.model.BookIndex;
+import com.backend.ms_books_catalogue.repository.BookFacets;
+import com.backend.ms_books_catalogue.repository.BookOpenSearchRepository;
+import com.backend.ms_books_catalogue.repository.IBookOpenSearchRepository;
+import com.backend.ms_books_catalogue.utils.StockUpdateResult;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.opensearch.client.RestHighLevelClient;
+import org.opensearch.data.client.orhlc.ClientConfiguration;
+import org.opensearch.data.client.orhlc.OpenSearchRestTemplate;
+import org.opensearch.data.client.orhlc.RestClients;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Prueba de estres del ajuste atomico de stock: muchas compras concurrentes sobre el mismo libro.
+ * Comprueba que no se pierden actualizaciones y que el stock nunca queda en negativo. Trabaja sobre un indice
+ * temporal con el mapping de BookIndex, que se borra al terminar, y no toca el indice books.
+ * Solo se ejecuta si existe un cluster de OpenSearch indicado en OPENSEARCH_BENCH_HOST (host:puerto).
+ */
+@EnabledIfEnvironmentVariable(named = "OPENSEARCH_BENCH_HOST", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class StockAdjustmentStressTest {
+
+    private static final Logger log = LoggerFactory.getLogger(StockAdjustmentStressTest.class);
+    private static final IndexCoordinates INDEX = IndexCoordinates.of("books-stock-stress");
+    private static final String BOOK_ID = "stock-stress-test";
+    private static final int INITIAL_STOCK = 200;
+    private static final int THREADS = Integer.getInteger("bench.threads", 32);
+    private static final int PURCHASES = Integer.getInteger("bench.purchases", 400);
+
+    private RestHighLevelClient client;
+    private OpenSearchRestTemplate template;
+    private IndexOperations indexOps;
+    private BookOpenSearchRepository repository;
+
+    @BeforeAll
+    void setUp() {
+        ClientConfiguration.MaybeSecureClientConfigurationBuilder builder =
+                ClientConfiguration.builder().connectedTo(System.getenv("OPENSEARCH_BENCH_HOST"));
+        ClientConfiguration configuration = System.getenv("OPENSEARCH_BENCH_USER") == null
+                ? builder.build()
+                : builder.usingSsl()
+                        .withBasicAuth(System.getenv("OPENSEARCH_BENCH_USER"), System.getenv("OPENSEARCH_BENCH_PASS"))
+                        .build();
+        client = RestClients.create(configuration).rest();
+        // El repositorio resuelve el indice a partir de BookIndex: se redirige al temporal
+        template = new OpenSearchRestTemplate(client) {
+            @Override
+            public IndexCoordinates getIndexCoordinatesFor(Class<?> clazz) {
+                return INDEX;
+            }
+        };
+        indexOps = template.indexOps(INDEX);
+        indexOps.create();
+        indexOps.putMapping(indexOps.createMapping(BookIndex.class));
+
+        repository = new BookOpenSearchRepository(mock(IBookOpenSearchRepository.class), template,
+                Caffeine.newBuilder().build(), Caffeine.newBuilder().build(), mock(BookFacets.class));
+        ReflectionTestUtils.setField(repository, "stockRetryOnConflict", 50);
+
+        template.withRefreshPolicy(RefreshPolicy.IMMEDIATE)
+                .save(BookIndex.builder().id(BOOK_ID).title("Stress").stock(INITIAL_STOCK).visible(true).build(), INDEX);
+    }
+
+    @AfterAll
+    void tearDown() throws Exception {
+        indexOps.delete();
+        client.close();
+    }
+
+    @Test
+    void concurrentPurchasesDoNotLoseUpdates() throws Exception {
+        AtomicInteger updated = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < PURCHASES; i++) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        StockUpdateResult result = repository.adjustStock(BOOK_ID, -1);
+                        (result == StockUpdateResult.UPDATED ? updated : rejected).incrementAndGet();
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        int finalStock = template.get(BOOK_ID, BookIndex.class, INDEX).getStock();
+        log.info("{} compras con {} hilos en {}ms: {} descontadas, {} sin stock, {} errores, stock final {}",
+                PURCHASES, THREADS, elapsedMs, updated.get(), rejected.get(), failed.get(), finalStock);
+
+        assertEquals(INITIAL_STOCK - updated.get(), finalStock);
+        assertTrue(finalStock >= 0);
+        assertEquals(PURCHASES, updated.get() + rejected.get() + failed.get());
+    }
+}
@@ -0,0 +1,138 @@
+package com.backend.ms_books_catalogue.benchmark;
+
+import com.backend.ms_books_catalogue.utils.TitleSearchMode;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.opensearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.opensearch.action.bulk.BulkRequest;
+import org.opensearch.action.index.IndexRequest;
+import org.opensearch.action.search.SearchRequest;
+import org.opensearch.action.support.WriteRequest;
+import org.opensearch.client.RequestOptions;
+import org.opensearch.client.RestHighLevelClient;
+import org.opensearch.client.indices.CreateIndexRequest;
+import org.opensearch.common.xcontent.XContentType;
+import org.opensearch.data.client.orhlc.ClientConfiguration;
+import org.opensearch.data.client.orhlc.RestClients;
+import org.opensearch.search.builder.SearchSourceBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Comparativa de latencia entre la busqueda por titulo con wildcard y con bool_prefix.
+ * Genera un catalogo sintetico en un indice temporal y lanza las mismas consultas con ambos modos.
+ * Solo se ejecuta si existe un cluster de OpenSearch indicado en OPENSEARCH_BENCH_HOST (host:puerto).
+ */
+@EnabledIfEnvironmentVariable(named = "OPENSEARCH_BENCH_HOST", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TitleSearchBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(TitleSearchBenchmarkTest.class);
+    private static final String INDEX = "books-title-bench";
+    private static final int BOOKS = Integer.getInteger("bench.books", 100_000);
+    private static final int QUERIES = Integer.getInteger("bench.queries", 500);
+    private static final int BULK_SIZE = 5_000;
+
+    private static final String MAPPING = """
+            {"properties":{"title":{"type":"search_as_you_type"},"visible":{"type":"boolean"}}}""";
+
+    private static final String[] WORDS = {"clean", "code", "java", "design", "patterns", "effective", "foundation",
+            "history", "night", "garden", "river", "shadow", "empire", "secret", "journey", "machine", "silent",
+            "ocean", "winter", "kingdom", "programming", "systems", "distributed", "modern", "ancient", "lost"};
+
+    private final Random random = new Random(42);
+    private RestHighLevelClient client;
+
+    @BeforeAll
+    void setUp() throws Exception {
+        ClientConfiguration.MaybeSecureClientConfigurationBuilder builder =
+                ClientConfiguration.builder().connectedTo(System.getenv("OPENSEARCH_BENCH_HOST"));
+        ClientConfiguration configuration = System.getenv("OPENSEARCH_BENCH_USER") == null
+                ? builder.build()
+                : builder.usingSsl()
+                        .withBasicAuth(System.getenv("OPENSEARCH_BENCH_USER"), System.getenv("OPENSEARCH_BENCH_PASS"))
+                        .build();
+        client = RestClients.create(configuration).rest();
+
+        client.indices().create(new CreateIndexRequest(INDEX).mapping(MAPPING, XContentType.JSON), RequestOptions.DEFAULT);
+        BulkRequest bulk = new BulkRequest();
+        for (int i = 0; i < BOOKS; i++) {
+            bulk.add(new IndexRequest(INDEX).source(Map.of("title", randomTitle(), "visible", true)));
+            if (bulk.numberOfActions() == BULK_SIZE) {
+                client.bulk(bulk, RequestOptions.DEFAULT);
+                bulk = new BulkRequest();
+            }
+        }
+        bulk.setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
+        client.bulk(bulk, RequestOptions.DEFAULT);
+    }
+
+    @AfterAll
+    void tearDown() throws Exception {
+        client.indices().delete(new DeleteIndexRequest(INDEX), RequestOptions.DEFAULT);
+        client.close();
+    }
+
+    @Test
+    void compareTitleSearchModes() throws Exception {
+        List<String> terms = IntStream.range(0, QUERIES)
+                .mapToObj(i -> WORDS[random.nextInt(WORDS.length)].substring(0, 3 + random.nextInt(3)))
+                .toList();
+
+        // Calentamos ambas rutas antes de medir
+        run(TitleSearchMode.WILDCARD, terms.subList(0, 50));
+        run(TitleSearchMode.PREFIX, terms.subList(0, 50));
+
+        long[] wildcard = run(TitleSearchMode.WILDCARD, terms);
+        long[] prefix = run(TitleSearchMode.PREFIX, terms);
+
+        log.info("Catalogo: {} libros, {} consultas", BOOKS, QUERIES);
+        report("wildcard", wildcard);
+        report("prefix  ", prefix);
+        assertEquals(QUERIES, prefix.length);
+    }
+
+    private long[] run(TitleSearchMode mode, List<String> terms) throws Exception {
+        long[] latencies = new long[terms.size()];
+        for (int i = 0; i < terms.size(); i++) {
+            SearchSourceBuilder source = new SearchSourceBuilder().query(mode.query(terms.get(i))).size(10);
+            long start = System.nanoTime();
+            client.search(new SearchRequest(INDEX).source(source), RequestOptions.DEFAULT);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private void report(String label, long[] sorted) {
+        log.info("{} p50={}ms p95={}ms p99={}ms", label, "%.2f".formatted(percentile(sorted, 0.50)),
+                "%.2f".formatted(percentile(sorted, 0.95)), "%.2f".formatted(percentile(sorted, 0.99)));
+    }
+
+    private double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1_000_000.0;
+    }
+
+    private String randomTitle() {
+        int words = 2 + random.nextInt(4);
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                title.append(' ');
+            }
+            title.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return title.toString();
+    }
+}
@@ -0,0 +1,80 @@
+package com.backend.ms_books_catalogue.repository;
+
+import com.backend.ms_books_catalogue.controller.model.AggregationDetails;
+import com.backend.ms_books_catalogue.dtos.BooksSearchRequest;
+import com.backend.ms_books_catalogue.utils.Consts;
+import com.backend.ms_books_catalogue.utils.RangeFilterParser;
+import com.backend.ms_books_catalogue.utils.SearchOperation;
+import com.backend.ms_books_catalogue.utils.SearchStatement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.opensearch.common.xcontent.json.JsonXContent;
+import org.opensearch.core.xcontent.DeprecationHandler;
+import org.opensearch.core.xcontent.NamedXContentRegistry;
+import org.opensearch.core.xcontent.XContentParser;
+import org.opensearch.search.aggregations.Aggregations;
+import org.opensearch.search.aggregations.bucket.histogram.ParsedHistogram;
+import org.opensearch.search.aggregations.bucket.range.ParsedRange;
+import org.opensearch.search.aggregations.bucket.terms.ParsedStringTerms;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookFacetsTest {
+
+    private BookFacets bookFacets;
+
+    @BeforeEach
+    void setUp() {
+        bookFacets = new BookFacets();
+        ReflectionTestUtils.setField(bookFacets, "serverFullAddress", "http://localhost:8088");
+        ReflectionTestUtils.setField(bookFacets, "priceRanges", List.of("..10", "10..20", "20..50", "50.."));
+    }
+
+    @Test
+    @DisplayName("Debe generar URIs de precio con el extremo superior exclusivo, como la agregacion")
+    void parse_PriceUrisExcludeUpperBound() throws IOException {
+        // Arrange
+        Aggregations aggregations = new Aggregations(List.of(
+                ParsedStringTerms.fromXContent(parser("{\"buckets\":[]}"), Consts.GENRES),
+                ParsedStringTerms.fromXContent(parser("{\"buckets\":[]}"), Consts.EDITORIAL),
+                ParsedHistogram.fromXContent(parser("{\"buckets\":[]}"), Consts.RATING),
+                ParsedRange.fromXContent(parser("""
+                        {"buckets":[{"key":"..10","to":10.0,"doc_count":1},{"key":"10..20","from":10.0,"to":20.0,"doc_count":2},\
+                        {"key":"20..50","from":20.0,"to":50.0,"doc_count":1},{"key":"50..","from":50.0,"doc_count":0}]}"""),
+                        Consts.PRICE)));
+
+        // Act
+        List<AggregationDetails> prices = bookFacets.parse(aggregations, new BooksSearchRequest()).get(Consts.PRICE);
+
+        // Assert
+        assertEquals("<10", priceFilter(prices.get(0)));
+        assertEquals(">=10,<20", priceFilter(prices.get(1)));
+        assertEquals(">=20,<50", priceFilter(prices.get(2)));
+        assertEquals(">=50", priceFilter(prices.get(3)));
+
+        // Un libro de exactamente 20 solo casa con la URI del bucket 20..50
+        List<SearchStatement> tenToTwenty = RangeFilterParser.parse(Consts.PRICE, priceFilter(prices.get(1)));
+        assertEquals(SearchOperation.LESS_THAN, tenToTwenty.get(1).getOperation());
+        assertEquals(20.0, tenToTwenty.get(1).getValue());
+        List<SearchStatement> twentyToFifty = RangeFilterParser.parse(Consts.PRICE, priceFilter(prices.get(2)));
+        assertEquals(SearchOperation.GREATER_THAN_EQUAL, twentyToFifty.get(0).getOperation());
+        assertEquals(20.0, twentyToFifty.get(0).getValue());
+    }
+
+    private String priceFilter(AggregationDetails details) {
+        String value = UriComponentsBuilder.fromUriString(details.getUri()).build().getQueryParams().getFirst(Consts.PRICE);
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private XContentParser parser(String json) throws IOException {
+        return JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, json);
+    }
+}
@@ -0,0 +1,410 @@
+package com.backend.ms_books_catalogue.repository;
+
+import com.backend.ms_books_catalogue.controller.model.BooksQueryResponse;
+import com.backend.ms_books_catalogue.controller.model.StockReservationFailure;
+import com.backend.ms_books_catalogue.dtos.BooksSearchRequest;
+import com.backend.ms_books_catalogue.model.BookIndex;
+import com.backend.ms_books_catalogue.utils.BooksCursor;
+import com.backend.ms_books_catalogue.utils.StockUpdateResult;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.elasticsearch.UncategorizedElasticsearchException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.MultiGetItem;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.data.elasticsearch.core.query.UpdateResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookOpenSearchRepositoryTest {
+
+    @Mock
+    private IBookOpenSearchRepository bookRepository;
+
+    @Mock
+    private ElasticsearchOperations elasticsearchOperations;
+
+    private Cache<String, Optional<BookIndex>> cache;
+
+    private BookOpenSearchRepository repository;
+
+    String bookId = "syV6mJwBDlcDp9kMtUio";
+
+    @BeforeEach
+    void setUp() {
+        cache = Caffeine.newBuilder().maximumSize(100).recordStats().build();
+        repository = new BookOpenSearchRepository(bookRepository, elasticsearchOperations, cache,
+                Caffeine.newBuilder().maximumSize(100).build(), mock(BookFacets.class));
+        ReflectionTestUtils.setField(repository, "idempotencyWindow", Duration.ofHours(1));
+    }
+
+    @Test
+    @DisplayName("Debe consultar OpenSearch una sola vez para lecturas repetidas del mismo libro")
+    void findById_CachesHits() {
+        // Arrange
+        BookIndex book = BookIndex.builder().id(bookId).title("Test").build();
+        when(elasticsearchOperations.multiGet(any(), eq(BookIndex.class), any())).thenReturn(List.of(MultiGetItem.of(book, null)));
+
+        // Act
+        repository.findById(bookId);
+        Optional<BookIndex> result = repository.findById(bookId);
+
+        // Assert
+        assertTrue(result.isPresent());
+        verify(elasticsearchOperations, times(1)).multiGet(any(), eq(BookIndex.class), any());
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    @DisplayName("No debe leer de OpenSearch las claves de idempotencia del stock")
+    void findById_ExcludesStockOps() {
+        // Arrange
+        when(elasticsearchOperations.multiGet(any(), eq(BookIndex.class), any()))
+                .thenReturn(List.of(MultiGetItem.of(BookIndex.builder().id(bookId).build(), null)));
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+
+        // Act
+        repository.findById(bookId);
+
+        // Assert
+        verify(elasticsearchOperations).multiGet(query.capture(), eq(BookIndex.class), any());
+        assertArrayEquals(new String[]{"stockKeys", "stockOps"}, query.getValue().getSourceFilter().getExcludes());
+    }
+
+    @Test
+    @DisplayName("Debe leer de OpenSearch aunque el libro este en la cache por id")
+    void findCurrentById_BypassesCache() {
+        // Arrange
+        when(elasticsearchOperations.multiGet(any(), eq(BookIndex.class), any()))
+                .thenReturn(List.of(MultiGetItem.of(BookIndex.builder().id(bookId).stock(5).build(), null)))
+                .thenReturn(List.of(MultiGetItem.of(BookIndex.builder().id(bookId).stock(4).build(), null)));
+        repository.findById(bookId);
+
+        // Act
+        Optional<BookIndex> result = repository.findCurrentById(bookId);
+
+        // Assert
+        assertEquals(4, result.orElseThrow().getStock());
+        verify(elasticsearchOperations, times(2)).multiGet(any(), eq(BookIndex.class), any());
+    }
+
+    @Test
+    @DisplayName("Debe cachear tambien los libros inexistentes")
+    void findById_CachesMisses() {
+        // Arrange
+        when(elasticsearchOperations.multiGet(any(), eq(BookIndex.class), any())).thenReturn(List.of(MultiGetItem.of(null, null)));
+
+        // Act
+        repository.findById(bookId);
+        Optional<BookIndex> result = repository.findById(bookId);
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verify(elasticsearchOperations, times(1)).multiGet(any(), eq(BookIndex.class), any());
+    }
+
+    @Test
+    @DisplayName("Debe invalidar la entrada al guardar o eliminar el libro")
+    void saveAndDelete_InvalidateEntry() {
+        // Arrange
+        BookIndex book = BookIndex.builder().id(bookId).title("Test").build();
+        when(elasticsearchOperations.multiGet(any(), eq(BookIndex.class), any())).thenReturn(List.of(MultiGetItem.of(book, null)));
+        when(bookRepository.save(any(BookIndex.class))).thenAnswer(i -> i.getArguments()[0]);
+
+        // Act
+        repository.findById(bookId);
+        repository.save(book);
+        repository.findById(bookId);
+        repository.delete(book);
+        repository.findById(bookId);
+
+        // Assert
+        verify(elasticsearchOperations, times(3)).multiGet(any(), eq(BookIndex.class), any());
+        assertEquals(2, repository.getQueryCacheVersion());
+    }
+
+    @Test
+    @DisplayName("Debe generar el id si falta y copiarlo a sortId al guardar")
+    void save_CopiesIdToSortId() {
+        // Arrange
+        BookIndex book = BookIndex.builder().title("Test").build();
+        when(bookRepository.save(any(BookIndex.class))).thenAnswer(i -> i.getArguments()[0]);
+
+        // Act
+        BookIndex saved = repository.save(book);
+
+        // Assert
+        assertNotNull(saved.getId());
+        assertEquals(saved.getId(), saved.getSortId());
+    }
+
+    @Test
+    @DisplayName("Debe devolver stock insuficiente si el script no modifica el documento")
+    void adjustStock_Noop() {
+        // Arrange
+        when(elasticsearchOperations.update(any(UpdateQuery.class), any()))
+                .thenReturn(new UpdateResponse(UpdateResponse.Result.NOOP));
+
+        // Act
+        StockUpdateResult result = repository.adjustStock(bookId, -3);
+
+        // Assert
+        assertEquals(StockUpdateResult.INSUFFICIENT_STOCK, result);
+        assertEquals(0, repository.getQueryCacheVersion());
+    }
+
+    @Test
+    @DisplayName("Debe invalidar la cache tras ajustar el stock")
+    void adjustStock_Updated() {
+        // Arrange
+        BookIndex book = BookIndex.builder().id(bookId).stock(5).build();
+        when(elasticsearchOperations.multiGet(any(), eq(BookIndex.class), any())).thenReturn(List.of(MultiGetItem.of(book, null)));
+        when(elasticsearchOperations.update(any(UpdateQuery.class), any()))
+                .thenReturn(new UpdateResponse(UpdateResponse.Result.UPDATED));
+
+        // Act
+        repository.findById(bookId);
+        StockUpdateResult result = repository.adjustStock(bookId, -1);
+        repository.findById(bookId);
+
+        // Assert
+        assertEquals(StockUpdateResult.UPDATED, result);
+        verify(elasticsearchOperations, times(2)).multiGet(any(), eq(BookIndex.class), any());
+        assertEquals(0, repository.getQueryCacheVersion());
+    }
+
+    @Test
+    @DisplayName("Debe retirar de la cache de busquedas solo las paginas que contienen el libro al ajustar el stock")
+    void adjustStock_EvictsOnlyAffectedPages() {
+        // Arrange
+        Cache<BooksQueryKey, BooksQueryResponse> queryCache = Caffeine.newBuilder().maximumSize(100).build();
+        repository = new BookOpenSearchRepository(bookRepository, elasticsearchOperations, cache, queryCache,
+                mock(BookFacets.class));
+        BooksQueryKey affected = BooksQueryKey.of(BooksSearchRequest.builder().title("a").build(), 10, 0);
+        BooksQueryKey other = BooksQueryKey.of(BooksSearchRequest.builder().title("b").build(), 10, 0);
+        queryCache.put(affected, new BooksQueryResponse(List.of(BookIndex.builder().id(bookId).build()), null, null));
+        queryCache.put(other, new BooksQueryResponse(List.of(BookIndex.builder().id("otro").build()), null, null));
+        when(elasticsearchOperations.update(any(UpdateQuery.class), any()))
+                .thenReturn(new UpdateResponse(UpdateResponse.Result.UPDATED));
+
+        // Act
+        repository.adjustStock(bookId, -1);
+
+        // Assert
+        assertNull(queryCache.getIfPresent(affected));
+        assertNotNull(queryCache.getIfPresent(other));
+    }
+
+    @Test
+    @DisplayName("Debe enviar la Idempotency-Key al script para que un reintento no se aplique dos veces")
+    void adjustStock_WithIdempotencyKey() {
+        // Arrange
+        when(elasticsearchOperations.update(any(UpdateQuery.class), any()))
+                .thenReturn(new UpdateResponse(UpdateResponse.Result.UPDATED));
+        ArgumentCaptor<UpdateQuery> query = ArgumentCaptor.forClass(UpdateQuery.class);
+
+        // Act
+        StockUpdateResult result = repository.adjustStock(bookId, -2, "outbox-42");
+
+        // Assert
+        assertEquals(StockUpdateResult.UPDATED, result);
+        verify(elasticsearchOperations).update(query.capture(), any());
+        assertEquals(BookOpenSearchRepository.IDEMPOTENT_ADJUST_STOCK_SCRIPT, query.getValue().getScript());
+        Map<String, Object> params = query.getValue().getParams();
+        assertEquals(-2, params.get("delta"));
+        assertEquals("outbox-42", params.get("key"));
+        assertEquals(Duration.ofHours(1).toMillis(), params.get("window"));
+        assertNotNull(params.get("now"));
+    }
+
+    @Test
+    @DisplayName("Debe devolver no encontrado si el libro no existe")
+    void adjustStock_NotFound() {
+        // Arrange
+        when(elasticsearchOperations.update(any(UpdateQuery.class), any()))
+                .thenThrow(new UncategorizedElasticsearchException("document_missing_exception"));
+        when(bookRepository.existsById(bookId)).thenReturn(false);
+
+        // Act
+        StockUpdateResult result = repository.adjustStock(bookId, -1);
+
+        // Assert
+        assertEquals(StockUpdateResult.NOT_FOUND, result);
+    }
+
+    @Test
+    @DisplayName("No debe descontar nada si alguna linea de la reserva no tiene stock")
+    void reserveStock_RejectsWithoutWriting() {
+        // Arrange
+        BookIndex available = BookIndex.builder().id("a").stock(5).visible(true).build();
+        BookIndex scarce = BookIndex.builder().id("b").stock(1).visible(true).build();
+        when(elasticsearchOperations.multiGet(any(), eq(BookIndex.class), any()))
+                .thenReturn(List.of(MultiGetItem.of(available, null), MultiGetItem.of(scarce, null), MultiGetItem.of(null, null)));
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        quantities.put("a", 2);
+        quantities.put("b", 3);
+        quantities.put("c", 1);
+
+        // Act
+        List<StockReservationFailure> failures = repository.reserveStock(quantities);
+
+        // Assert
+        assertEquals(2, failures.size());
+        assertEquals("INSUFFICIENT_STOCK", failures.get(0).getReason());
+        assertEquals("b", failures.get(0).getBookId());
+        assertEquals("NOT_FOUND", failures.get(1).getReason());
+        verify(elasticsearchOperations, never()).bulkUpdate(anyList(), any(BulkOptions.class), any());
+    }
+
+    @Test
+    @DisplayName("Un reintento de una reserva ya aplicada no debe fallar por stock y debe usar el script idempotente")
+    @SuppressWarnings("unchecked")
+    void reserveStock_RetryWithReservationId() {
+        // Arrange
+        BookIndex alreadyReserved = BookIndex.builder().id("a").stock(0).visible(true)
+                .stockKeys(Map.of("reserve:r-1", System.currentTimeMillis())).build();
+        when(elasticsearchOperations.multiGet(any(), eq(BookIndex.class), any()))
+                .thenReturn(List.of(MultiGetItem.of(alreadyReserved, null)));
+        ArgumentCaptor<List<UpdateQuery>> updates = ArgumentCaptor.forClass(List.class);
+
+        // Act
+        List<StockReservationFailure> failures = repository.reserveStock(Map.of("a", 2), "r-1");
+
+        // Assert
+        assertTrue(failures.isEmpty());
+        verify(elasticsearchOperations).bulkUpdate(updates.capture(), any(BulkOptions.class), any());
+        UpdateQuery update = updates.getValue().getFirst();
+        assertEquals(BookOpenSearchRepository.IDEMPOTENT_RESERVE_STOCK_SCRIPT, update.getScript());
+        assertEquals("reserve:r-1", update.getParams().get("key"));
+        assertEquals("release:r-1", update.getParams().get("releaseKey"));
+    }
+
+    @Test
+    @DisplayName("Una clave de reserva fuera de la ventana de idempotencia ya no cuenta como aplicada")
+    void reserveStock_ExpiredReservationKey() {
+        // Arrange
+        ReflectionTestUtils.setField(repository, "idempotencyWindow", Duration.ofMinutes(5));
+        long sixMinutesAgo = System.currentTimeMillis() - Duration.ofMinutes(6).toMillis();
+        BookIndex book = BookIndex.builder().id("a").stock(0).visible(true)
+                .stockKeys(Map.of("reserve:r-1", sixMinutesAgo)).build();
+        when(elasticsearchOperations.multiGet(any(), eq(BookIndex.class), any()))
+                .thenReturn(List.of(MultiGetItem.of(book, null)));
+
+        // Act
+        List<StockReservationFailure> failures = repository.reserveStock(Map.of("a", 2), "r-1");
+
+        // Assert
+        assertEquals("INSUFFICIENT_STOCK", failures.getFirst().getReason());
+    }
+
+    @Test
+    @DisplayName("Una reserva ya liberada no se puede repetir con el mismo id")
+    void reserveStock_ReleasedReservation() {
+        // Arrange
+        BookIndex released = BookIndex.builder().id("a").stock(10).visible(true).stockOps(List.of("release:r-1")).build();
+        when(elasticsearchOperations.multiGet(any(), eq(BookIndex.class), any()))
+                .thenReturn(List.of(MultiGetItem.of(released, null)));
+
+        // Act
+        List<StockReservationFailure> failures = repository.reserveStock(Map.of("a", 2), "r-1");
+
+        // Assert
+        assertEquals("RELEASED", failures.getFirst().getReason());
+        verify(elasticsearchOperations, never()).bulkUpdate(anyList(), any(BulkOptions.class), any());
+    }
+
+    @Test
+    @DisplayName("No debe abrir PIT para la primera pagina aunque haya mas resultados")
+    void findBooks_FirstPageOpensNoPit() {
+        // Arrange
+        ReflectionTestUtils.setField(repository, "defaultPageSize", 2);
+        SearchHits<BookIndex> hits = searchHits(3);
+        when(elasticsearchOperations.search(any(Query.class), eq(BookIndex.class))).thenReturn(hits);
+
+        // Act
+        BooksQueryResponse response = repository.findBooks(new BooksSearchRequest());
+
+        // Assert
+        assertEquals(2, response.getBooks().size());
+        assertNotNull(response.getNextCursor());
+        assertNull(BooksCursor.decode(response.getNextCursor()).getPitId());
+        verify(elasticsearchOperations, never()).openPointInTime(any(), any(), any());
+        verify(elasticsearchOperations, never()).closePointInTime(anyString());
+    }
+
+    @Test
+    @DisplayName("Debe abrir un PIT propio al pedir la segunda pagina y mantenerlo si quedan mas")
+    void findBooks_SecondPageOpensOwnPit() {
+        // Arrange
+        ReflectionTestUtils.setField(repository, "defaultPageSize", 2);
+        ReflectionTestUtils.setField(repository, "pitKeepAlive", Duration.ofMinutes(1));
+        when(elasticsearchOperations.openPointInTime(any(), any(), any())).thenReturn("pit-1");
+        SearchHits<BookIndex> hits = searchHits(3);
+        when(elasticsearchOperations.search(any(Query.class), eq(BookIndex.class))).thenReturn(hits);
+        String firstPageCursor = new BooksCursor(null, List.of(1.0f, "b1")).encode();
+
+        // Act
+        BooksQueryResponse response = repository.findBooks(BooksSearchRequest.builder().cursor(firstPageCursor).build());
+
+        // Assert
+        assertEquals("pit-1", BooksCursor.decode(response.getNextCursor()).getPitId());
+        verify(elasticsearchOperations, never()).closePointInTime(anyString());
+    }
+
+    @Test
+    @DisplayName("Debe cerrar el PIT del cliente en su ultima pagina")
+    void findBooks_LastPageClosesPit() {
+        // Arrange
+        ReflectionTestUtils.setField(repository, "defaultPageSize", 2);
+        ReflectionTestUtils.setField(repository, "pitKeepAlive", Duration.ofMinutes(1));
+        SearchHits<BookIndex> hits = searchHits(1);
+        when(elasticsearchOperations.search(any(Query.class), eq(BookIndex.class))).thenReturn(hits);
+        String cursor = new BooksCursor("pit-1", List.of(1.0f, "b3")).encode();
+
+        // Act
+        BooksQueryResponse response = repository.findBooks(BooksSearchRequest.builder().cursor(cursor).build());
+
+        // Assert
+        assertNull(response.getNextCursor());
+        verify(elasticsearchOperations).closePointInTime("pit-1");
+    }
+
+    @SuppressWarnings("unchecked")
+    private SearchHits<BookIndex> searchHits(int count) {
+        List<SearchHit<BookIndex>> hits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            SearchHit<BookIndex> hit = mock(SearchHit.class);
+            lenient().when(hit.getContent()).thenReturn(BookIndex.builder().id("b" + i).build());
+            lenient().when(hit.getSortValues()).thenReturn(List.of(1.0f, "b" + i));
+            hits.add(hit);
+        }
+        SearchHits<BookIndex> result = mock(SearchHits.class);
+        when(result.getSearchHits()).thenReturn(hits);
+        return result;
+    }
+}
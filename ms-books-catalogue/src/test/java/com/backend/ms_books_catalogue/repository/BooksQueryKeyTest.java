@@ -0,0 +1,33 @@
+package com.backend.ms_books_catalogue.repository;
+
+import com.backend.ms_books_catalogue.dtos.BooksSearchRequest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BooksQueryKeyTest {
+
+    @Test
+    @DisplayName("Debe generar la misma clave para busquedas equivalentes")
+    void of_NormalizesEquivalentSearches() {
+        // Arrange
+        BooksSearchRequest first = BooksSearchRequest.builder().title(" Clean Code ").author("").price("10 .. 30").build();
+        BooksSearchRequest second = BooksSearchRequest.builder().title("clean code").aggregate(false).price("10..30").build();
+
+        // Act & Assert
+        assertEquals(BooksQueryKey.of(first, 20, 1), BooksQueryKey.of(second, 20, 1));
+    }
+
+    @Test
+    @DisplayName("Debe distinguir la editorial por mayusculas y la version del catalogo")
+    void of_KeepsKeywordCaseAndVersion() {
+        // Arrange
+        BooksSearchRequest upper = BooksSearchRequest.builder().editorial("Planeta").build();
+        BooksSearchRequest lower = BooksSearchRequest.builder().editorial("planeta").build();
+
+        // Act & Assert
+        assertNotEquals(BooksQueryKey.of(upper, 20, 1), BooksQueryKey.of(lower, 20, 1));
+        assertNotEquals(BooksQueryKey.of(upper, 20, 1), BooksQueryKey.of(upper, 20, 2));
+    }
+}
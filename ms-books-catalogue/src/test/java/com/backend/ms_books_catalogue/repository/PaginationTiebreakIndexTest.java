@@ -0,0 +1,122 @@
+package com.backend.ms_books_catalogue.repository;
+
+import com.backend.ms_books_catalogue.controller.model.BooksQueryResponse;
+import com.backend.ms_books_catalogue.dtos.BooksSearchRequest;
+import com.backend.ms_books_catalogue.model.BookIndex;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.opensearch.client.RestHighLevelClient;
+import org.opensearch.data.client.orhlc.ClientConfiguration;
+import org.opensearch.data.client.orhlc.OpenSearchRestTemplate;
+import org.opensearch.data.client.orhlc.RestClients;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Paginacion con search_after contra un OpenSearch real, en un indice temporal de varios shards con el mapping de
+ * BookIndex. Con una consulta solo de filtros todos los libros empatan en _score y el orden lo decide sortId: al
+ * recorrer todas las paginas no debe faltar ni repetirse ningun libro.
+ * Solo se ejecuta si existe un cluster de OpenSearch indicado en OPENSEARCH_BENCH_HOST (host:puerto).
+ */
+@EnabledIfEnvironmentVariable(named = "OPENSEARCH_BENCH_HOST", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PaginationTiebreakIndexTest {
+
+    private static final IndexCoordinates INDEX = IndexCoordinates.of("books-pagination-tiebreak-test");
+    private static final int BOOKS = 250;
+    private static final int PAGE_SIZE = 7;
+
+    private RestHighLevelClient client;
+    private IndexOperations indexOps;
+    private BookOpenSearchRepository repository;
+    private final Set<String> indexedIds = new HashSet<>();
+
+    @BeforeAll
+    void setUp() {
+        ClientConfiguration.MaybeSecureClientConfigurationBuilder builder =
+                ClientConfiguration.builder().connectedTo(System.getenv("OPENSEARCH_BENCH_HOST"));
+        ClientConfiguration configuration = System.getenv("OPENSEARCH_BENCH_USER") == null
+                ? builder.build()
+                : builder.usingSsl()
+                        .withBasicAuth(System.getenv("OPENSEARCH_BENCH_USER"), System.getenv("OPENSEARCH_BENCH_PASS"))
+                        .build();
+        client = RestClients.create(configuration).rest();
+        // El repositorio resuelve el indice a partir de BookIndex: se redirige al temporal
+        OpenSearchRestTemplate template = new OpenSearchRestTemplate(client) {
+            @Override
+            public IndexCoordinates getIndexCoordinatesFor(Class<?> clazz) {
+                return INDEX;
+            }
+        };
+        indexOps = template.indexOps(INDEX);
+        // Varios shards: los empates se reparten entre ellos como en el indice real
+        indexOps.create(Map.<String, Object>of("index.number_of_shards", 3, "index.number_of_replicas", 0));
+        indexOps.putMapping(indexOps.createMapping(BookIndex.class));
+
+        repository = new BookOpenSearchRepository(mock(IBookOpenSearchRepository.class), template,
+                Caffeine.newBuilder().build(), Caffeine.newBuilder().build(), mock(BookFacets.class));
+        ReflectionTestUtils.setField(repository, "defaultPageSize", 20);
+        ReflectionTestUtils.setField(repository, "maxPageSize", 100);
+        ReflectionTestUtils.setField(repository, "pitKeepAlive", Duration.ofMinutes(1));
+
+        // Los ids los genera el repositorio, igual que en una alta sin id
+        List<BookIndex> books = IntStream.range(0, BOOKS)
+                .mapToObj(i -> BookIndex.builder()
+                        .title("Libro " + i)
+                        .editorial("Empate")
+                        .rating((short) 3)
+                        .price(10.0)
+                        .visible(true)
+                        .stock(1)
+                        .build())
+                .toList();
+        Map<String, String> failures = repository.bulkSave(books);
+        assertTrue(failures.isEmpty(), "Fallos en la carga: " + failures);
+        books.forEach(book -> indexedIds.add(book.getId()));
+        indexOps.refresh();
+    }
+
+    @AfterAll
+    void tearDown() throws Exception {
+        indexOps.delete();
+        client.close();
+    }
+
+    @Test
+    @DisplayName("Debe recorrer una consulta solo de filtros sin huecos ni duplicados")
+    void findBooks_FilterOnly_NoGapsNorDuplicates() {
+        // Arrange
+        BooksSearchRequest request = BooksSearchRequest.builder().editorial("Empate").size(PAGE_SIZE).build();
+        List<String> seen = new ArrayList<>();
+
+        // Act
+        BooksQueryResponse page = repository.findBooks(request);
+        page.getBooks().forEach(book -> seen.add(book.getId()));
+        while (page.getNextCursor() != null) {
+            request.setCursor(page.getNextCursor());
+            page = repository.findBooks(request);
+            page.getBooks().forEach(book -> seen.add(book.getId()));
+        }
+
+        // Assert
+        assertEquals(BOOKS, seen.size());
+        assertEquals(indexedIds, new HashSet<>(seen));
+    }
+}
@@ -0,0 +1,186 @@
+package com.backend.ms_books_catalogue.repository;
+
+import com.backend.ms_books_catalogue.model.BookIndex;
+import com.backend.ms_books_catalogue.utils.StockUpdateResult;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.opensearch.client.RestHighLevelClient;
+import org.opensearch.data.client.orhlc.ClientConfiguration;
+import org.opensearch.data.client.orhlc.OpenSearchRestTemplate;
+import org.opensearch.data.client.orhlc.RestClients;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Scripts de stock con clave de idempotencia contra un OpenSearch real, en un indice temporal con el mapping de
+ * BookIndex: una clave repetida no vuelve a descontar mientras siga dentro de catalogue.stock.idempotency-window,
+ * por muchas escrituras que haya entre medias.
+ * Solo se ejecuta si existe un cluster de OpenSearch indicado en OPENSEARCH_BENCH_HOST (host:puerto).
+ */
+@EnabledIfEnvironmentVariable(named = "OPENSEARCH_BENCH_HOST", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class StockIdempotencyIndexTest {
+
+    private static final IndexCoordinates INDEX = IndexCoordinates.of("books-stock-idempotency-test");
+    private static final Duration WINDOW = Duration.ofHours(1);
+
+    private RestHighLevelClient client;
+    private OpenSearchRestTemplate template;
+    private IndexOperations indexOps;
+    private BookOpenSearchRepository repository;
+
+    @BeforeAll
+    void setUp() {
+        ClientConfiguration.MaybeSecureClientConfigurationBuilder builder =
+                ClientConfiguration.builder().connectedTo(System.getenv("OPENSEARCH_BENCH_HOST"));
+        ClientConfiguration configuration = System.getenv("OPENSEARCH_BENCH_USER") == null
+                ? builder.build()
+                : builder.usingSsl()
+                        .withBasicAuth(System.getenv("OPENSEARCH_BENCH_USER"), System.getenv("OPENSEARCH_BENCH_PASS"))
+                        .build();
+        client = RestClients.create(configuration).rest();
+        // El repositorio resuelve el indice a partir de BookIndex: se redirige al temporal
+        template = new OpenSearchRestTemplate(client) {
+            @Override
+            public IndexCoordinates getIndexCoordinatesFor(Class<?> clazz) {
+                return INDEX;
+            }
+        };
+        indexOps = template.indexOps(INDEX);
+        indexOps.create();
+        indexOps.putMapping(indexOps.createMapping(BookIndex.class));
+
+        repository = new BookOpenSearchRepository(mock(IBookOpenSearchRepository.class), template,
+                Caffeine.newBuilder().build(), Caffeine.newBuilder().build(), mock(BookFacets.class));
+        ReflectionTestUtils.setField(repository, "stockRetryOnConflict", 5);
+        ReflectionTestUtils.setField(repository, "idempotencyWindow", WINDOW);
+    }
+
+    @AfterAll
+    void tearDown() throws Exception {
+        indexOps.delete();
+        client.close();
+    }
+
+    @Test
+    @DisplayName("Debe descontar una sola vez aunque la misma clave se aplique dos veces")
+    void adjustStock_SameKeyTwice_AppliesOnce() {
+        // Arrange
+        String bookId = book(10);
+
+        // Act
+        StockUpdateResult first = repository.adjustStock(bookId, -2, "outbox-event-1");
+        StockUpdateResult retry = repository.adjustStock(bookId, -2, "outbox-event-1");
+
+        // Assert
+        assertEquals(StockUpdateResult.UPDATED, first);
+        assertEquals(StockUpdateResult.UPDATED, retry);
+        BookIndex stored = stored(bookId);
+        assertEquals(8, stored.getStock());
+        assertEquals(Set.of("outbox-event-1"), stored.getStockKeys().keySet());
+    }
+
+    @Test
+    @DisplayName("Un reintento tras muchas otras escrituras del libro no debe volver a descontar")
+    void adjustStock_RetryAfterManyWrites_AppliesOnce() {
+        // Arrange: con el anillo anterior de 32 claves, estas escrituras habrian expulsado la del relay
+        String bookId = book(200);
+        repository.adjustStock(bookId, -2, "outbox-1");
+        for (int i = 0; i < 100; i++) {
+            repository.adjustStock(bookId, -1, "purchase-" + i);
+        }
+
+        // Act
+        StockUpdateResult retry = repository.adjustStock(bookId, -2, "outbox-1");
+
+        // Assert
+        assertEquals(StockUpdateResult.UPDATED, retry);
+        assertEquals(98, stored(bookId).getStock());
+        assertEquals(101, stored(bookId).getStockKeys().size());
+    }
+
+    @Test
+    @DisplayName("Debe retirar las claves que superan la ventana: una clave retirada se vuelve a aplicar")
+    void adjustStock_ExpiredKey_AppliesAgain() throws InterruptedException {
+        // Arrange
+        String bookId = book(10);
+        ReflectionTestUtils.setField(repository, "idempotencyWindow", Duration.ofSeconds(1));
+        try {
+            repository.adjustStock(bookId, -1, "key-1");
+            Thread.sleep(1_500);
+
+            // Act
+            repository.adjustStock(bookId, -1, "key-2");
+            BookIndex trimmed = stored(bookId);
+            repository.adjustStock(bookId, -1, "key-1");
+
+            // Assert
+            assertEquals(Set.of("key-2"), trimmed.getStockKeys().keySet());
+            assertEquals(7, stored(bookId).getStock());
+        } finally {
+            ReflectionTestUtils.setField(repository, "idempotencyWindow", WINDOW);
+        }
+    }
+
+    @Test
+    @DisplayName("Debe pasar las claves de stockOps a stockKeys sin volver a aplicarlas")
+    void adjustStock_MigratesStockOps() {
+        // Arrange
+        BookIndex legacy = BookIndex.builder().title("Idempotencia").stock(10).visible(true)
+                .stockOps(List.of("outbox-legacy")).build();
+        String bookId = template.withRefreshPolicy(RefreshPolicy.IMMEDIATE).save(legacy, INDEX).getId();
+
+        // Act
+        repository.adjustStock(bookId, -2, "outbox-legacy");
+        repository.adjustStock(bookId, -1, "outbox-new");
+
+        // Assert
+        BookIndex migrated = stored(bookId);
+        assertEquals(9, migrated.getStock());
+        assertNull(migrated.getStockOps());
+        assertEquals(Set.of("outbox-legacy", "outbox-new"), migrated.getStockKeys().keySet());
+    }
+
+    @Test
+    @DisplayName("Debe reservar y liberar una sola vez por id de reserva")
+    void reserveAndRelease_SameIdTwice_AppliesOnce() {
+        // Arrange
+        String bookId = book(5);
+
+        // Act
+        assertTrue(repository.reserveStock(Map.of(bookId, 2), "r-1").isEmpty());
+        assertTrue(repository.reserveStock(Map.of(bookId, 2), "r-1").isEmpty());
+        int reserved = stored(bookId).getStock();
+        repository.releaseStock(Map.of(bookId, 2), "r-1");
+        repository.releaseStock(Map.of(bookId, 2), "r-1");
+
+        // Assert
+        assertEquals(3, reserved);
+        assertEquals(5, stored(bookId).getStock());
+        assertEquals("RELEASED", repository.reserveStock(Map.of(bookId, 2), "r-1").getFirst().getReason());
+    }
+
+    private String book(int stock) {
+        BookIndex book = BookIndex.builder().title("Idempotencia").stock(stock).visible(true).build();
+        return template.withRefreshPolicy(RefreshPolicy.IMMEDIATE).save(book, INDEX).getId();
+    }
+
+    private BookIndex stored(String bookId) {
+        return template.get(bookId, BookIndex.class, INDEX);
+    }
+}
@@ -1,5 +1,6 @@
 package com.backend.ms_books_catalogue.service;
 
+import com.backend.ms_books_catalogue.controller.model.BooksMultiGetResponse;
 import com.backend.ms_books_catalogue.dtos.CreateBookIndexRequest;
 import com.backend.ms_books_catalogue.model.BookIndex;
 import com.backend.ms_books_catalogue.repository.BookOpenSearchRepository;
@@ -11,10 +12,18 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -69,6 +78,22 @@ class BookServiceTest {
 
     // --- PRUEBAS DE BÚSQUEDA ---
 
+    @Test
+    @DisplayName("Debe leer el libro sin la cache por id cuando se publica con la version del catalogo")
+    void getCurrentBook_ReadsWithoutCache() {
+        // Arrange
+        BookIndex book = BookIndex.builder().id(bookId).title("Test").stock(3).build();
+        when(repository.findCurrentById(bookId)).thenReturn(Optional.of(book));
+
+        // Act
+        BookIndex result = bookService.getCurrentBook(bookId, Set.of("stock"));
+
+        // Assert
+        assertEquals(3, result.getStock());
+        assertNull(result.getTitle());
+        verify(repository, never()).findById(anyString());
+    }
+
     @Test
     @DisplayName("Debe retornar un libro por ID")
     void getBook_ExistingId_ReturnsBook() {
@@ -84,6 +109,36 @@ class BookServiceTest {
         assertEquals(bookId, result.getId());
     }
 
+    @Test
+    @DisplayName("Debe devolver varios libros en el orden pedido e indicar los que faltan")
+    void getBooks_ByIds_ReportsMissing() {
+        // Arrange
+        ReflectionTestUtils.setField(bookService, "mgetMaxIds", 100);
+        BookIndex first = BookIndex.builder().id("a").title("A").price(10.0).build();
+        BookIndex second = BookIndex.builder().id("b").title("B").price(20.0).build();
+        when(repository.findAllById(any())).thenReturn(Map.of(
+                "a", Optional.of(first), "b", Optional.of(second), "c", Optional.empty()));
+
+        // Act
+        BooksMultiGetResponse result = bookService.getBooks(List.of("b", "c", "a", "b"), Set.of("title"));
+
+        // Assert
+        assertEquals(List.of("b", "a"), result.getBooks().stream().map(BookIndex::getId).toList());
+        assertNull(result.getBooks().get(0).getPrice());
+        assertEquals(List.of("c"), result.getMissing());
+    }
+
+    @Test
+    @DisplayName("Debe rechazar peticiones con mas ids de los permitidos")
+    void getBooks_TooManyIds_Throws() {
+        // Arrange
+        ReflectionTestUtils.setField(bookService, "mgetMaxIds", 2);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> bookService.getBooks(List.of("a", "b", "c"), null));
+        verify(repository, never()).findAllById(any());
+    }
+
     // --- PRUEBAS DE ELIMINACIÓN ---
 
     @Test
@@ -101,6 +156,31 @@ class BookServiceTest {
         verify(repository).delete(book);
     }
 
+    // --- PRUEBAS DE EXPORTACIÓN ---
+
+    @Test
+    @DisplayName("No debe escribir las claves de idempotencia del stock en la exportacion")
+    void exportBooks_OmitsStockOps() {
+        // Arrange
+        ReflectionTestUtils.setField(bookService, "jsonMapper", JsonMapper.builder().build());
+        BookIndex book = BookIndex.builder().id(bookId).title("Test").stockOps(List.of("outbox-event-1")).build();
+        doAnswer(invocation -> {
+            BiConsumer<List<BookIndex>, String> batchConsumer = invocation.getArgument(1);
+            batchConsumer.accept(List.of(book), "checkpoint");
+            return null;
+        }).when(repository).exportBooks(any(), any());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // Act
+        bookService.exportBooks(null, output);
+
+        // Assert
+        String ndjson = output.toString(StandardCharsets.UTF_8);
+        assertTrue(ndjson.contains("\"title\":\"Test\""));
+        assertFalse(ndjson.contains("stockOps"));
+        assertFalse(ndjson.contains("outbox-event-1"));
+    }
+
     // Helper para crear requests válidos rápidamente
     private CreateBookIndexRequest createValidRequest() {
         return CreateBookIndexRequest.builder()
@@ -0,0 +1,39 @@
+package com.backend.ms_books_catalogue.utils;
+
+import com.backend.ms_books_catalogue.model.BookIndex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookFieldsTest {
+
+    @Test
+    @DisplayName("Debe devolver solo los campos pedidos conservando el id")
+    void project_KeepsRequestedFields() {
+        // Arrange
+        BookIndex book = BookIndex.builder().id("1").title("Clean Code").stock(5).visible(true).price(30.0).build();
+
+        // Act
+        BookIndex result = BookFields.project(book, BookFields.parse("stock, visible"));
+
+        // Assert
+        assertEquals("1", result.getId());
+        assertEquals(5, result.getStock());
+        assertTrue(result.getVisible());
+        assertNull(result.getTitle());
+        assertNull(result.getPrice());
+        assertEquals("Clean Code", book.getTitle());
+    }
+
+    @Test
+    @DisplayName("Debe ignorar fields vacio y rechazar campos desconocidos")
+    void parse_EmptyAndUnknown() {
+        assertNull(BookFields.parse(null));
+        assertNull(BookFields.parse(" , "));
+        assertEquals(Set.of("price", "title"), BookFields.parse("title,price"));
+        assertThrows(IllegalArgumentException.class, () -> BookFields.parse("title,isbn"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.backend.ms_books_catalogue.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangeFilterParserTest {
+
+    @Test
+    @DisplayName("Debe traducir un rango cerrado a dos condiciones")
+    void parse_ClosedRange() {
+        // Act
+        List<SearchStatement> result = RangeFilterParser.parse("price", "10..30");
+
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals(SearchOperation.GREATER_THAN_EQUAL, result.get(0).getOperation());
+        assertEquals(10.0, result.get(0).getValue());
+        assertEquals(SearchOperation.LESS_THAN_EQUAL, result.get(1).getOperation());
+        assertEquals(30.0, result.get(1).getValue());
+    }
+
+    @Test
+    @DisplayName("Debe admitir rangos abiertos y operadores de comparacion")
+    void parse_OpenRangesAndOperators() {
+        assertEquals(SearchOperation.GREATER_THAN_EQUAL, RangeFilterParser.parse("price", "10..").get(0).getOperation());
+        assertEquals(SearchOperation.LESS_THAN_EQUAL, RangeFilterParser.parse("price", "..30").get(0).getOperation());
+        assertEquals(SearchOperation.GREATER_THAN_EQUAL, RangeFilterParser.parse("rating", ">=4").get(0).getOperation());
+        assertEquals(SearchOperation.GREATER_THAN, RangeFilterParser.parse("rating", ">4").get(0).getOperation());
+        assertEquals(SearchOperation.LESS_THAN, RangeFilterParser.parse("rating", "<3").get(0).getOperation());
+        assertEquals(SearchOperation.EQUAL, RangeFilterParser.parse("rating", "5").get(0).getOperation());
+    }
+
+    @Test
+    @DisplayName("Debe combinar condiciones separadas por comas en un rango semiabierto")
+    void parse_HalfOpenRange() {
+        // Act
+        List<SearchStatement> result = RangeFilterParser.parse("price", ">=10,<20");
+
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals(SearchOperation.GREATER_THAN_EQUAL, result.get(0).getOperation());
+        assertEquals(10.0, result.get(0).getValue());
+        assertEquals(SearchOperation.LESS_THAN, result.get(1).getOperation());
+        assertEquals(20.0, result.get(1).getValue());
+        assertThrows(IllegalArgumentException.class, () -> RangeFilterParser.parse("price", ">=10,"));
+    }
+
+    @Test
+    @DisplayName("Debe reconstruir el filtro cuando el operador llega en el nombre del parametro")
+    void fromQueryParams_OperatorInName() {
+        // "?rating<3" llega como el parametro "rating<3" sin valor; "?rating>=4" como "rating>" con valor "4"
+        assertEquals("<3", RangeFilterParser.fromQueryParams("rating", null, Map.of("rating<3", "")));
+        assertEquals(">4", RangeFilterParser.fromQueryParams("rating", null, Map.of("rating>4", "")));
+        assertEquals(">=4", RangeFilterParser.fromQueryParams("rating", null, Map.of("rating>", "4")));
+        assertEquals("!=3", RangeFilterParser.fromQueryParams("rating", null, Map.of("rating!", "3")));
+        assertEquals("3..5", RangeFilterParser.fromQueryParams("rating", "3..5", Map.of("rating", "3..5")));
+        assertNull(RangeFilterParser.fromQueryParams("rating", null, Map.of("ratings", "4")));
+    }
+
+    @Test
+    @DisplayName("Debe filtrar rating<3 como menor estricto")
+    void fromQueryParams_RatingLessThan() {
+        // Act
+        List<SearchStatement> result = RangeFilterParser.parse("rating",
+                RangeFilterParser.fromQueryParams("rating", null, Map.of("rating<3", "")));
+
+        // Assert
+        assertEquals(1, result.size());
+        assertEquals(SearchOperation.LESS_THAN, result.get(0).getOperation());
+        assertEquals(3.0, result.get(0).getValue());
+    }
+
+    @Test
+    @DisplayName("Debe rechazar un operador en el nombre que no se entiende")
+    void fromQueryParams_UnknownSyntax() {
+        assertThrows(IllegalArgumentException.class,
+                () -> RangeFilterParser.fromQueryParams("rating", null, Map.of("rating<tres", "")));
+        assertThrows(IllegalArgumentException.class,
+                () -> RangeFilterParser.fromQueryParams("rating", null, Map.of("rating>", "")));
+    }
+
+    @Test
+    @DisplayName("Debe ignorar filtros vacios y rechazar valores no numericos")
+    void parse_EmptyAndInvalid() {
+        assertTrue(RangeFilterParser.parse("rating", null).isEmpty());
+        assertTrue(RangeFilterParser.parse("rating", " ").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> RangeFilterParser.parse("price", "barato"));
+        assertThrows(IllegalArgumentException.class, () -> RangeFilterParser.parse("price", ".."));
+    }
+}
@@ -2,15 +2,27 @@ package com.actividad.booksPayments.Client;
 
 import com.actividad.booksPayments.controller.model.CreatePurchaseRequest;
 import com.actividad.booksPayments.data.model.PurchaseDetails;
-import com.actividad.booksPayments.data.utils.BookDto;
 import com.actividad.booksPayments.data.utils.BookResponse;
+import com.actividad.booksPayments.data.utils.StockAdjustmentDto;
+import com.actividad.booksPayments.data.utils.StockReservationDto;
+import com.actividad.booksPayments.data.utils.StockReservationResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -21,6 +33,16 @@ public class BookCatalogueClient {
     private static final String MSJ_ERROR_BOOK_NOT_EXIST_OR_NOT_STOCK = "Error libro no existe o no tiene stock:";
 
     private static final int STOCK_CERO = 0;
+    // Plantillas relativas a catalogueService.url; la plantilla (y no el id) es la etiqueta uri de las metricas.
+    // Solo necesitamos stock y visibilidad: el catalogo omite el resto del documento
+    private static final String BOOK_STOCK_URI = "{id}?fields=stock,visible";
+    private static final String STOCK_ADJUSTMENT_URI = "{id}/stock";
+    private static final String CATALOGUE_VERSION_HEADER = "X-Catalogue-Version";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String RESERVE_PATH = "_reserve";
+    private static final String RELEASE_PATH = "_release";
+    private static final String ERROR_RESERVE_STOCK = "Reserva de stock - Error: %s";
+    private static final String ERROR_RESERVE_STOCK_REJECTED = "No se puede completar la compra: %s";
     private static final String MENSAJE_EL_LIBRO_NO_ES_VISIBLE_POR_LO_TANTO_NO_SE_PUEDE_COMPRAR = "El libro  %s no es visible, por lo tanto, no se puede comprar.";
     private static final String ERROR_GET_STOCK_CLIENT_ERROR_BOOK_WITH_ID = "Get stock - Client Error: %s, Book with ID %s";
     private static final String ERROR_GET_STOCK_SERVER_ERROR_BOOK_WITH_ID = "Get stock - Server Error: %s, Book with ID %s";
@@ -28,79 +50,309 @@ public class BookCatalogueClient {
     private static final String ERROR_UPDATE_STOCK_CLIENT_ERROR_BOOK_WITH_ID = "Update stock - Client Error: %s, Book with ID %s";
     private static final String ERROR_UPDATE_STOCK_SERVER_ERROR_BOOK_WITH_ID = "Update stock - Server Error: %s, Book with ID %s";
     private static final String ERROR_UPDATE_STOCK_ERROR_BOOK_WITH_ID = "Update stock - Error: %s, Book with ID %s";
+    private static final String ERROR_DEADLINE = "El catalogo no ha respondido a tiempo (plazo total %s)";
 
-    @Value("${catalogueService.url}")
-    private String urlBookService;
+    @Value("${catalogueService.call-timeout:2s}")
+    private Duration callTimeout;
 
-    private final WebClient.Builder webClient;
+    @Value("${catalogueService.deadline:5s}")
+    private Duration deadline;
 
-    public void validateStock(CreatePurchaseRequest request) {
-        for (int i = 0; i < request.getPurchaseDetails().size(); i++) {
-            PurchaseDetails details = request.getPurchaseDetails().get(i);
-            if(details.getBookCount() > getBookStock(details.getBookId())){
-                throw new RuntimeException(MSJ_ERROR_BOOK_NOT_EXIST_OR_NOT_STOCK + details.getBookName());
-            }
+    @Value("${catalogueService.concurrency:8}")
+    private int concurrency;
+
+    private final WebClient catalogueWebClient;
+    private final CatalogueLookupGuard lookupGuard;
+    private final CatalogueNearCache nearCache;
+
+    /**
+     * Valida y descuenta el stock de todas las lineas en una unica llamada al catalogo (todo o nada). Devuelve el
+     * id de la reserva, con el que se libera si la compra no se puede registrar.
+     */
+    public String reserveBooks(CreatePurchaseRequest request) {
+        return reserve(request).block();
+    }
+
+    /**
+     * Devuelve al catalogo el stock reservado si la compra no se ha podido registrar.
+     */
+    public void releaseBooks(CreatePurchaseRequest request, String reservationId) {
+        release(request, reservationId).block();
+    }
+
+    /**
+     * Version no bloqueante de {@link #reserveBooks}, para el modo reactivo. La reserva viaja con un id propio
+     * (Idempotency-Key): si la llamada acaba en timeout, 5xx o error de red no sabemos si el catalogo la aplico,
+     * asi que se libera por ese id antes de propagar el error. El catalogo solo devuelve lo que la reserva llego a
+     * descontar y, si la reserva llega despues, ya no la aplica.
+     */
+    public Mono<String> reserve(CreatePurchaseRequest request) {
+        String reservationId = UUID.randomUUID().toString();
+        return catalogueWebClient
+                .post()
+                .uri(RESERVE_PATH)
+                .header(IDEMPOTENCY_KEY_HEADER, reservationId)
+                .bodyValue(toReservation(request))
+                .retrieve()
+                .onStatus(status -> status.value() == HttpStatus.CONFLICT.value(), response -> response
+                        .bodyToMono(StockReservationResponse.class)
+                        .map(body -> new CatalogueRejectedException(String.format(ERROR_RESERVE_STOCK_REJECTED, describe(body)))))
+                .bodyToMono(StockReservationResponse.class)
+                .doOnSubscribe(subscription -> log.info("Reservando stock de {} lineas", request.getPurchaseDetails().size()))
+                .timeout(deadline)
+                .doOnSuccess(response -> log.info(MSJ_STOCK_UPDATE))
+                .onErrorMap(error -> reserveError(error))
+                .onErrorResume(CatalogueUnavailableException.class, error -> release(request, reservationId).then(Mono.error(error)))
+                .doFinally(signal -> nearCache.invalidate(bookIds(request)))
+                .thenReturn(reservationId);
+    }
+
+    /**
+     * Version no bloqueante de {@link #releaseBooks}. Los errores se registran pero no se propagan.
+     */
+    public Mono<Void> release(CreatePurchaseRequest request, String reservationId) {
+        return catalogueWebClient
+                .post()
+                .uri(RELEASE_PATH)
+                .header(IDEMPOTENCY_KEY_HEADER, reservationId)
+                .bodyValue(toReservation(request))
+                .retrieve()
+                .bodyToMono(Void.class)
+                .timeout(deadline)
+                .onErrorResume(e -> {
+                    log.error("No se ha podido liberar el stock de la reserva {}: {}", reservationId, e.getMessage());
+                    return Mono.empty();
+                })
+                .doFinally(signal -> nearCache.invalidate(bookIds(request)));
+    }
+
+    private RuntimeException reserveError(Throwable error) {
+        if (error instanceof CatalogueRejectedException e) {
+            return e;
+        }
+        if (error instanceof WebClientResponseException e && e.getStatusCode().is4xxClientError()) {
+            return new CatalogueRejectedException(String.format(ERROR_RESERVE_STOCK, e.getStatusCode()));
         }
+        // Timeout, 5xx o error de red: no sabemos si el catalogo ha reservado, la compra se puede reintentar
+        return new CatalogueUnavailableException(String.format(ERROR_RESERVE_STOCK, describe(error)), error);
     }
 
+    private StockReservationDto toReservation(CreatePurchaseRequest request) {
+        return new StockReservationDto(request.getPurchaseDetails().stream()
+                .map(details -> new StockReservationDto.Item(details.getBookId(), details.getBookCount()))
+                .collect(Collectors.toList()));
+    }
+
+    private List<String> bookIds(CreatePurchaseRequest request) {
+        return request.getPurchaseDetails().stream().map(PurchaseDetails::getBookId).toList();
+    }
+
+    private String describe(StockReservationResponse response) {
+        return response.getFailures().stream()
+                .map(failure -> failure.getBookId() + " (" + failure.getReason() + ")")
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Consulta el stock de todas las lineas a la vez. El primer libro sin stock suficiente (o el primer error)
+     * cancela las consultas que siguen en curso. Los libros con stock holgado en la cache local no salen al catalogo.
+     */
+    public void validateStock(CreatePurchaseRequest request) {
+        fanOut(request.getPurchaseDetails(), details -> nearCache.hasStockFor(details.getBookId(), details.getBookCount())
+                ? Mono.empty()
+                : checkStock(details));
+    }
+
+    private Mono<Void> checkStock(PurchaseDetails details) {
+        return bookStock(details.getBookId())
+                .filter(stock -> details.getBookCount() <= stock)
+                .switchIfEmpty(Mono.error(() -> new CatalogueRejectedException(MSJ_ERROR_BOOK_NOT_EXIST_OR_NOT_STOCK + details.getBookName())))
+                .then();
+    }
+
+    /**
+     * Descuenta el stock de todas las lineas a la vez, cada una con su Idempotency-Key. No se cancela ninguna
+     * llamada al primer fallo: un PATCH cancelado puede haberse aplicado igualmente. Cuando todas han terminado,
+     * si alguna ha fallado se compensan las que se aplicaron y las de resultado desconocido.
+     */
     public void updateBooks(CreatePurchaseRequest request) {
-        for (int i = 0; i < request.getPurchaseDetails().size(); i++) {
-            PurchaseDetails details = request.getPurchaseDetails().get(i);
-            updateBookStock(details.getBookId(),getBookStock(details.getBookId()) - details.getBookCount());
+        String purchaseKey = UUID.randomUUID().toString();
+        List<PurchaseDetails> lines = request.getPurchaseDetails();
+        try {
+            // El catalogo descuenta de forma atomica y rechaza con 409 si no queda stock suficiente. Cada llamada
+            // esta acotada por callTimeout, asi que el conjunto termina sin necesidad de un plazo que las corte
+            List<LineUpdate> updates = Flux.range(0, lines.size())
+                    .flatMap(i -> updateLine(lines.get(i), purchaseKey + "-" + i), concurrency)
+                    .collectList()
+                    .block();
+            List<LineUpdate> failed = updates.stream().filter(update -> update.outcome() != LineOutcome.APPLIED).toList();
+            if (failed.isEmpty()) {
+                return;
+            }
+            compensate(updates);
+            // Un rechazo es definitivo y explica mejor el fallo que un timeout
+            throw failed.stream()
+                    .filter(update -> update.outcome() == LineOutcome.REJECTED)
+                    .findFirst()
+                    .orElse(failed.getFirst())
+                    .error();
+        } finally {
+            nearCache.invalidate(bookIds(request));
         }
     }
 
+    private Mono<LineUpdate> updateLine(PurchaseDetails details, String key) {
+        return adjustStock(details.getBookId(), -details.getBookCount(), key)
+                .thenReturn(new LineUpdate(details, key, LineOutcome.APPLIED, null))
+                .onErrorResume(error -> Mono.just(new LineUpdate(details, key,
+                        error instanceof CatalogueRejectedException ? LineOutcome.REJECTED : LineOutcome.UNKNOWN,
+                        (RuntimeException) error)));
+    }
+
+    /**
+     * Devuelve el stock de las lineas aplicadas y de las de resultado desconocido. Una linea desconocida se
+     * reenvia antes con su misma clave: el catalogo no la aplica dos veces, de modo que si responde bien es que
+     * esta descontada una sola vez, y si la rechaza es que nunca se aplico. La devolucion lleva su propia clave.
+     */
+    private void compensate(List<LineUpdate> updates) {
+        Flux.fromIterable(updates)
+                .filter(update -> update.outcome() != LineOutcome.REJECTED)
+                .flatMap(update -> {
+                    PurchaseDetails details = update.details();
+                    Mono<Boolean> applied = update.outcome() == LineOutcome.APPLIED
+                            ? Mono.just(true)
+                            : adjustStock(details.getBookId(), -details.getBookCount(), update.key())
+                                    .thenReturn(true)
+                                    .onErrorResume(CatalogueRejectedException.class, error -> Mono.just(false));
+                    return applied
+                            .flatMap(isApplied -> isApplied
+                                    ? adjustStock(details.getBookId(), details.getBookCount(), update.key() + "-undo")
+                                    : Mono.<Void>empty())
+                            .onErrorResume(error -> {
+                                log.error("No se ha podido devolver el stock del libro {} (clave {}): {}",
+                                        details.getBookId(), update.key(), error.getMessage());
+                                return Mono.empty();
+                            });
+                }, concurrency)
+                .blockLast();
+    }
+
+    /**
+     * Ajuste de stock del relay del outbox. El catalogo descarta un reintento con la misma idempotencyKey.
+     * Los errores se propagan sin traducir para que el relay distinga rechazos (4xx) de fallos reintentables.
+     */
+    public Mono<Void> adjustStockIdempotent(String id, int delta, String idempotencyKey) {
+        return catalogueWebClient
+                .patch()
+                .uri(STOCK_ADJUSTMENT_URI, id)
+                .header(IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                .bodyValue(new StockAdjustmentDto(delta))
+                .retrieve()
+                .bodyToMono(Void.class)
+                .timeout(callTimeout)
+                .doFinally(signal -> nearCache.invalidate(List.of(id)));
+    }
+
     public Integer getBookStock(String id) {
-        try {
-            String url = urlBookService + id;
-            log.info("Consultando stock para el libro ID: {}", id);
+        return bookStock(id).block();
+    }
 
-            BookResponse response = webClient.build()
-                    .get()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(BookResponse.class).block();
+    public void updateBookStock(String id, Integer delta) {
+        adjustStock(id, delta).block();
+    }
 
-            if(!response.getVisible()){
-                throw new RuntimeException(String.format(MENSAJE_EL_LIBRO_NO_ES_VISIBLE_POR_LO_TANTO_NO_SE_PUEDE_COMPRAR, id));
-            }
-            
-            return (response != null) ? response.getStock() : STOCK_CERO;
-
-        } catch (HttpClientErrorException e) {
-            throw new RuntimeException(String.format(ERROR_GET_STOCK_CLIENT_ERROR_BOOK_WITH_ID, e.getStatusCode(), id));
-        } catch (HttpServerErrorException e) {
-            throw new RuntimeException(String.format(ERROR_GET_STOCK_SERVER_ERROR_BOOK_WITH_ID, e.getStatusCode(), id));
-        } catch (Exception e) {
-            throw new RuntimeException(String.format(ERROR_GET_STOCK_ERROR_BOOK_WITH_ID, e.getMessage(), id));
-        }
+    /**
+     * Lanza una llamada por linea con como mucho {@code concurrency} en vuelo. Cada llamada tiene su timeout y
+     * el conjunto un plazo total; el coste es el de la llamada mas lenta y no la suma de todas.
+     */
+    private void fanOut(List<PurchaseDetails> lines, Function<PurchaseDetails, Mono<Void>> call) {
+        Flux.fromIterable(lines)
+                .flatMap(call, concurrency)
+                .then()
+                .timeout(deadline)
+                .onErrorMap(TimeoutException.class, e -> new CatalogueUnavailableException(String.format(ERROR_DEADLINE, deadline), e))
+                .block();
     }
 
-    public void updateBookStock(String id, Integer newStock) {
-        try {
-            String url =  urlBookService + id;
-            log.info("Actualizando stock para el libro ID: {} a {}", id, newStock);
-
-            BookDto updateBody = new BookDto();
-            updateBody.setStock(newStock);
-
-            webClient.build()
-                    .patch()
-                    .uri(url)
-                    .bodyValue(updateBody)
-                    .retrieve()
-                    .bodyToMono(Void.class)
-                    .block();
+    private Mono<Integer> bookStock(String id) {
+        // Lectura idempotente: admite hedging, circuit breaker y bulkhead
+        return lookupGuard.guard(() -> catalogueWebClient
+                        .get()
+                        .uri(BOOK_STOCK_URI, id)
+                        .retrieve()
+                        .toEntity(BookResponse.class)
+                        .timeout(callTimeout))
+                .doOnSubscribe(subscription -> log.info("Consultando stock para el libro ID: {}", id))
+                .map(entity -> {
+                    BookResponse response = entity.getBody();
+                    String version = entity.getHeaders().getFirst(CATALOGUE_VERSION_HEADER);
+                    if (version != null) {
+                        nearCache.put(id, response.getStock(), response.getVisible(), Long.valueOf(version));
+                    }
+                    if (!Boolean.TRUE.equals(response.getVisible())) {
+                        throw new CatalogueRejectedException(String.format(MENSAJE_EL_LIBRO_NO_ES_VISIBLE_POR_LO_TANTO_NO_SE_PUEDE_COMPRAR, id));
+                    }
+                    return response.getStock() != null ? response.getStock() : STOCK_CERO;
+                })
+                .onErrorMap(error -> catalogueError(error, id, ERROR_GET_STOCK_CLIENT_ERROR_BOOK_WITH_ID,
+                        ERROR_GET_STOCK_SERVER_ERROR_BOOK_WITH_ID, ERROR_GET_STOCK_ERROR_BOOK_WITH_ID));
+    }
 
-            log.info(MSJ_STOCK_UPDATE);
+    private Mono<Void> adjustStock(String id, Integer delta) {
+        return adjustStock(id, delta, null);
+    }
+
+    private Mono<Void> adjustStock(String id, Integer delta, String idempotencyKey) {
+        return catalogueWebClient
+                .patch()
+                .uri(STOCK_ADJUSTMENT_URI, id)
+                .headers(headers -> {
+                    if (idempotencyKey != null) {
+                        headers.set(IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+                    }
+                })
+                .bodyValue(new StockAdjustmentDto(delta))
+                .retrieve()
+                .bodyToMono(Void.class)
+                .doOnSubscribe(subscription -> log.info("Ajustando stock para el libro ID: {} en {}", id, delta))
+                .timeout(callTimeout)
+                .doOnSuccess(ignored -> log.info(MSJ_STOCK_UPDATE))
+                .onErrorMap(error -> catalogueError(error, id, ERROR_UPDATE_STOCK_CLIENT_ERROR_BOOK_WITH_ID,
+                        ERROR_UPDATE_STOCK_SERVER_ERROR_BOOK_WITH_ID, ERROR_UPDATE_STOCK_ERROR_BOOK_WITH_ID));
+    }
 
-        } catch (HttpClientErrorException e) {
-            throw new RuntimeException(String.format(ERROR_UPDATE_STOCK_CLIENT_ERROR_BOOK_WITH_ID, e.getStatusCode(), id));
-        } catch (HttpServerErrorException e) {
-            throw new RuntimeException(String.format(ERROR_UPDATE_STOCK_SERVER_ERROR_BOOK_WITH_ID, e.getStatusCode(), id));
-        } catch (Exception e) {
-            throw new RuntimeException(String.format(ERROR_UPDATE_STOCK_ERROR_BOOK_WITH_ID, e.getMessage(), id));
+    /**
+     * Los 4xx son rechazos definitivos; los 5xx, timeouts y errores de red dejan la compra reintentable.
+     */
+    private RuntimeException catalogueError(Throwable error, String id, String clientError, String serverError, String otherError) {
+        if (error instanceof CatalogueUnavailableException || error instanceof CatalogueRejectedException) {
+            return (RuntimeException) error;
+        }
+        if (error instanceof WebClientResponseException e && e.getStatusCode().is4xxClientError()) {
+            return new CatalogueRejectedException(String.format(clientError, e.getStatusCode(), id));
         }
+        if (error instanceof WebClientResponseException e && e.getStatusCode().is5xxServerError()) {
+            return new CatalogueUnavailableException(String.format(serverError, e.getStatusCode(), id), error);
+        }
+        if (error instanceof TimeoutException) {
+            return new CatalogueUnavailableException(String.format(otherError, "timeout de " + callTimeout, id), error);
+        }
+        return new CatalogueUnavailableException(String.format(otherError, error.getMessage(), id), error);
+    }
+
+    private String describe(Throwable error) {
+        if (error instanceof WebClientResponseException e) {
+            return e.getStatusCode().toString();
+        }
+        if (error instanceof TimeoutException) {
+            return "timeout de " + deadline;
+        }
+        return error instanceof WebClientRequestException ? "error de red: " + error.getMessage() : String.valueOf(error.getMessage());
+    }
+
+    private enum LineOutcome { APPLIED, REJECTED, UNKNOWN }
+
+    private record LineUpdate(PurchaseDetails details, String key, LineOutcome outcome, RuntimeException error) {
     }
 
 }
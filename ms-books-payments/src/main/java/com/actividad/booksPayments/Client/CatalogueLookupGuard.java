@@ -0,0 +1,171 @@
+package com.actividad.booksPayments.Client;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Proteccion de las lecturas (idempotentes) al catalogo frente a nodos lentos o caidos:
+ * - Hedging: si la primera peticion no ha respondido al cumplirse el p95 observado, se lanza una segunda y
+ *   se usa la que llegue antes.
+ * - Circuit breaker por tasa de errores y de llamadas lentas: con el circuito abierto se falla al momento.
+ * - Bulkhead: limita las peticiones en curso (las de hedging incluidas) para no agotar el pool.
+ */
+@Component
+@Slf4j
+public class CatalogueLookupGuard {
+
+    private static final String NAME = "catalogue-lookup";
+    private static final double P95 = 0.95;
+
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final Timer latency;
+    private final Counter hedges;
+    private final Counter hedgeWins;
+    private final Counter trips;
+
+    @Value("${catalogueService.hedging.enabled:true}")
+    private boolean hedgingEnabled;
+
+    @Value("${catalogueService.hedging.initial-delay:100ms}")
+    private Duration initialHedgeDelay;
+
+    @Value("${catalogueService.hedging.min-delay:20ms}")
+    private Duration minHedgeDelay;
+
+    @Value("${catalogueService.hedging.max-delay:1s}")
+    private Duration maxHedgeDelay;
+
+    @Value("${catalogueService.hedging.min-samples:100}")
+    private long minSamples;
+
+    public CatalogueLookupGuard(
+            MeterRegistry meterRegistry,
+            @Value("${catalogueService.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+            @Value("${catalogueService.circuit-breaker.slow-call-rate-threshold:50}") float slowCallRateThreshold,
+            @Value("${catalogueService.circuit-breaker.slow-call-duration:1s}") Duration slowCallDuration,
+            @Value("${catalogueService.circuit-breaker.sliding-window-size:50}") int slidingWindowSize,
+            @Value("${catalogueService.circuit-breaker.minimum-calls:20}") int minimumCalls,
+            @Value("${catalogueService.circuit-breaker.wait-in-open-state:10s}") Duration waitInOpenState,
+            @Value("${catalogueService.bulkhead.max-concurrent-calls:40}") int maxConcurrentCalls,
+            @Value("${catalogueService.bulkhead.max-wait:0ms}") Duration bulkheadMaxWait) {
+
+        CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallRateThreshold(slowCallRateThreshold)
+                .slowCallDurationThreshold(slowCallDuration)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumCalls)
+                .waitDurationInOpenState(waitInOpenState)
+                .permittedNumberOfCallsInHalfOpenState(Math.max(1, minimumCalls / 4))
+                // Un 404 o un 409 es una respuesta valida del catalogo, no un fallo del servicio
+                .recordException(error -> !(error instanceof WebClientResponseException e && e.getStatusCode().is4xxClientError()))
+                .build());
+        BulkheadRegistry bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(bulkheadMaxWait)
+                .build());
+        this.circuitBreaker = circuitBreakers.circuitBreaker(NAME);
+        this.bulkhead = bulkheads.bulkhead(NAME);
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakers).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheads).bindTo(meterRegistry);
+
+        this.latency = Timer.builder("catalogue.lookup.latency")
+                .description("Latencia de las lecturas al catalogo, usada para calcular el retardo del hedging")
+                .publishPercentiles(P95)
+                .register(meterRegistry);
+        this.hedges = Counter.builder("catalogue.lookup.hedges")
+                .description("Peticiones de hedging lanzadas")
+                .register(meterRegistry);
+        this.hedgeWins = Counter.builder("catalogue.lookup.hedges.won")
+                .description("Peticiones de hedging que respondieron antes que la original")
+                .register(meterRegistry);
+        this.trips = Counter.builder("catalogue.lookup.circuit.trips")
+                .description("Veces que se ha abierto el circuito hacia el catalogo")
+                .register(meterRegistry);
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            log.warn("Circuit breaker {}: {}", NAME, event.getStateTransition());
+            if (event.getStateTransition().getToState() == CircuitBreaker.State.OPEN) {
+                trips.increment();
+            }
+        });
+    }
+
+    public <T> Mono<T> guard(Supplier<Mono<T>> call) {
+        Mono<T> guarded = hedgingEnabled ? hedged(call) : attempt(call, true);
+        return guarded
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .onErrorMap(this::isUnavailable, error -> new CatalogueUnavailableException(
+                        "Catalogo no disponible: " + error.getMessage(), error));
+    }
+
+    /**
+     * La primera respuesta (o error) de cualquiera de las dos peticiones gana y cancela la otra. Los errores
+     * rapidos (404, circuito abierto...) no esperan al hedging; el hedging solo cubre la lentitud.
+     */
+    private <T> Mono<T> hedged(Supplier<Mono<T>> call) {
+        Mono<T> primary = attempt(call, true);
+        Mono<T> hedge = Mono.delay(hedgeDelay())
+                .then(Mono.defer(() -> {
+                    hedges.increment();
+                    return attempt(call, false).doOnNext(value -> hedgeWins.increment());
+                }))
+                // Si el hedging falla (o no hay hueco en el bulkhead) manda el resultado de la peticion original
+                .onErrorResume(e -> Mono.never());
+        return Mono.firstWithSignal(primary, hedge);
+    }
+
+    private <T> Mono<T> attempt(Supplier<Mono<T>> call, boolean record) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call.get().doOnNext(value -> {
+                if (record) {
+                    latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            });
+        }).transformDeferred(BulkheadOperator.of(bulkhead));
+    }
+
+    Duration hedgeDelay() {
+        if (latency.count() < minSamples) {
+            return initialHedgeDelay;
+        }
+        for (ValueAtPercentile percentile : latency.takeSnapshot().percentileValues()) {
+            if (percentile.percentile() == P95 && percentile.value() > 0) {
+                long p95 = (long) percentile.value(TimeUnit.MILLISECONDS);
+                return Duration.ofMillis(Math.clamp(p95, minHedgeDelay.toMillis(), maxHedgeDelay.toMillis()));
+            }
+        }
+        return initialHedgeDelay;
+    }
+
+    private boolean isUnavailable(Throwable error) {
+        return error instanceof CallNotPermittedException
+                || error instanceof BulkheadFullException
+                || error instanceof TimeoutException;
+    }
+}
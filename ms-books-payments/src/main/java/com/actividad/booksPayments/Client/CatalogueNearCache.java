@@ -0,0 +1,119 @@
+package com.actividad.booksPayments.Client;
+
+import com.actividad.booksPayments.data.utils.CatalogueVersionDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache local de stock y visibilidad de los libros del catalogo.
+ * Una entrada solo responde una validacion de stock si:
+ * - tiene menos de ttl,
+ * - se leyo con la version actual del catalogo (se consulta GET /books/_version periodicamente; la version sale
+ *   de los _seq_no de OpenSearch y es la misma en todas las instancias del catalogo),
+ * - el libro es visible y el stock supera lo pedido en al menos safety-margin unidades.
+ * En cualquier otro caso se pregunta al catalogo. Es una validacion optimista: entre dos lecturas de la version
+ * otra compra puede agotar el libro. En los modos por lotes y por linea el descuento atomico del catalogo la
+ * rechaza igualmente; con el outbox el descuento llega despues y el evento acabaria en FAILED.
+ */
+@Component
+@Slf4j
+public class CatalogueNearCache {
+
+    private static final String VERSION_URI = "_version";
+
+    private record BookSnapshot(int stock, boolean visible, long catalogueVersion) {
+    }
+
+    private final WebClient catalogueWebClient;
+    private final Cache<String, BookSnapshot> snapshots;
+    private final AtomicLong catalogueVersion = new AtomicLong(-1);
+
+    @Value("${catalogueService.near-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${catalogueService.near-cache.safety-margin:10}")
+    private int safetyMargin;
+
+    public CatalogueNearCache(
+            WebClient catalogueWebClient,
+            MeterRegistry meterRegistry,
+            @Value("${catalogueService.near-cache.ttl:2s}") Duration ttl,
+            @Value("${catalogueService.near-cache.max-size:10000}") long maxSize) {
+        this.catalogueWebClient = catalogueWebClient;
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, snapshots, "catalogue.nearCache");
+    }
+
+    /**
+     * Devuelve true si la cache basta para asegurar que hay stock para la cantidad pedida.
+     */
+    public boolean hasStockFor(String bookId, int quantity) {
+        if (!enabled) {
+            return false;
+        }
+        BookSnapshot snapshot = snapshots.getIfPresent(bookId);
+        return snapshot != null
+                && snapshot.catalogueVersion() == catalogueVersion.get()
+                && snapshot.visible()
+                && snapshot.stock() - quantity >= safetyMargin;
+    }
+
+    public void put(String bookId, Integer stock, Boolean visible, Long version) {
+        if (!enabled || stock == null || visible == null || version == null) {
+            return;
+        }
+        observeVersion(version);
+        snapshots.put(bookId, new BookSnapshot(stock, visible, version));
+    }
+
+    public void invalidate(Collection<String> bookIds) {
+        snapshots.invalidateAll(bookIds);
+    }
+
+    @Scheduled(fixedDelayString = "${catalogueService.near-cache.version-poll-interval:500ms}")
+    public void refreshVersion() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            CatalogueVersionDto response = catalogueWebClient.get()
+                    .uri(VERSION_URI)
+                    .retrieve()
+                    .bodyToMono(CatalogueVersionDto.class)
+                    .timeout(Duration.ofSeconds(1))
+                    .block();
+            if (response != null && response.getVersion() != null) {
+                observeVersion(response.getVersion());
+            }
+        } catch (Exception e) {
+            // Sin version confirmada no se puede usar la cache
+            log.debug("No se ha podido leer la version del catalogo: {}", e.getMessage());
+            catalogueVersion.set(-1);
+            snapshots.invalidateAll();
+        }
+    }
+
+    private void observeVersion(long version) {
+        long previous = catalogueVersion.getAndAccumulate(version, Math::max);
+        if (version < previous) {
+            // La version ha retrocedido: el catalogo se ha reiniciado
+            catalogueVersion.set(version);
+            snapshots.invalidateAll();
+        }
+    }
+}
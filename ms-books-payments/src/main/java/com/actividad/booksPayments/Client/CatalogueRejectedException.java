@@ -0,0 +1,12 @@
+package com.actividad.booksPayments.Client;
+
+/**
+ * El catalogo ha rechazado la peticion: el libro no existe, no es visible o no tiene stock suficiente.
+ * Repetir la misma compra da el mismo resultado, a diferencia de {@link CatalogueUnavailableException}.
+ */
+public class CatalogueRejectedException extends RuntimeException {
+
+    public CatalogueRejectedException(String message) {
+        super(message);
+    }
+}
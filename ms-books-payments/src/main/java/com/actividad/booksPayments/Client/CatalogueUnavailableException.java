@@ -0,0 +1,12 @@
+package com.actividad.booksPayments.Client;
+
+/**
+ * El catalogo no puede atender la peticion ahora mismo (circuito abierto, demasiadas llamadas en curso o
+ * sin respuesta a tiempo). A diferencia de un libro sin stock, la compra se puede reintentar mas tarde.
+ */
+public class CatalogueUnavailableException extends RuntimeException {
+
+    public CatalogueUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -3,16 +3,13 @@ package com.actividad.booksPayments;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.context.annotation.Bean;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 @Slf4j
 public class MsBooksPaymentsApplication {
 
-    @Bean
-    public WebClient.Builder webClient(){return WebClient.builder();}
-
 	public static void main(String[] args) {
         // Retrieve execution profile from environment variable. If not present, default profile is selected.
         String profile = System.getenv("PROFILE");
@@ -0,0 +1,82 @@
+package com.actividad.booksPayments.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Cliente HTTP unico para las llamadas al catalogo: un pool de conexiones compartido y acotado, con
+ * timeouts y expulsion de conexiones inactivas. Parte del WebClient.Builder de Spring Boot, por lo que
+ * cada peticion se registra en http.client.requests etiquetada con la plantilla de la URI.
+ */
+@Configuration
+public class CatalogueClientConfig {
+
+    @Value("${catalogueService.url}")
+    private String urlBookService;
+
+    @Value("${catalogueService.pool.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${catalogueService.pool.pending-acquire-max:200}")
+    private int pendingAcquireMax;
+
+    @Value("${catalogueService.pool.pending-acquire-timeout:1s}")
+    private Duration pendingAcquireTimeout;
+
+    @Value("${catalogueService.pool.max-idle-time:30s}")
+    private Duration maxIdleTime;
+
+    @Value("${catalogueService.pool.max-life-time:5m}")
+    private Duration maxLifeTime;
+
+    @Value("${catalogueService.pool.evict-interval:15s}")
+    private Duration evictInterval;
+
+    @Value("${catalogueService.connect-timeout:500ms}")
+    private Duration connectTimeout;
+
+    @Value("${catalogueService.response-timeout:2s}")
+    private Duration responseTimeout;
+
+    @Value("${catalogueService.http2:false}")
+    private boolean http2;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider catalogueConnectionProvider() {
+        return ConnectionProvider.builder("catalogue")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMax)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInterval)
+                // reactor.netty.connection.provider.*: conexiones activas, inactivas y peticiones esperando conexion
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public WebClient catalogueWebClient(WebClient.Builder builder, ConnectionProvider catalogueConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(catalogueConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(responseTimeout)
+                .keepAlive(true);
+        if (http2) {
+            // HTTP/2 en claro (h2c): todas las peticiones comparten unas pocas conexiones multiplexadas
+            httpClient = httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        }
+        return builder
+                .baseUrl(urlBookService)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
@@ -0,0 +1,37 @@
+package com.actividad.booksPayments.config;
+
+import org.opensearch.client.RestHighLevelClient;
+import org.opensearch.data.client.orhlc.AbstractOpenSearchConfiguration;
+import org.opensearch.data.client.orhlc.ClientConfiguration;
+import org.opensearch.data.client.orhlc.RestClients;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Cliente de OpenSearch para el indice de busqueda de compras, con la misma configuracion que el catalogo.
+ * Solo se crea con purchases.search.enabled.
+ */
+@Configuration
+@ConditionalOnProperty(name = "purchases.search.enabled", havingValue = "true")
+public class PurchaseSearchConfig extends AbstractOpenSearchConfiguration {
+
+    @Value("${opensearch.host}")
+    private String clusterEndpoint;
+
+    @Value("${opensearch.credentials.user}")
+    private String username;
+
+    @Value("${opensearch.credentials.password}")
+    private String password;
+
+    @Override
+    public RestHighLevelClient opensearchClient() {
+        final ClientConfiguration clientConfiguration = ClientConfiguration.builder()
+                .connectedTo(clusterEndpoint + ":443")
+                .usingSsl()
+                .withBasicAuth(username, password)
+                .build();
+        return RestClients.create(clientConfiguration).rest();
+    }
+}
@@ -0,0 +1,61 @@
+package com.actividad.booksPayments.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import java.time.Duration;
+
+/**
+ * Acceso no bloqueante a purchases/purchases_details para el perfil "reactive".
+ * Se configura a mano (sin el autoconfigure de R2DBC) para que JPA siga siendo el gestor de
+ * transacciones por defecto y Hibernate siga creando el esquema sobre la misma base de datos H2.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactivePersistenceConfig {
+
+    @Value("${purchases.r2dbc.url}")
+    private String url;
+
+    @Value("${purchases.r2dbc.pool.initial-size:4}")
+    private int initialSize;
+
+    @Value("${purchases.r2dbc.pool.max-size:16}")
+    private int maxSize;
+
+    @Value("${purchases.r2dbc.pool.max-acquire-time:2s}")
+    private Duration maxAcquireTime;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool purchasesConnectionFactory() {
+        ConnectionFactory connectionFactory = ConnectionFactories.get(url);
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory)
+                .name("purchases")
+                .initialSize(initialSize)
+                .maxSize(maxSize)
+                .maxAcquireTime(maxAcquireTime)
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient purchasesDatabaseClient(ConnectionPool purchasesConnectionFactory) {
+        return DatabaseClient.create(purchasesConnectionFactory);
+    }
+
+    /**
+     * El gestor de transacciones R2DBC no se publica como bean: solo lo usa este operador.
+     */
+    @Bean
+    public TransactionalOperator purchasesTransactionalOperator(ConnectionPool purchasesConnectionFactory) {
+        return TransactionalOperator.create(new R2dbcTransactionManager(purchasesConnectionFactory));
+    }
+}
@@ -1,8 +1,14 @@
 package com.actividad.booksPayments.controller;
 
+import com.actividad.booksPayments.Client.CatalogueRejectedException;
+import com.actividad.booksPayments.Client.CatalogueUnavailableException;
 import com.actividad.booksPayments.controller.model.CreatePurchaseRequest;
+import com.actividad.booksPayments.controller.model.PurchaseImportResponse;
 import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.utils.Consts;
+import com.actividad.booksPayments.data.utils.PurchasePage;
 import com.actividad.booksPayments.service.IPurchaseService;
+import com.actividad.booksPayments.service.PurchaseIdempotencyStore;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -10,19 +16,25 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
 import java.util.List;
 
 @RestController
+@Profile("!reactive")
 @RequiredArgsConstructor
 @Slf4j
 @Tag(name = "Purchase Controller", description = "Microservicio de pagos.")
 public class PurchaseController {
 
     private final IPurchaseService service;
+    private final PurchaseIdempotencyStore idempotencyStore;
 
     @PostMapping("/purchase")
     @Operation(
@@ -32,12 +44,68 @@ public class PurchaseController {
     @ApiResponse(
             responseCode = "200",
             content = @Content(mediaType = "application/json", schema = @Schema(implementation = Purchase.class)))
-    public ResponseEntity<?> purchase(@RequestBody CreatePurchaseRequest purchaseRequest){
+    @ApiResponse(
+            responseCode = "404",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = String.class)),
+            description = "El catalogo ha rechazado la compra (libro inexistente, no visible o sin stock).")
+    @ApiResponse(
+            responseCode = "503",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = String.class)),
+            description = "El catalogo no esta disponible (circuito abierto, saturado, error 5xx o sin respuesta a tiempo).")
+    @ApiResponse(
+            responseCode = "409",
+            content = @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class)),
+            description = "Hay una compra en curso con la misma Idempotency-Key.")
+    @ApiResponse(
+            responseCode = "422",
+            content = @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class)),
+            description = "La Idempotency-Key ya se uso con una compra distinta.")
+    public ResponseEntity<?> purchase(
+            @RequestHeader(value = PurchaseIdempotencyStore.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestBody CreatePurchaseRequest purchaseRequest){
+        if (!StringUtils.hasText(idempotencyKey)) {
+            return createPurchase(purchaseRequest);
+        }
+        // Los reintentos con la misma clave reciben la respuesta de la primera ejecucion
+        return idempotencyStore.execute(idempotencyKey, purchaseRequest, () -> createPurchase(purchaseRequest));
+    }
+
+    private ResponseEntity<?> createPurchase(CreatePurchaseRequest purchaseRequest) {
         try {
             Purchase createdPurchases = service.createPurchase(purchaseRequest);
             return ResponseEntity.status(HttpStatus.CREATED).body(createdPurchases);
-        } catch (Exception e) {
+        } catch (CatalogueRejectedException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (CatalogueUnavailableException e) {
+            // El catalogo no responde: la compra se puede reintentar
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error registrando la compra", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
+        }
+    }
+
+
+    @PostMapping("/purchase/_import")
+    @Operation(
+            operationId = "Importar pagos",
+            description = "Operacion de escritura",
+            summary = "Se registran en bloque compras ya cerradas, sin reservar stock en el catalogo.")
+    @ApiResponse(
+            responseCode = "201",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = PurchaseImportResponse.class)))
+    @ApiResponse(
+            responseCode = "400",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = String.class)),
+            description = "Peticion vacia, con mas compras de las permitidas o con alguna createdAt futura.")
+    public ResponseEntity<?> importPurchases(@RequestBody List<CreatePurchaseRequest> purchaseRequests) {
+        try {
+            int imported = service.importPurchases(purchaseRequests);
+            return ResponseEntity.status(HttpStatus.CREATED).body(new PurchaseImportResponse(imported));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 
@@ -72,23 +140,31 @@ public class PurchaseController {
     @Operation(
             operationId = "Obtener un pago",
             description = "Operacion de lectura",
-            summary = "Se devuelve un pago a partir de su identificador.")
+            summary = "Se devuelve una pagina de pagos del usuario, ordenados por identificador, opcionalmente solo los creados entre from (incluido) y to (excluido). Si hay mas, la cabecera X-Next-Cursor trae el valor de after para la siguiente.")
     @ApiResponse(
             responseCode = "200",
             content = @Content(mediaType = "application/json", schema = @Schema(implementation = Purchase.class)))
     @ApiResponse(
-            responseCode = "404",
+            responseCode = "400",
             content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
-            description = "No se ha encontrado el pago con el identificador indicado.")
-    public ResponseEntity<List<Purchase>> getPurchasesUsers(@PathVariable String usuarioId) {
+            description = "Tamano de pagina o ventana de fechas no validos.")
+    public ResponseEntity<List<Purchase>> getPurchasesUsers(
+            @PathVariable String usuarioId,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
 
         log.info("Request received for purchases {}", usuarioId);
-        List<Purchase> purchases = service.getPurchasesUser(usuarioId);
-
-        if (purchases != null) {
-            return ResponseEntity.ok(purchases);
-        } else {
-            return ResponseEntity.notFound().build();
+        try {
+            PurchasePage page = service.getPurchasesUser(usuarioId, after, size, from, to);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                response.header(Consts.NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+            }
+            return response.body(page.getPurchases());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
 
     }
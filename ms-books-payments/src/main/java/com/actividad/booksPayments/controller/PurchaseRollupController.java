@@ -0,0 +1,109 @@
+package com.actividad.booksPayments.controller;
+
+import com.actividad.booksPayments.controller.model.RollupRebuildResponse;
+import com.actividad.booksPayments.data.model.BookSalesTotals;
+import com.actividad.booksPayments.data.model.DailyRevenue;
+import com.actividad.booksPayments.data.model.UserPurchaseTotals;
+import com.actividad.booksPayments.service.IPurchaseRollupService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@Profile("!reactive")
+@RequiredArgsConstructor
+@Tag(name = "Purchase Rollup Controller", description = "Acumulados de compras por usuario, libro y dia.")
+public class PurchaseRollupController {
+
+    private final IPurchaseRollupService service;
+
+    @GetMapping("/purchase/rollups/user/{userId}")
+    @Operation(
+            operationId = "Acumulado de un usuario",
+            description = "Operacion de lectura",
+            summary = "Se devuelven las compras pagadas, los libros y el gasto total del usuario.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = UserPurchaseTotals.class)))
+    @ApiResponse(
+            responseCode = "404",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
+            description = "El usuario no tiene compras pagadas.")
+    public ResponseEntity<UserPurchaseTotals> getUserTotals(@PathVariable String userId) {
+        UserPurchaseTotals totals = service.getUserTotals(userId);
+        return totals == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(totals);
+    }
+
+    @GetMapping("/purchase/rollups/book/{bookId}")
+    @Operation(
+            operationId = "Acumulado de un libro",
+            description = "Operacion de lectura",
+            summary = "Se devuelven las unidades vendidas, el importe cobrado y las compras en las que aparece el libro.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookSalesTotals.class)))
+    @ApiResponse(
+            responseCode = "404",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
+            description = "El libro no tiene ventas.")
+    public ResponseEntity<BookSalesTotals> getBookTotals(@PathVariable String bookId) {
+        BookSalesTotals totals = service.getBookTotals(bookId);
+        return totals == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(totals);
+    }
+
+    @GetMapping("/purchase/rollups/daily")
+    @Operation(
+            operationId = "Ingresos diarios",
+            description = "Operacion de lectura",
+            summary = "Se devuelven los ingresos de cada dia con ventas entre from y to (ambos incluidos, formato yyyy-MM-dd).")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = DailyRevenue.class)))
+    @ApiResponse(
+            responseCode = "400",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = String.class)),
+            description = "Rango de fechas no valido o demasiado largo.")
+    public ResponseEntity<?> getDailyRevenue(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            List<DailyRevenue> days = service.getDailyRevenue(from, to);
+            return ResponseEntity.ok(days);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/purchase/rollups/_rebuild")
+    @Operation(
+            operationId = "Reconstruir acumulados",
+            description = "Operacion de escritura",
+            summary = "Se recalculan todos los acumulados desde las compras, por tramos en paralelo.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = RollupRebuildResponse.class)))
+    @ApiResponse(
+            responseCode = "409",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = String.class)),
+            description = "Ya hay una reconstruccion en curso.")
+    public ResponseEntity<?> rebuild() {
+        try {
+            long purchases = service.rebuild();
+            return ResponseEntity.ok(new RollupRebuildResponse(purchases));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+}
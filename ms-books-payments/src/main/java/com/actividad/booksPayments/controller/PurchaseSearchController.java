@@ -0,0 +1,91 @@
+package com.actividad.booksPayments.controller;
+
+import com.actividad.booksPayments.controller.model.PurchaseReplayResponse;
+import com.actividad.booksPayments.data.model.PurchaseDocument;
+import com.actividad.booksPayments.data.utils.Consts;
+import com.actividad.booksPayments.data.utils.PurchaseSearchCriteria;
+import com.actividad.booksPayments.data.utils.PurchaseSearchPage;
+import com.actividad.booksPayments.service.IPurchaseSearchService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@Profile("!reactive")
+@ConditionalOnProperty(name = "purchases.search.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Tag(name = "Purchase Search Controller", description = "Busqueda de compras sobre el indice de OpenSearch.")
+public class PurchaseSearchController {
+
+    private final IPurchaseSearchService service;
+
+    @GetMapping("/purchase/search")
+    @Operation(
+            operationId = "Buscar pagos",
+            description = "Operacion de lectura",
+            summary = "Se buscan compras por usuario, nombre de libro, metodo de pago y rango de importe, de la mas reciente a la mas antigua. Si hay mas, la cabecera X-Next-Cursor trae el valor de after para la siguiente pagina.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = PurchaseDocument.class)))
+    @ApiResponse(
+            responseCode = "400",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = String.class)),
+            description = "Filtros o tamano de pagina no validos.")
+    public ResponseEntity<?> search(
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) String bookName,
+            @RequestParam(required = false) String paymentMethod,
+            @RequestParam(required = false) Double minAmount,
+            @RequestParam(required = false) Double maxAmount,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer size) {
+        PurchaseSearchCriteria criteria = PurchaseSearchCriteria.builder()
+                .userId(userId)
+                .bookName(bookName)
+                .paymentMethod(paymentMethod)
+                .minAmount(minAmount)
+                .maxAmount(maxAmount)
+                .after(after)
+                .build();
+        try {
+            PurchaseSearchPage page = service.search(criteria, size);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                response.header(Consts.NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+            }
+            return response.body(page.getPurchases());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/purchase/search/_replay")
+    @Operation(
+            operationId = "Reproyectar pagos",
+            description = "Operacion de escritura",
+            summary = "Se vuelven a indexar en segundo plano las compras con transaction_id entre from y to (todas si no se indican).")
+    @ApiResponse(
+            responseCode = "202",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = PurchaseReplayResponse.class)))
+    @ApiResponse(
+            responseCode = "400",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = String.class)),
+            description = "Rango no valido.")
+    public ResponseEntity<?> replay(
+            @RequestParam(required = false) Long from,
+            @RequestParam(required = false) Long to) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(new PurchaseReplayResponse(service.replay(from, to)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.actividad.booksPayments.controller;
+
+import com.actividad.booksPayments.Client.CatalogueRejectedException;
+import com.actividad.booksPayments.Client.CatalogueUnavailableException;
+import com.actividad.booksPayments.controller.model.CreatePurchaseRequest;
+import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.utils.Consts;
+import com.actividad.booksPayments.service.IReactivePurchaseService;
+import com.actividad.booksPayments.service.PurchaseIdempotencyStore;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+/**
+ * Mismos endpoints que {@link PurchaseController} sobre WebFlux. Solo se registra con el perfil "reactive".
+ */
+@RestController
+@Profile("reactive")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Purchase Controller", description = "Microservicio de pagos (modo reactivo).")
+public class ReactivePurchaseController {
+
+    private final IReactivePurchaseService service;
+    private final PurchaseIdempotencyStore idempotencyStore;
+
+    @PostMapping("/purchase")
+    @Operation(
+            operationId = "Pagar libros",
+            description = "Operacion de escritura",
+            summary = "Se registra una compra tras reservar el stock en el catalogo.")
+    @ApiResponse(
+            responseCode = "201",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Purchase.class)))
+    @ApiResponse(
+            responseCode = "404",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = String.class)),
+            description = "El catalogo ha rechazado la compra (libro inexistente, no visible o sin stock).")
+    @ApiResponse(
+            responseCode = "503",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = String.class)),
+            description = "El catalogo no esta disponible (circuito abierto, saturado, error 5xx o sin respuesta a tiempo).")
+    @ApiResponse(
+            responseCode = "409",
+            content = @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class)),
+            description = "Hay una compra en curso con la misma Idempotency-Key.")
+    @ApiResponse(
+            responseCode = "422",
+            content = @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class)),
+            description = "La Idempotency-Key ya se uso con una compra distinta.")
+    public Mono<ResponseEntity<?>> purchase(
+            @RequestHeader(value = PurchaseIdempotencyStore.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestBody CreatePurchaseRequest purchaseRequest) {
+        if (!StringUtils.hasText(idempotencyKey)) {
+            return createPurchase(purchaseRequest);
+        }
+        // El almacen de claves es el mismo que en MVC y usa JPA: se ejecuta en boundedElastic, donde tambien
+        // se puede esperar a la compra sin ocupar el event loop
+        return Mono.<ResponseEntity<?>>fromCallable(() -> idempotencyStore.execute(idempotencyKey, purchaseRequest,
+                        () -> createPurchase(purchaseRequest).block()))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<ResponseEntity<?>> createPurchase(CreatePurchaseRequest purchaseRequest) {
+        return service.createPurchase(purchaseRequest)
+                .<ResponseEntity<?>>map(created -> ResponseEntity.status(HttpStatus.CREATED).body(created))
+                .onErrorResume(CatalogueRejectedException.class,
+                        e -> Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage())))
+                .onErrorResume(IllegalArgumentException.class,
+                        e -> Mono.just(ResponseEntity.badRequest().body(e.getMessage())))
+                // El catalogo no responde: la compra se puede reintentar
+                .onErrorResume(CatalogueUnavailableException.class,
+                        e -> Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage())))
+                .onErrorResume(e -> {
+                    log.error("Error registrando la compra", e);
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage()));
+                });
+    }
+
+    @GetMapping("/purchase/{transactionId}")
+    @Operation(
+            operationId = "Obtener un pago",
+            description = "Operacion de lectura",
+            summary = "Se devuelve un pago a partir de su identificador.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Purchase.class)))
+    @ApiResponse(
+            responseCode = "404",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
+            description = "No se ha encontrado el pago con el identificador indicado.")
+    public Mono<ResponseEntity<Purchase>> getPurchase(@PathVariable String transactionId) {
+        log.info("Request received for payments {}", transactionId);
+        return service.getPurchase(transactionId)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/purchase/user/{usuarioId}")
+    @Operation(
+            operationId = "Obtener los pagos de un usuario",
+            description = "Operacion de lectura",
+            summary = "Se devuelve una pagina de pagos del usuario. Si hay mas, la cabecera X-Next-Cursor trae el valor de after para la siguiente.")
+    @ApiResponse(
+            responseCode = "200",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Purchase.class)))
+    @ApiResponse(
+            responseCode = "400",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Void.class)),
+            description = "Tamano de pagina no valido.")
+    public Mono<ResponseEntity<List<Purchase>>> getPurchasesUsers(
+            @PathVariable String usuarioId,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer size) {
+        log.info("Request received for purchases {}", usuarioId);
+        return service.getPurchasesUser(usuarioId, after, size)
+                .map(page -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (page.getNextCursor() != null) {
+                        response.header(Consts.NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+                    }
+                    return response.body(page.getPurchases());
+                })
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+
+}
@@ -6,6 +6,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.time.Instant;
 import java.util.List;
 
 @Getter
@@ -19,5 +20,12 @@ public class CreatePurchaseRequest {
     private double amount;
     private String paymentMethod;
     boolean successfulPayment;
+    // Solo en /purchase/_import: fecha original de la compra (si falta, la de la importacion)
+    private Instant createdAt;
+
+    public CreatePurchaseRequest(String userId, List<PurchaseDetails> purchaseDetails, double amount, String paymentMethod,
+                                 boolean successfulPayment) {
+        this(userId, purchaseDetails, amount, paymentMethod, successfulPayment, null);
+    }
 
 }
@@ -0,0 +1,16 @@
+package com.actividad.booksPayments.controller.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class PurchaseImportResponse {
+
+    private int imported;
+
+}
@@ -0,0 +1,22 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.BookSalesTotals;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+interface IBookSalesTotalsJpaRepository extends JpaRepository<BookSalesTotals, String> {
+
+    // Lo comparte ReactivePurchaseRepository
+    String ADD = "INSERT INTO book_sales_totals (book_id, book_name, purchase_count, book_count, value_paid) "
+            + "VALUES (:bookId, :bookName, :purchaseCount, :bookCount, :valuePaid) "
+            + "ON DUPLICATE KEY UPDATE book_name = COALESCE(:bookName, book_name), purchase_count = purchase_count + :purchaseCount, "
+            + "book_count = book_count + :bookCount, value_paid = value_paid + :valuePaid";
+
+    @Modifying
+    @Query(value = ADD, nativeQuery = true)
+    int add(@Param("bookId") String bookId, @Param("bookName") String bookName, @Param("purchaseCount") long purchaseCount,
+            @Param("bookCount") long bookCount, @Param("valuePaid") double valuePaid);
+
+}
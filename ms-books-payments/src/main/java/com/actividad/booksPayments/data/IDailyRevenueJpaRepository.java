@@ -0,0 +1,27 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.DailyRevenue;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+interface IDailyRevenueJpaRepository extends JpaRepository<DailyRevenue, LocalDate> {
+
+    // Lo comparte ReactivePurchaseRepository
+    String ADD = "INSERT INTO daily_revenue (revenue_date, purchase_count, book_count, amount) "
+            + "VALUES (:revenueDate, :purchaseCount, :bookCount, :amount) "
+            + "ON DUPLICATE KEY UPDATE purchase_count = purchase_count + :purchaseCount, book_count = book_count + :bookCount, "
+            + "amount = amount + :amount";
+
+    @Modifying
+    @Query(value = ADD, nativeQuery = true)
+    int add(@Param("revenueDate") LocalDate revenueDate, @Param("purchaseCount") long purchaseCount, @Param("bookCount") long bookCount,
+            @Param("amount") double amount);
+
+    List<DailyRevenue> findByRevenueDateBetweenOrderByRevenueDate(LocalDate from, LocalDate to);
+
+}
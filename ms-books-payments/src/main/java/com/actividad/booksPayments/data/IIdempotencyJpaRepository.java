@@ -0,0 +1,27 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+
+interface IIdempotencyJpaRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    @Modifying
+    @Query("update IdempotencyRecord r set r.status = :status, r.contentType = :contentType, r.responseBody = :body "
+            + "where r.idempotencyKey = :key")
+    int complete(@Param("key") String key, @Param("status") int status, @Param("contentType") String contentType,
+                 @Param("body") String body);
+
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.idempotencyKey = :key and r.status is null and r.createdAt < :before")
+    int deleteStaleInProgress(@Param("key") String key, @Param("before") Instant before);
+
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") Instant now);
+
+}
@@ -0,0 +1,24 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.PurchaseArchiveSegment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+interface IPurchaseArchiveSegmentJpaRepository extends JpaRepository<PurchaseArchiveSegment, String> {
+
+    @Query("select s from PurchaseArchiveSegment s where s.minId <= :id and s.maxId >= :id")
+    List<PurchaseArchiveSegment> findContaining(@Param("id") long id);
+
+    // Solo los segmentos con compras del usuario, cuyo periodo cruza [from, to) y que tienen ids por encima de after
+    @Query("select s from PurchaseArchiveSegment s join s.userIds u where u = :userId and s.maxId > :after "
+            + "and s.periodStart < :to and s.periodEnd > :from order by s.minId")
+    List<PurchaseArchiveSegment> findUserOverlapping(@Param("userId") String userId, @Param("after") long after,
+                                                     @Param("from") Instant from, @Param("to") Instant to);
+
+    List<PurchaseArchiveSegment> findAllByOrderByMinId();
+
+}
@@ -2,13 +2,56 @@ package com.actividad.booksPayments.data;
 
 
 import com.actividad.booksPayments.data.model.Purchase;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 interface IPurchaseJpaRepository extends JpaRepository<Purchase, Long>, JpaSpecificationExecutor<Purchase> {
 
-    List<Purchase> findByUserId(String usuarioId);
+    // Keyset sobre transaction_id: el coste no depende de cuantas paginas se hayan recorrido ya
+    @Query("select p.transaction_id from Purchase p where p.userId = :userId and p.transaction_id > :after order by p.transaction_id")
+    List<Long> findIdsByUserIdAfter(@Param("userId") String userId, @Param("after") Long after, Limit limit);
+
+    // Igual que findIdsByUserIdAfter dentro de una ventana de created_at [from, to)
+    @Query("select p.transaction_id from Purchase p where p.userId = :userId and p.transaction_id > :after "
+            + "and p.createdAt >= :from and p.createdAt < :to order by p.transaction_id")
+    List<Long> findIdsByUserIdAfterBetween(@Param("userId") String userId, @Param("after") Long after,
+                                           @Param("from") Instant from, @Param("to") Instant to, Limit limit);
+
+    // Compras y lineas en una sola consulta, en lugar de una consulta de lineas por compra
+    @Query("select distinct p from Purchase p left join fetch p.booksDetails where p.transaction_id in :ids order by p.transaction_id")
+    List<Purchase> findWithDetailsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select min(p.transaction_id) from Purchase p")
+    Long findMinId();
+
+    @Query("select max(p.transaction_id) from Purchase p")
+    Long findMaxId();
+
+    @Query("select min(p.createdAt) from Purchase p")
+    Instant findOldestCreatedAt();
+
+    @Query("select p.transaction_id from Purchase p where p.createdAt >= :from and p.createdAt < :to order by p.transaction_id")
+    List<Long> findIdsByCreatedAtBetween(@Param("from") Instant from, @Param("to") Instant to);
+
+    @Modifying
+    @Query("delete from PurchaseDetails d where d.purchase.transaction_id in :ids")
+    int deleteDetailsByPurchaseIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("delete from Purchase p where p.transaction_id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Solo los pagos correctos: son los unicos que cuentan en los acumulados
+    @Query("select distinct p from Purchase p left join fetch p.booksDetails "
+            + "where p.transaction_id between :from and :to and p.successfulPayment = true")
+    List<Purchase> findSuccessfulWithDetailsByIdBetween(@Param("from") Long from, @Param("to") Long to);
 
 }
@@ -0,0 +1,46 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.PurchaseSearchOutboxEntry;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+interface IPurchaseSearchOutboxJpaRepository extends JpaRepository<PurchaseSearchOutboxEntry, Long> {
+
+    // Si la compra ya estaba pendiente se vuelve a proyectar cuanto antes. Lo comparte ReactivePurchaseRepository
+    String ENQUEUE = "INSERT INTO purchase_search_outbox (transaction_id, attempts, next_attempt_at) "
+            + "VALUES (:transactionId, 0, :now) "
+            + "ON DUPLICATE KEY UPDATE attempts = 0, next_attempt_at = :now, last_error = NULL";
+
+    @Modifying
+    @Query(value = ENQUEUE, nativeQuery = true)
+    int enqueue(@Param("transactionId") Long transactionId, @Param("now") Instant now);
+
+    // Reproyeccion de un tramo: se borran antes sus entradas pendientes para no chocar con la clave primaria
+    @Modifying
+    @Query(value = "DELETE FROM purchase_search_outbox WHERE transaction_id BETWEEN :from AND :to", nativeQuery = true)
+    int deleteBetween(@Param("from") Long from, @Param("to") Long to);
+
+    @Modifying
+    @Query(value = "INSERT INTO purchase_search_outbox (transaction_id, attempts, next_attempt_at) "
+            + "SELECT transaction_id, 0, :now FROM purchases WHERE transaction_id BETWEEN :from AND :to", nativeQuery = true)
+    int enqueueBetween(@Param("from") Long from, @Param("to") Long to, @Param("now") Instant now);
+
+    List<PurchaseSearchOutboxEntry> findByNextAttemptAtLessThanEqualOrderByTransactionId(Instant now, Limit limit);
+
+    @Modifying
+    @Query("delete from PurchaseSearchOutboxEntry e where e.transactionId in :ids")
+    int deleteByTransactionIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("update PurchaseSearchOutboxEntry e set e.attempts = e.attempts + 1, e.nextAttemptAt = :nextAttemptAt, "
+            + "e.lastError = :error where e.transactionId in :ids")
+    int reschedule(@Param("ids") Collection<Long> ids, @Param("nextAttemptAt") Instant nextAttemptAt, @Param("error") String error);
+
+}
@@ -0,0 +1,41 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.StockOutboxEvent;
+import com.actividad.booksPayments.data.model.StockOutboxStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+interface IStockOutboxJpaRepository extends JpaRepository<StockOutboxEvent, Long> {
+
+    List<StockOutboxEvent> findByStatusAndNextAttemptAtLessThanEqualOrderById(StockOutboxStatus status, Instant now, Limit limit);
+
+    List<StockOutboxEvent> findByBatchKeyInAndStatus(Collection<String> batchKeys, StockOutboxStatus status);
+
+    @Modifying
+    @Query("update StockOutboxEvent e set e.status = :status, e.lastError = :error, e.version = e.version + 1 where e.id in :ids")
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("status") StockOutboxStatus status, @Param("error") String error);
+
+    @Modifying
+    @Query("update StockOutboxEvent e set e.attempts = e.attempts + 1, e.nextAttemptAt = :nextAttemptAt, e.lastError = :error, "
+            + "e.version = e.version + 1 where e.id in :ids")
+    int reschedule(@Param("ids") Collection<Long> ids, @Param("nextAttemptAt") Instant nextAttemptAt, @Param("error") String error);
+
+    @Modifying
+    @Query("update StockOutboxEvent e set e.batchKey = :batchKey, e.nextAttemptAt = :nextAttemptAt, e.version = e.version + 1 "
+            + "where e.id = :id")
+    int assignBatchKey(@Param("id") Long id, @Param("batchKey") String batchKey, @Param("nextAttemptAt") Instant nextAttemptAt);
+
+    long countByStatus(StockOutboxStatus status);
+
+    @Modifying
+    @Query("delete from StockOutboxEvent e where e.status = :status and e.createdAt < :before")
+    int deleteByStatusAndCreatedAtBefore(@Param("status") StockOutboxStatus status, @Param("before") Instant before);
+
+}
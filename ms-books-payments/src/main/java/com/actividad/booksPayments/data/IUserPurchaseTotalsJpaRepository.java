@@ -0,0 +1,22 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.UserPurchaseTotals;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+interface IUserPurchaseTotalsJpaRepository extends JpaRepository<UserPurchaseTotals, String> {
+
+    // Lo comparte ReactivePurchaseRepository
+    String ADD = "INSERT INTO user_purchase_totals (user_id, purchase_count, book_count, amount) "
+            + "VALUES (:userId, :purchaseCount, :bookCount, :amount) "
+            + "ON DUPLICATE KEY UPDATE purchase_count = purchase_count + :purchaseCount, book_count = book_count + :bookCount, "
+            + "amount = amount + :amount";
+
+    @Modifying
+    @Query(value = ADD, nativeQuery = true)
+    int add(@Param("userId") String userId, @Param("purchaseCount") long purchaseCount, @Param("bookCount") long bookCount,
+            @Param("amount") double amount);
+
+}
@@ -0,0 +1,63 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.IdempotencyRecord;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyRepository {
+
+    private final IIdempotencyJpaRepository repository;
+    private final EntityManager entityManager;
+
+    public Optional<IdempotencyRecord> find(String key) {
+        return repository.findById(key);
+    }
+
+    /**
+     * Reserva la clave insertando el registro en curso. La clave primaria hace que solo una peticion (de
+     * cualquier instancia) lo consiga: las demas reciben DataIntegrityViolationException.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void claim(String key, String requestHash, Instant now, Instant expiresAt) {
+        // persist y no save: save haria merge sobre una clave existente en lugar de fallar
+        entityManager.persist(IdempotencyRecord.builder()
+                .idempotencyKey(key)
+                .requestHash(requestHash)
+                .createdAt(now)
+                .expiresAt(expiresAt)
+                .build());
+        entityManager.flush();
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void complete(String key, int status, String contentType, String body) {
+        repository.complete(key, status, contentType, body);
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void release(String key) {
+        repository.deleteById(key);
+    }
+
+    /**
+     * Libera una clave en curso desde antes de {@code before}: la instancia que la reservo no llego a terminar.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean releaseStale(String key, Instant before) {
+        return repository.deleteStaleInProgress(key, before) > 0;
+    }
+
+    @Transactional
+    public int purgeExpired(Instant now) {
+        return repository.deleteExpired(now);
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.model.PurchaseArchiveSegment;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archivo frio de compras: un fichero NDJSON comprimido por mes archivado (una compra con sus lineas por linea)
+ * y su entrada en purchase_archive_segments. Los meses se cuentan en UTC. Los segmentos son inmutables, asi
+ * que los ultimos leidos se guardan ya decodificados en una cache acotada.
+ */
+@Repository
+public class PurchaseArchiveRepository {
+
+    private static final String EXTENSION = ".ndjson.gz";
+
+    // Mapper propio: el formato de los ficheros no puede cambiar con la configuracion de Jackson de la aplicacion
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private final IPurchaseArchiveSegmentJpaRepository segments;
+    private final Path directory;
+    private final LoadingCache<String, List<Purchase>> decoded;
+
+    public PurchaseArchiveRepository(
+            IPurchaseArchiveSegmentJpaRepository segments,
+            @Value("${purchases.archive.dir:./purchase-archive}") Path directory,
+            @Value("${purchases.archive.cache-segments:4}") long cacheSegments) {
+        this.segments = segments;
+        this.directory = directory;
+        this.decoded = Caffeine.newBuilder()
+                .maximumSize(cacheSegments)
+                .build(this::read);
+    }
+
+    public static Instant monthStart(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    /**
+     * Escribe las compras del mes en un fichero nuevo, cargandolas por tramos de chunkSize ids con loader. El
+     * fichero se escribe con otro nombre y se renombra al terminar: un segmento a medias nunca tiene el nombre
+     * final. Devuelve el segmento sin registrar, con los usuarios que contiene; hasta que se registre no se lee.
+     */
+    public PurchaseArchiveSegment write(YearMonth month, List<Long> ids, int chunkSize, Function<List<Long>, List<Purchase>> loader) {
+        Instant now = Instant.now();
+        String fileName = "purchases-" + month + "-" + now.toEpochMilli() + EXTENSION;
+        Path target = directory.resolve(fileName);
+        Path partial = directory.resolve(fileName + ".part");
+        int count = 0;
+        long minId = Long.MAX_VALUE;
+        long maxId = Long.MIN_VALUE;
+        Set<String> userIds = new HashSet<>();
+        try {
+            Files.createDirectories(directory);
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(partial)), StandardCharsets.UTF_8))) {
+                for (int from = 0; from < ids.size(); from += chunkSize) {
+                    for (Purchase purchase : loader.apply(ids.subList(from, Math.min(from + chunkSize, ids.size())))) {
+                        writer.write(MAPPER.writeValueAsString(purchase));
+                        writer.newLine();
+                        count++;
+                        minId = Math.min(minId, purchase.getTransaction_id());
+                        maxId = Math.max(maxId, purchase.getTransaction_id());
+                        userIds.add(purchase.getUserId());
+                    }
+                }
+            }
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se ha podido escribir el segmento " + fileName, e);
+        }
+        return PurchaseArchiveSegment.builder()
+                .fileName(fileName)
+                .month(month.toString())
+                .periodStart(monthStart(month))
+                .periodEnd(monthStart(month.plusMonths(1)))
+                .purchaseCount(count)
+                .minId(minId)
+                .maxId(maxId)
+                .archivedAt(now)
+                .userIds(userIds)
+                .build();
+    }
+
+    /**
+     * Registra el segmento y sus usuarios. Se llama en la transaccion que borra sus compras de las tablas calientes.
+     */
+    public void register(PurchaseArchiveSegment segment) {
+        segments.save(segment);
+    }
+
+    public Optional<Purchase> find(long id) {
+        return segments.findContaining(id).stream()
+                .flatMap(segment -> decoded.get(segment.getFileName()).stream())
+                .filter(purchase -> purchase.getTransaction_id() == id)
+                .findFirst();
+    }
+
+    /**
+     * Hasta limit compras del usuario con transaction_id mayor que after y created_at en [from, to), ordenadas
+     * por transaction_id. Solo se leen los segmentos que contienen compras del usuario y cuyo mes cruza la
+     * ventana, asi que sin ventana tampoco se decodifica el archivo entero; se deja de leer cuando el menor id
+     * del siguiente segmento ya no puede entrar en el resultado.
+     */
+    public List<Purchase> findUser(String userId, long after, int limit, Instant from, Instant to) {
+        List<Purchase> found = new ArrayList<>();
+        for (PurchaseArchiveSegment segment : segments.findUserOverlapping(userId, after, from, to)) {
+            if (found.size() >= limit && segment.getMinId() > found.get(limit - 1).getTransaction_id()) {
+                break;
+            }
+            decoded.get(segment.getFileName()).stream()
+                    .filter(purchase -> userId.equals(purchase.getUserId()) && purchase.getTransaction_id() > after)
+                    .filter(purchase -> !purchase.getCreatedAt().isBefore(from) && purchase.getCreatedAt().isBefore(to))
+                    .forEach(found::add);
+            found.sort(Comparator.comparing(Purchase::getTransaction_id));
+            if (found.size() > limit) {
+                found.subList(limit, found.size()).clear();
+            }
+        }
+        return found;
+    }
+
+    public List<PurchaseArchiveSegment> getSegments() {
+        return segments.findAllByOrderByMinId();
+    }
+
+    // Sin pasar por la cache: la reconstruccion de acumulados recorre todos los segmentos una vez
+    public List<Purchase> readSegment(PurchaseArchiveSegment segment) {
+        return read(segment.getFileName());
+    }
+
+    private List<Purchase> read(String fileName) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(directory.resolve(fileName))), StandardCharsets.UTF_8))) {
+            List<Purchase> purchases = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                purchases.add(MAPPER.readValue(line, Purchase.class));
+            }
+            return purchases;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se ha podido leer el segmento " + fileName, e);
+        }
+    }
+}
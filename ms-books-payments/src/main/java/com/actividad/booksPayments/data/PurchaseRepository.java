@@ -2,27 +2,190 @@ package com.actividad.booksPayments.data;
 
 
 import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.model.PurchaseArchiveSegment;
+import com.actividad.booksPayments.data.utils.PurchasePage;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository
 @RequiredArgsConstructor
 public class PurchaseRepository {
 
+    // Ventana abierta: created_at de cualquier compra
+    private static final Instant MIN_CREATED_AT = Instant.EPOCH;
+    private static final Instant MAX_CREATED_AT = Instant.parse("9999-12-31T00:00:00Z");
+
     private final IPurchaseJpaRepository repository;
+    private final EntityManager entityManager;
+    private final StockOutboxRepository stockOutboxRepository;
+    private final PurchaseRollupRepository rollupRepository;
+    private final PurchaseSearchOutboxRepository searchOutboxRepository;
+    private final PurchaseArchiveRepository archiveRepository;
 
+    /**
+     * Guarda la compra, suma sus importes a los acumulados y la deja pendiente de proyectar en el indice de
+     * busqueda, todo en la misma transaccion.
+     */
+    @Transactional
     public Purchase save(Purchase purchase) {
-        return repository.save(purchase);
+        Purchase saved = repository.save(purchase);
+        rollupRepository.apply(List.of(saved));
+        searchOutboxRepository.enqueue(List.of(saved));
+        return saved;
+    }
+
+    /**
+     * Guarda la compra y sus ajustes de stock pendientes en la misma transaccion: o quedan las dos cosas o
+     * ninguna, aunque el proceso caiga antes de avisar al catalogo.
+     */
+    @Transactional
+    public Purchase saveWithStockOutbox(Purchase purchase) {
+        Purchase saved = repository.save(purchase);
+        stockOutboxRepository.enqueue(saved);
+        rollupRepository.apply(List.of(saved));
+        searchOutboxRepository.enqueue(List.of(saved));
+        return saved;
     }
 
+    /**
+     * Guarda las compras en una transaccion, vaciando el contexto de persistencia cada chunkSize compras
+     * para que la memoria no crezca con el tamano de la importacion. Los INSERT salen en lotes JDBC y los
+     * acumulados se actualizan una vez por chunk.
+     */
+    @Transactional
+    public int importAll(List<Purchase> purchases, int chunkSize) {
+        for (int from = 0; from < purchases.size(); from += chunkSize) {
+            List<Purchase> chunk = purchases.subList(from, Math.min(from + chunkSize, purchases.size()));
+            repository.saveAll(chunk);
+            rollupRepository.apply(chunk);
+            searchOutboxRepository.enqueue(chunk);
+            entityManager.flush();
+            entityManager.clear();
+        }
+        return purchases.size();
+    }
+
+    /**
+     * Busca primero en las tablas calientes y, si no esta, en los segmentos del archivo que pueden contener el id.
+     */
     public Purchase getIdTransaction(Long id) {
-        return repository.findById(id).orElse(null);
+        return repository.findById(id).or(() -> archiveRepository.find(id)).orElse(null);
+    }
+
+    // Compras con sus lineas en una consulta, para proyectarlas en el indice de busqueda
+    @Transactional(readOnly = true)
+    public List<Purchase> getWithDetails(Collection<Long> ids) {
+        return ids.isEmpty() ? List.of() : repository.findWithDetailsByIdIn(ids);
+    }
+
+    public PurchasePage getPaymentsUser(String userId, long after, int size) {
+        return getPaymentsUser(userId, after, size, null, null);
+    }
+
+    /**
+     * Pagina por keyset sobre transaction_id con las compras de las tablas calientes y las del archivo. En las
+     * tablas calientes son dos consultas por pagina: los ids de la pagina (pidiendo uno de mas para saber si hay
+     * siguiente) y despues esas compras con sus lineas; el fetch join no se pagina directamente porque Hibernate
+     * aplicaria el limite en memoria sobre el producto compra x linea. Del archivo solo se leen los segmentos que
+     * contienen compras del usuario y cuyo mes cruza la ventana [from, to) (sin ventana, todos sus meses).
+     */
+    @Transactional(readOnly = true)
+    public PurchasePage getPaymentsUser(String userId, long after, int size, Instant from, Instant to) {
+        Instant start = from == null ? MIN_CREATED_AT : from;
+        Instant end = to == null ? MAX_CREATED_AT : to;
+        List<Long> hotIds = from == null && to == null
+                ? repository.findIdsByUserIdAfter(userId, after, Limit.of(size + 1))
+                : repository.findIdsByUserIdAfterBetween(userId, after, start, end, Limit.of(size + 1));
+        Map<Long, Purchase> archived = archiveRepository.findUser(userId, after, size + 1, start, end).stream()
+                .collect(Collectors.toMap(Purchase::getTransaction_id, Function.identity()));
+
+        // Se mezclan por id: un mes archivado puede tener ids mayores que compras posteriores, porque cada
+        // instancia reserva su propio bloque de la secuencia
+        List<Long> ids = Stream.concat(hotIds.stream(), archived.keySet().stream()).sorted().limit(size + 1L).toList();
+        boolean hasNext = ids.size() > size;
+        List<Long> pageIds = hasNext ? ids.subList(0, size) : ids;
+        List<Long> hotPageIds = pageIds.stream().filter(id -> !archived.containsKey(id)).toList();
+
+        List<Purchase> purchases = new ArrayList<>(hotPageIds.isEmpty() ? List.of() : repository.findWithDetailsByIdIn(hotPageIds));
+        pageIds.stream().filter(archived::containsKey).map(archived::get).forEach(purchases::add);
+        purchases.sort(Comparator.comparing(Purchase::getTransaction_id));
+        return new PurchasePage(purchases, hasNext ? pageIds.getLast() : null);
+    }
+
+    // Extremos de transaction_id (null si no hay compras) para repartir la reconstruccion de los acumulados en tramos
+    public Long getMinId() {
+        return repository.findMinId();
+    }
+
+    public Long getMaxId() {
+        return repository.findMaxId();
+    }
+
+    /**
+     * Suma a los acumulados las compras con transaction_id entre from y to (ambos incluidos), en su propia
+     * transaccion. Varios tramos se pueden recalcular en paralelo: los upserts solo suman.
+     */
+    @Transactional
+    public int rebuildRollups(long from, long to) {
+        List<Purchase> purchases = repository.findSuccessfulWithDetailsByIdBetween(from, to);
+        rollupRepository.apply(purchases);
+        return purchases.size();
+    }
+
+    // Igual que rebuildRollups con las compras de un segmento del archivo
+    @Transactional
+    public int rebuildRollups(PurchaseArchiveSegment segment) {
+        List<Purchase> purchases = archiveRepository.readSegment(segment).stream()
+                .filter(purchase -> Boolean.TRUE.equals(purchase.getSuccessfulPayment()))
+                .toList();
+        rollupRepository.apply(purchases);
+        return purchases.size();
+    }
+
+    public List<PurchaseArchiveSegment> getArchiveSegments() {
+        return archiveRepository.getSegments();
+    }
+
+    // created_at de la compra mas antigua que sigue en las tablas calientes, o null si no hay compras
+    public Instant getOldestCreatedAt() {
+        return repository.findOldestCreatedAt();
+    }
+
+    public List<Long> getIdsCreatedBetween(Instant from, Instant to) {
+        return repository.findIdsByCreatedAtBetween(from, to);
     }
 
-    public List<Purchase> getPaymentsUser(String userId) {
-        return repository.findByUserId(userId);
+    /**
+     * Registra el segmento ya escrito y borra sus compras de las tablas calientes en una sola transaccion: si
+     * falla, las compras siguen en las tablas y el fichero queda sin registrar (no se lee nunca). Si otra
+     * instancia ya ha archivado alguna de las compras se deshace todo, para no registrar compras duplicadas.
+     */
+    @Transactional
+    public void moveToArchive(PurchaseArchiveSegment segment, List<Long> ids, int chunkSize) {
+        archiveRepository.register(segment);
+        int deleted = 0;
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+            repository.deleteDetailsByPurchaseIdIn(chunk);
+            deleted += repository.deleteByIdIn(chunk);
+        }
+        if (deleted != ids.size()) {
+            throw new IllegalStateException("El segmento " + segment.getFileName() + " tiene " + ids.size()
+                    + " compras pero solo se han borrado " + deleted + " de las tablas calientes");
+        }
     }
 
 }
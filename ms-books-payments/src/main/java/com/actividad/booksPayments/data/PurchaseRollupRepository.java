@@ -0,0 +1,77 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.BookSalesTotals;
+import com.actividad.booksPayments.data.model.DailyRevenue;
+import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.model.UserPurchaseTotals;
+import com.actividad.booksPayments.data.utils.RollupDelta;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Acumulados por usuario, por libro y por dia. Se mantienen sumando los incrementos de cada compra con upserts
+ * (INSERT ... ON DUPLICATE KEY UPDATE) y se leen por clave primaria, sin recorrer purchases ni purchases_details.
+ */
+@Repository
+public class PurchaseRollupRepository {
+
+    private final IUserPurchaseTotalsJpaRepository userTotals;
+    private final IBookSalesTotalsJpaRepository bookTotals;
+    private final IDailyRevenueJpaRepository dailyRevenue;
+    private final ZoneId zone;
+
+    public PurchaseRollupRepository(
+            IUserPurchaseTotalsJpaRepository userTotals,
+            IBookSalesTotalsJpaRepository bookTotals,
+            IDailyRevenueJpaRepository dailyRevenue,
+            @Value("${purchases.rollups.zone:UTC}") ZoneId zone) {
+        this.userTotals = userTotals;
+        this.bookTotals = bookTotals;
+        this.dailyRevenue = dailyRevenue;
+        this.zone = zone;
+    }
+
+    /**
+     * Suma las compras a los acumulados. Se llama dentro de la transaccion que las guarda.
+     */
+    @Transactional
+    public void apply(Collection<Purchase> purchases) {
+        RollupDelta delta = RollupDelta.of(purchases, zone);
+        delta.getUsers().forEach((userId, totals) ->
+                userTotals.add(userId, totals.getPurchaseCount(), totals.getBookCount(), totals.getAmount()));
+        delta.getBooks().forEach((bookId, totals) ->
+                bookTotals.add(bookId, totals.getBookName(), totals.getPurchaseCount(), totals.getBookCount(), totals.getValuePaid()));
+        delta.getDays().forEach((day, totals) ->
+                dailyRevenue.add(day, totals.getPurchaseCount(), totals.getBookCount(), totals.getAmount()));
+    }
+
+    public Optional<UserPurchaseTotals> findUser(String userId) {
+        return userTotals.findById(userId);
+    }
+
+    public Optional<BookSalesTotals> findBook(String bookId) {
+        return bookTotals.findById(bookId);
+    }
+
+    public List<DailyRevenue> findDays(LocalDate from, LocalDate to) {
+        return dailyRevenue.findByRevenueDateBetweenOrderByRevenueDate(from, to);
+    }
+
+    /**
+     * Vacia los acumulados antes de recalcularlos.
+     */
+    @Transactional
+    public void clear() {
+        userTotals.deleteAllInBatch();
+        bookTotals.deleteAllInBatch();
+        dailyRevenue.deleteAllInBatch();
+    }
+
+}
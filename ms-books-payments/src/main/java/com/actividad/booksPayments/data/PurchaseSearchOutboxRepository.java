@@ -0,0 +1,81 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.model.PurchaseSearchOutboxEntry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Cola de compras pendientes de proyectar en OpenSearch. Solo se escribe con purchases.search.enabled: sin
+ * indice de busqueda no hay nadie que la vacie.
+ */
+@Repository
+public class PurchaseSearchOutboxRepository {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final IPurchaseSearchOutboxJpaRepository repository;
+    private final boolean enabled;
+
+    public PurchaseSearchOutboxRepository(
+            IPurchaseSearchOutboxJpaRepository repository,
+            @Value("${purchases.search.enabled:false}") boolean enabled) {
+        this.repository = repository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Se llama dentro de la transaccion que guarda las compras.
+     */
+    @Transactional
+    public void enqueue(Collection<Purchase> purchases) {
+        if (!enabled) {
+            return;
+        }
+        Instant now = Instant.now();
+        purchases.forEach(purchase -> repository.enqueue(purchase.getTransaction_id(), now));
+    }
+
+    /**
+     * Vuelve a encolar las compras con transaction_id entre from y to. Devuelve cuantas se han encolado.
+     */
+    @Transactional
+    public int replay(long from, long to) {
+        repository.deleteBetween(from, to);
+        return repository.enqueueBetween(from, to, Instant.now());
+    }
+
+    /**
+     * Reclama hasta limit compras pendientes retrasando su siguiente intento lease. Si dos proyectores reclaman
+     * la misma compra no pasa nada: el documento se indexa con el transaction_id como id.
+     */
+    @Transactional
+    public List<PurchaseSearchOutboxEntry> claimDue(Instant now, int limit, Duration lease) {
+        List<PurchaseSearchOutboxEntry> due = repository.findByNextAttemptAtLessThanEqualOrderByTransactionId(now, Limit.of(limit));
+        Instant leaseUntil = now.plus(lease);
+        due.forEach(entry -> entry.setNextAttemptAt(leaseUntil));
+        return due;
+    }
+
+    @Transactional
+    public void markProjected(Collection<Long> ids) {
+        repository.deleteByTransactionIdIn(ids);
+    }
+
+    @Transactional
+    public void reschedule(Collection<Long> ids, Instant nextAttemptAt, String error) {
+        repository.reschedule(ids, nextAttemptAt, error == null || error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH));
+    }
+
+    public long countPending() {
+        return repository.count();
+    }
+
+}
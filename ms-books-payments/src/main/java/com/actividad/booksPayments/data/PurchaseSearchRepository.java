@@ -0,0 +1,110 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.PurchaseDocument;
+import com.actividad.booksPayments.data.utils.PurchaseSearchCriteria;
+import com.actividad.booksPayments.data.utils.PurchaseSearchPage;
+import lombok.RequiredArgsConstructor;
+import org.opensearch.data.client.orhlc.NativeSearchQueryBuilder;
+import org.opensearch.index.query.BoolQueryBuilder;
+import org.opensearch.index.query.Operator;
+import org.opensearch.index.query.QueryBuilders;
+import org.opensearch.index.query.RangeQueryBuilder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Indice "purchases" de OpenSearch: modelo de lectura de las compras para busquedas que la base de datos
+ * solo podria resolver recorriendo las tablas. Lo alimenta PurchaseSearchProjector.
+ */
+@Repository
+@ConditionalOnProperty(name = "purchases.search.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class PurchaseSearchRepository {
+
+    private static final String TRANSACTION_ID = "transactionId";
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc(TRANSACTION_ID));
+    private static final BulkOptions BULK_OPTIONS = BulkOptions.builder().withRefreshPolicy(RefreshPolicy.NONE).build();
+
+    private final ElasticsearchOperations elasticsearchOperations;
+
+    private volatile boolean indexReady;
+
+    /**
+     * Indexa las compras en una peticion bulk. Si alguna falla lanza BulkFailureException y el proyector
+     * reintenta el lote completo: reindexar un documento con el mismo id no lo duplica.
+     */
+    public void index(List<PurchaseDocument> purchases) {
+        ensureIndex();
+        List<IndexQuery> queries = purchases.stream()
+                .map(purchase -> new IndexQueryBuilder().withId(purchase.getId()).withObject(purchase).build())
+                .toList();
+        elasticsearchOperations.bulkIndex(queries, BULK_OPTIONS, elasticsearchOperations.getIndexCoordinatesFor(PurchaseDocument.class));
+    }
+
+    public PurchaseSearchPage search(PurchaseSearchCriteria criteria, int size) {
+        ensureIndex();
+        NativeSearchQueryBuilder query = new NativeSearchQueryBuilder()
+                .withQuery(buildQuery(criteria))
+                .withSort(NEWEST_FIRST)
+                .withMaxResults(size + 1)
+                .withTrackTotalHits(false);
+        List<PurchaseDocument> hits = elasticsearchOperations.search(query.build(), PurchaseDocument.class)
+                .stream()
+                .map(SearchHit::getContent)
+                .toList();
+        boolean hasNext = hits.size() > size;
+        List<PurchaseDocument> page = hasNext ? hits.subList(0, size) : hits;
+        return new PurchaseSearchPage(page, hasNext ? page.getLast().getTransactionId() : null);
+    }
+
+    private BoolQueryBuilder buildQuery(PurchaseSearchCriteria criteria) {
+        // Todo en filter: no hace falta puntuar, el orden es por transactionId, y OpenSearch puede cachear los filtros
+        BoolQueryBuilder query = QueryBuilders.boolQuery();
+        if (criteria.getUserId() != null) {
+            query.filter(QueryBuilders.termQuery("userId", criteria.getUserId()));
+        }
+        if (criteria.getPaymentMethod() != null) {
+            query.filter(QueryBuilders.termQuery("paymentMethod", criteria.getPaymentMethod()));
+        }
+        if (criteria.getBookName() != null) {
+            query.filter(QueryBuilders.matchQuery("books.bookName", criteria.getBookName()).operator(Operator.AND));
+        }
+        if (criteria.getMinAmount() != null || criteria.getMaxAmount() != null) {
+            RangeQueryBuilder amount = QueryBuilders.rangeQuery("amount");
+            if (criteria.getMinAmount() != null) {
+                amount.gte(criteria.getMinAmount());
+            }
+            if (criteria.getMaxAmount() != null) {
+                amount.lte(criteria.getMaxAmount());
+            }
+            query.filter(amount);
+        }
+        if (criteria.getAfter() != null) {
+            query.filter(QueryBuilders.rangeQuery(TRANSACTION_ID).lt(criteria.getAfter()));
+        }
+        return query;
+    }
+
+    // El indice se crea con el mapeo de PurchaseDocument antes del primer bulk; si no, OpenSearch lo crearia con
+    // mapeo dinamico (bookName sin subcampo keyword, fechas como texto...)
+    private void ensureIndex() {
+        if (indexReady) {
+            return;
+        }
+        IndexOperations indexOps = elasticsearchOperations.indexOps(PurchaseDocument.class);
+        if (!indexOps.exists()) {
+            indexOps.createWithMapping();
+        }
+        indexReady = true;
+    }
+}
@@ -0,0 +1,245 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.model.PurchaseDetails;
+import com.actividad.booksPayments.data.utils.Consts;
+import com.actividad.booksPayments.data.utils.PurchasePage;
+import com.actividad.booksPayments.data.utils.RollupDelta;
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Version R2DBC de {@link PurchaseRepository} sobre las mismas tablas. Las lecturas traen la compra y sus
+ * lineas en una unica consulta (LEFT JOIN) y las agrupan en memoria.
+ */
+@Repository
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactivePurchaseRepository {
+
+    // Ids de las mismas secuencias que usa Hibernate: cada valor obtenido aqui queda fuera de sus bloques
+    private static final String NEXT_ID = "SELECT NEXT VALUE FOR %s AS id";
+    private static final String INSERT_PURCHASE = "INSERT INTO purchases (transaction_id, user_id, amount, payment_method, successful_payment, created_at) "
+            + "VALUES (:transactionId, :userId, :amount, :paymentMethod, :successfulPayment, :createdAt)";
+    private static final String INSERT_DETAIL = "INSERT INTO purchases_details (id, transaction_id, book_id, book_name, book_count, value_paid) "
+            + "VALUES (:id, :transactionId, :bookId, :bookName, :bookCount, :valuePaid)";
+    private static final String INSERT_OUTBOX = "INSERT INTO stock_outbox (id, transaction_id, book_id, delta, status, attempts, "
+            + "next_attempt_at, created_at, version) VALUES (NEXT VALUE FOR " + Consts.STOCK_OUTBOX_SEQUENCE
+            + ", :transactionId, :bookId, :delta, 'PENDING', 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 0)";
+    private static final String SELECT_PURCHASES = "SELECT p.transaction_id, p.user_id, p.amount, p.payment_method, p.successful_payment, p.created_at, "
+            + "d.id AS detail_id, d.book_id, d.book_name, d.book_count, d.value_paid "
+            + "FROM purchases p LEFT JOIN purchases_details d ON d.transaction_id = p.transaction_id ";
+    private static final String BY_ID = SELECT_PURCHASES + "WHERE p.transaction_id = :id ORDER BY d.id";
+    private static final String BY_IDS = SELECT_PURCHASES + "WHERE p.transaction_id IN (:ids) ORDER BY p.transaction_id, d.id";
+    private static final String PAGE_IDS = "SELECT transaction_id FROM purchases WHERE user_id = :userId AND transaction_id > :after "
+            + "ORDER BY transaction_id LIMIT :limit";
+    private static final String DETAIL_ID = "detail_id";
+    private static final String ID = "id";
+
+    private final DatabaseClient purchasesDatabaseClient;
+
+    @Value("${purchases.rollups.zone:UTC}")
+    private ZoneId rollupZone;
+
+    @Value("${purchases.search.enabled:false}")
+    private boolean searchEnabled;
+
+    /**
+     * Inserta la compra, despues sus lineas, suma sus importes a los acumulados y la deja pendiente de proyectar
+     * en el indice de busqueda, igual que {@link PurchaseRepository#save}. La atomicidad la da la transaccion de
+     * quien se suscribe.
+     */
+    public Mono<Purchase> save(Purchase purchase) {
+        if (purchase.getCreatedAt() == null) {
+            purchase.setCreatedAt(Instant.now());
+        }
+        return nextId(Consts.PURCHASES_SEQUENCE)
+                .flatMap(transactionId -> {
+                    GenericExecuteSpec insert = purchasesDatabaseClient.sql(INSERT_PURCHASE)
+                            .bind("transactionId", transactionId)
+                            .bind("amount", purchase.getAmount())
+                            .bind("createdAt", purchase.getCreatedAt());
+                    insert = bindNullable(insert, "userId", purchase.getUserId(), String.class);
+                    insert = bindNullable(insert, "paymentMethod", purchase.getPaymentMethod(), String.class);
+                    insert = bindNullable(insert, "successfulPayment", purchase.getSuccessfulPayment(), Boolean.class);
+                    return insert.then().thenReturn(transactionId);
+                })
+                .flatMap(transactionId -> {
+                    purchase.setTransaction_id(transactionId);
+                    List<PurchaseDetails> details = purchase.getBooksDetails() == null ? List.of() : purchase.getBooksDetails();
+                    // Las sentencias de una misma transaccion comparten conexion: se ejecutan en orden
+                    return Flux.fromIterable(details)
+                            .concatMap(detail -> saveDetail(transactionId, detail))
+                            .then(applyRollups(purchase))
+                            .then(enqueueSearchProjection(purchase))
+                            .then(Mono.just(purchase));
+                });
+    }
+
+    /**
+     * Version reactiva de {@link PurchaseRepository#saveWithStockOutbox}: la compra y un evento de stock por
+     * linea, en la transaccion de quien se suscribe.
+     */
+    public Mono<Purchase> saveWithStockOutbox(Purchase purchase) {
+        return save(purchase)
+                .flatMap(saved -> Flux.fromIterable(saved.getBooksDetails() == null ? List.of() : saved.getBooksDetails())
+                        .concatMap(detail -> purchasesDatabaseClient.sql(INSERT_OUTBOX)
+                                .bind("transactionId", saved.getTransaction_id())
+                                .bind("bookId", detail.getBookId())
+                                .bind("delta", -detail.getBookCount())
+                                .then())
+                        .then(Mono.just(saved)));
+    }
+
+    public Mono<Purchase> getIdTransaction(Long id) {
+        return purchasesDatabaseClient.sql(BY_ID)
+                .bind(ID, id)
+                .map(this::toRow)
+                .all()
+                .collectList()
+                .flatMap(rows -> Mono.justOrEmpty(group(rows).stream().findFirst()));
+    }
+
+    /**
+     * Misma paginacion por keyset que {@link PurchaseRepository#getPaymentsUser}: ids de la pagina y despues
+     * las compras con sus lineas.
+     */
+    public Mono<PurchasePage> getPaymentsUser(String userId, long after, int size) {
+        return purchasesDatabaseClient.sql(PAGE_IDS)
+                .bind("userId", userId)
+                .bind("after", after)
+                .bind("limit", size + 1)
+                .map(row -> row.get(Consts.TRANSACTION_ID, Long.class))
+                .all()
+                .collectList()
+                .flatMap(ids -> {
+                    boolean hasNext = ids.size() > size;
+                    List<Long> pageIds = hasNext ? ids.subList(0, size) : ids;
+                    Long nextCursor = hasNext ? pageIds.getLast() : null;
+                    if (pageIds.isEmpty()) {
+                        return Mono.just(new PurchasePage(List.of(), null));
+                    }
+                    return purchasesDatabaseClient.sql(BY_IDS)
+                            .bind("ids", pageIds)
+                            .map(this::toRow)
+                            .all()
+                            .collectList()
+                            .map(rows -> new PurchasePage(group(rows), nextCursor));
+                });
+    }
+
+    private Mono<PurchaseDetails> saveDetail(Long transactionId, PurchaseDetails detail) {
+        return nextId(Consts.PURCHASES_DETAILS_SEQUENCE)
+                .flatMap(id -> {
+                    GenericExecuteSpec insert = purchasesDatabaseClient.sql(INSERT_DETAIL)
+                            .bind(ID, id)
+                            .bind("transactionId", transactionId)
+                            .bind("bookCount", detail.getBookCount())
+                            .bind("valuePaid", detail.getValuePaid());
+                    insert = bindNullable(insert, "bookId", detail.getBookId(), String.class);
+                    insert = bindNullable(insert, "bookName", detail.getBookName(), String.class);
+                    detail.setId(id);
+                    return insert.then().thenReturn(detail);
+                });
+    }
+
+    // Mismos upserts que PurchaseRollupRepository.apply, en el mismo orden de claves
+    private Mono<Void> applyRollups(Purchase purchase) {
+        RollupDelta delta = RollupDelta.of(List.of(purchase), rollupZone);
+        Flux<Void> users = Flux.fromIterable(delta.getUsers().entrySet())
+                .concatMap(user -> purchasesDatabaseClient.sql(IUserPurchaseTotalsJpaRepository.ADD)
+                        .bind("userId", user.getKey())
+                        .bind("purchaseCount", user.getValue().getPurchaseCount())
+                        .bind("bookCount", user.getValue().getBookCount())
+                        .bind("amount", user.getValue().getAmount())
+                        .then());
+        Flux<Void> books = Flux.fromIterable(delta.getBooks().entrySet())
+                .concatMap(book -> bindNullable(purchasesDatabaseClient.sql(IBookSalesTotalsJpaRepository.ADD)
+                                .bind("bookId", book.getKey())
+                                .bind("purchaseCount", book.getValue().getPurchaseCount())
+                                .bind("bookCount", book.getValue().getBookCount())
+                                .bind("valuePaid", book.getValue().getValuePaid()),
+                        "bookName", book.getValue().getBookName(), String.class)
+                        .then());
+        Flux<Void> days = Flux.fromIterable(delta.getDays().entrySet())
+                .concatMap(day -> purchasesDatabaseClient.sql(IDailyRevenueJpaRepository.ADD)
+                        .bind("revenueDate", day.getKey())
+                        .bind("purchaseCount", day.getValue().getPurchaseCount())
+                        .bind("bookCount", day.getValue().getBookCount())
+                        .bind("amount", day.getValue().getAmount())
+                        .then());
+        return Flux.concat(users, books, days).then();
+    }
+
+    private Mono<Void> enqueueSearchProjection(Purchase purchase) {
+        if (!searchEnabled) {
+            return Mono.empty();
+        }
+        return purchasesDatabaseClient.sql(IPurchaseSearchOutboxJpaRepository.ENQUEUE)
+                .bind("transactionId", purchase.getTransaction_id())
+                .bind("now", Instant.now())
+                .then();
+    }
+
+    private Mono<Long> nextId(String sequence) {
+        return purchasesDatabaseClient.sql(String.format(NEXT_ID, sequence))
+                .map(row -> row.get(ID, Long.class))
+                .one();
+    }
+
+    private PurchaseRow toRow(Readable row) {
+        Purchase purchase = Purchase.builder()
+                .transaction_id(row.get(Consts.TRANSACTION_ID, Long.class))
+                .userId(row.get(Consts.USER_ID, String.class))
+                .amount(row.get(Consts.AMOUNT, Double.class))
+                .paymentMethod(row.get(Consts.PAYMENT_METHOD, String.class))
+                .successfulPayment(row.get(Consts.SUCCESSFUL_PAYMENT, Boolean.class))
+                .createdAt(row.get(Consts.CREATED_AT, Instant.class))
+                .build();
+        Long detailId = row.get(DETAIL_ID, Long.class);
+        PurchaseDetails detail = detailId == null ? null : PurchaseDetails.builder()
+                .id(detailId)
+                .bookId(row.get(Consts.BOOK_ID, String.class))
+                .bookName(row.get(Consts.BOOK_NAME, String.class))
+                .bookCount(row.get(Consts.BOOK_COUNT, Integer.class))
+                .valuePaid(row.get(Consts.VALUE_PAID, Double.class))
+                .build();
+        return new PurchaseRow(purchase, detail);
+    }
+
+    private List<Purchase> group(List<PurchaseRow> rows) {
+        Map<Long, Purchase> purchases = new LinkedHashMap<>();
+        for (PurchaseRow row : rows) {
+            Purchase purchase = purchases.computeIfAbsent(row.purchase().getTransaction_id(), id -> {
+                row.purchase().setBooksDetails(new ArrayList<>());
+                return row.purchase();
+            });
+            if (row.detail() != null) {
+                row.detail().setPurchase(purchase);
+                purchase.getBooksDetails().add(row.detail());
+            }
+        }
+        return new ArrayList<>(purchases.values());
+    }
+
+    private static <T> GenericExecuteSpec bindNullable(GenericExecuteSpec spec, String name, T value, Class<T> type) {
+        return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
+    }
+
+    private record PurchaseRow(Purchase purchase, PurchaseDetails detail) {
+    }
+}
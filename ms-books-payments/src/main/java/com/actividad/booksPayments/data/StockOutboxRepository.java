@@ -0,0 +1,120 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.model.StockOutboxEvent;
+import com.actividad.booksPayments.data.model.StockOutboxStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+@Repository
+@RequiredArgsConstructor
+public class StockOutboxRepository {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final IStockOutboxJpaRepository repository;
+
+    /**
+     * Un evento por linea de la compra (delta negativo). Se llama dentro de la transaccion que guarda la compra.
+     */
+    public void enqueue(Purchase purchase) {
+        if (purchase.getBooksDetails() == null) {
+            return;
+        }
+        Instant now = Instant.now();
+        repository.saveAll(purchase.getBooksDetails().stream()
+                .map(detail -> StockOutboxEvent.builder()
+                        .transactionId(purchase.getTransaction_id())
+                        .bookId(detail.getBookId())
+                        .delta(-detail.getBookCount())
+                        .status(StockOutboxStatus.PENDING)
+                        .nextAttemptAt(now)
+                        .createdAt(now)
+                        .build())
+                .toList());
+    }
+
+    /**
+     * Reclama hasta limit eventos pendientes y los devuelve agrupados por batchKey. Los eventos nuevos de un
+     * mismo libro se agrupan bajo una clave nueva (se suman en una sola llamada); los que ya tenian clave por
+     * un intento anterior se devuelven con todo su grupo, para que el reintento envie exactamente la misma
+     * suma. Mientras dura el lease ningun otro relay vuelve a tomarlos.
+     */
+    @Transactional
+    public Map<String, List<StockOutboxEvent>> claimDue(Instant now, int limit, Duration lease) {
+        List<StockOutboxEvent> due = repository.findByStatusAndNextAttemptAtLessThanEqualOrderById(
+                StockOutboxStatus.PENDING, now, Limit.of(limit));
+
+        List<String> retriedKeys = due.stream().map(StockOutboxEvent::getBatchKey).filter(Objects::nonNull).distinct().toList();
+        Map<String, List<StockOutboxEvent>> batches = new LinkedHashMap<>();
+        if (!retriedKeys.isEmpty()) {
+            repository.findByBatchKeyInAndStatus(retriedKeys, StockOutboxStatus.PENDING)
+                    .forEach(event -> batches.computeIfAbsent(event.getBatchKey(), key -> new ArrayList<>()).add(event));
+        }
+        due.stream()
+                .filter(event -> event.getBatchKey() == null)
+                .collect(Collectors.groupingBy(StockOutboxEvent::getBookId, LinkedHashMap::new, Collectors.toList()))
+                .values()
+                .forEach(events -> {
+                    // El id del primer evento hace la clave unica y estable
+                    String key = "outbox-" + events.getFirst().getId();
+                    events.forEach(event -> event.setBatchKey(key));
+                    batches.put(key, events);
+                });
+
+        Instant leaseUntil = now.plus(lease);
+        batches.values().forEach(events -> events.forEach(event -> event.setNextAttemptAt(leaseUntil)));
+        return batches;
+    }
+
+    @Transactional
+    public void markSent(Collection<Long> ids) {
+        repository.updateStatus(ids, StockOutboxStatus.SENT, null);
+    }
+
+    @Transactional
+    public void markFailed(Collection<Long> ids, String error) {
+        repository.updateStatus(ids, StockOutboxStatus.FAILED, truncate(error));
+    }
+
+    @Transactional
+    public void reschedule(Collection<Long> ids, Instant nextAttemptAt, String error) {
+        repository.reschedule(ids, nextAttemptAt, truncate(error));
+    }
+
+    /**
+     * Deshace un lote rechazado por el catalogo: cada evento pasa a viajar solo, con su propia clave, y se
+     * vuelve a enviar en el siguiente ciclo sin contar como intento. Asi un 4xx provocado por una compra no
+     * arrastra a FAILED al resto de compras que se habian sumado en la misma llamada.
+     */
+    @Transactional
+    public void split(Collection<StockOutboxEvent> events, Instant nextAttemptAt) {
+        events.forEach(event -> repository.assignBatchKey(event.getId(), "outbox-event-" + event.getId(), nextAttemptAt));
+    }
+
+    public long countFailed() {
+        return repository.countByStatus(StockOutboxStatus.FAILED);
+    }
+
+    @Transactional
+    public int purgeSent(Instant before) {
+        return repository.deleteByStatusAndCreatedAtBefore(StockOutboxStatus.SENT, before);
+    }
+
+    private String truncate(String error) {
+        return error == null || error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.actividad.booksPayments.data.model;
+
+import com.actividad.booksPayments.data.utils.Consts;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Acumulado de un libro: unidades vendidas, importe cobrado (suma de value_paid) y compras en las que aparece.
+ */
+@Entity
+@Table(name = "book_sales_totals")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BookSalesTotals {
+
+	@Id
+	@Column(name = Consts.BOOK_ID)
+	private String bookId;
+
+	// Nombre de la ultima compra registrada
+	@Column(name = Consts.BOOK_NAME)
+	private String bookName;
+
+	@Column(name = Consts.PURCHASE_COUNT, nullable = false)
+	private long purchaseCount;
+
+	@Column(name = Consts.BOOK_COUNT, nullable = false)
+	private long bookCount;
+
+	@Column(name = Consts.VALUE_PAID, nullable = false)
+	private double valuePaid;
+
+}
@@ -0,0 +1,38 @@
+package com.actividad.booksPayments.data.model;
+
+import com.actividad.booksPayments.data.utils.Consts;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+/**
+ * Ingresos de un dia (en la zona purchases.rollups.zone): compras pagadas, libros e importe.
+ */
+@Entity
+@Table(name = "daily_revenue")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DailyRevenue {
+
+	@Id
+	@Column(name = Consts.REVENUE_DATE)
+	private LocalDate revenueDate;
+
+	@Column(name = Consts.PURCHASE_COUNT, nullable = false)
+	private long purchaseCount;
+
+	@Column(name = Consts.BOOK_COUNT, nullable = false)
+	private long bookCount;
+
+	@Column(name = Consts.AMOUNT, nullable = false)
+	private double amount;
+
+}
@@ -0,0 +1,48 @@
+package com.actividad.booksPayments.data.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Respuesta de un POST /purchase con Idempotency-Key. Mientras la compra se esta procesando status es null;
+ * al terminar guarda el codigo y el cuerpo para devolverlos tal cual a los reintentos hasta expiresAt.
+ */
+@Entity
+@Table(name = "purchase_idempotency", indexes = @Index(name = "idx_purchase_idempotency_expires", columnList = "expires_at"))
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class IdempotencyRecord {
+
+	@Id
+	@Column(name = "idempotency_key", length = 128)
+	private String idempotencyKey;
+
+	@Column(name = "request_hash", nullable = false, length = 64)
+	private String requestHash;
+
+	@Column(name = "status")
+	private Integer status;
+
+	@Column(name = "content_type", length = 100)
+	private String contentType;
+
+	@Lob
+	@Column(name = "response_body")
+	private String responseBody;
+
+	@Column(name = "created_at", nullable = false)
+	private Instant createdAt;
+
+	@Column(name = "expires_at", nullable = false)
+	private Instant expiresAt;
+
+}
@@ -9,10 +9,15 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+
+import java.time.Instant;
 import java.util.List;
 
 @Entity
-@Table(name = "purchases")
+// user_id + created_at para las consultas de un usuario con ventana de fechas y created_at para archivar por meses
+@Table(name = "purchases", indexes = {
+		@Index(name = "idx_purchases_user_created", columnList = "user_id, created_at"),
+		@Index(name = "idx_purchases_created", columnList = "created_at")})
 @Getter
 @Setter
 @AllArgsConstructor
@@ -20,8 +25,10 @@ import java.util.List;
 @Builder
 public class Purchase {
 	
+	// Secuencia con bloques de ids en memoria: a diferencia de IDENTITY permite agrupar los INSERT en lotes JDBC
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = Consts.PURCHASES_SEQUENCE)
+	@SequenceGenerator(name = Consts.PURCHASES_SEQUENCE, sequenceName = Consts.PURCHASES_SEQUENCE, allocationSize = Consts.ID_ALLOCATION_SIZE)
 	private Long transaction_id;
 	
 	@Column(name = Consts.USER_ID)
@@ -40,5 +47,15 @@ public class Purchase {
 	@Column(name = Consts.SUCCESSFUL_PAYMENT)
 	private Boolean successfulPayment;
 
+	@Column(name = Consts.CREATED_AT, nullable = false)
+	private Instant createdAt;
+
+	@PrePersist
+	void onCreate() {
+		if (createdAt == null) {
+			createdAt = Instant.now();
+		}
+	}
+
 }
 
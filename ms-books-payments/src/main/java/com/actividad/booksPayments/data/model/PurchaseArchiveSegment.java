@@ -0,0 +1,60 @@
+package com.actividad.booksPayments.data.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Fichero del archivo frio: las compras de un mes (created_at entre periodStart y periodEnd) con sus lineas,
+ * en NDJSON comprimido con gzip. Los ficheros no se modifican nunca; si un mes se archiva dos veces tiene dos
+ * segmentos. minId y maxId permiten descartar segmentos al buscar por transaction_id; userIds (tabla
+ * purchase_archive_segment_users) permite leer solo los segmentos con compras del usuario.
+ */
+@Entity
+@Table(name = "purchase_archive_segments", indexes = @Index(name = "idx_purchase_archive_period", columnList = "period_start, period_end"))
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PurchaseArchiveSegment {
+
+	@Id
+	@Column(name = "file_name", length = 100)
+	private String fileName;
+
+	// yyyy-MM
+	@Column(name = "period_month", nullable = false, length = 7)
+	private String month;
+
+	@Column(name = "period_start", nullable = false)
+	private Instant periodStart;
+
+	@Column(name = "period_end", nullable = false)
+	private Instant periodEnd;
+
+	@Column(name = "purchase_count", nullable = false)
+	private int purchaseCount;
+
+	@Column(name = "min_id", nullable = false)
+	private long minId;
+
+	@Column(name = "max_id", nullable = false)
+	private long maxId;
+
+	@Column(name = "archived_at", nullable = false)
+	private Instant archivedAt;
+
+	@ElementCollection
+	@CollectionTable(name = "purchase_archive_segment_users", joinColumns = @JoinColumn(name = "file_name"),
+			indexes = @Index(name = "idx_purchase_archive_user", columnList = "user_id, file_name"))
+	@Column(name = "user_id", nullable = false)
+	private Set<String> userIds;
+
+}
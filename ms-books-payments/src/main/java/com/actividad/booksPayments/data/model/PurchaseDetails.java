@@ -20,7 +20,8 @@ import lombok.ToString;
 public class PurchaseDetails {
 	
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = Consts.PURCHASES_DETAILS_SEQUENCE)
+	@SequenceGenerator(name = Consts.PURCHASES_DETAILS_SEQUENCE, sequenceName = Consts.PURCHASES_DETAILS_SEQUENCE, allocationSize = Consts.ID_ALLOCATION_SIZE)
 	private Long id;
 
     @JsonBackReference
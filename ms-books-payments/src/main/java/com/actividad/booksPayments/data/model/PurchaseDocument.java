@@ -0,0 +1,99 @@
+package com.actividad.booksPayments.data.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.DateFormat;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.InnerField;
+import org.springframework.data.elasticsearch.annotations.MultiField;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Proyeccion de una compra en el indice "purchases" de OpenSearch: la compra y sus lineas en un solo documento,
+ * con el transaction_id como id para que volver a proyectarla lo sobrescriba.
+ */
+@Document(indexName = "purchases", createIndex = false)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PurchaseDocument {
+
+    @Id
+    private String id;
+
+    @Field(type = FieldType.Long, name = "transactionId")
+    private Long transactionId;
+
+    @Field(type = FieldType.Keyword, name = "userId")
+    private String userId;
+
+    @Field(type = FieldType.Double, name = "amount")
+    private Double amount;
+
+    @Field(type = FieldType.Keyword, name = "paymentMethod")
+    private String paymentMethod;
+
+    @Field(type = FieldType.Boolean, name = "successfulPayment")
+    private Boolean successfulPayment;
+
+    @Field(type = FieldType.Date, format = {DateFormat.date_optional_time, DateFormat.epoch_millis}, name = "createdAt")
+    private Instant createdAt;
+
+    @Field(type = FieldType.Object, name = "books")
+    private List<Book> books;
+
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @Builder
+    public static class Book {
+
+        @Field(type = FieldType.Keyword, name = "bookId")
+        private String bookId;
+
+        // Texto para buscar por palabras y keyword para coincidencias exactas
+        @MultiField(mainField = @Field(type = FieldType.Text),
+                otherFields = @InnerField(suffix = "keyword", type = FieldType.Keyword))
+        private String bookName;
+
+        @Field(type = FieldType.Integer, name = "bookCount")
+        private Integer bookCount;
+
+        @Field(type = FieldType.Double, name = "valuePaid")
+        private Double valuePaid;
+    }
+
+    public static PurchaseDocument from(Purchase purchase) {
+        List<PurchaseDetails> details = purchase.getBooksDetails() == null ? List.of() : purchase.getBooksDetails();
+        return PurchaseDocument.builder()
+                .id(String.valueOf(purchase.getTransaction_id()))
+                .transactionId(purchase.getTransaction_id())
+                .userId(purchase.getUserId())
+                .amount(purchase.getAmount())
+                .paymentMethod(purchase.getPaymentMethod())
+                .successfulPayment(purchase.getSuccessfulPayment())
+                .createdAt(purchase.getCreatedAt())
+                .books(details.stream()
+                        .map(detail -> Book.builder()
+                                .bookId(detail.getBookId())
+                                .bookName(detail.getBookName())
+                                .bookCount(detail.getBookCount())
+                                .valuePaid(detail.getValuePaid())
+                                .build())
+                        .toList())
+                .build();
+    }
+}
@@ -0,0 +1,39 @@
+package com.actividad.booksPayments.data.model;
+
+import com.actividad.booksPayments.data.utils.Consts;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Compra pendiente de proyectar en el indice de busqueda. Se escribe en la misma transaccion que la compra y la
+ * borra PurchaseSearchProjector cuando el documento esta indexado. Una compra tiene como mucho una entrada.
+ */
+@Entity
+@Table(name = "purchase_search_outbox", indexes = @Index(name = "idx_purchase_search_outbox_due", columnList = "next_attempt_at"))
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PurchaseSearchOutboxEntry {
+
+	@Id
+	@Column(name = Consts.TRANSACTION_ID)
+	private Long transactionId;
+
+	@Column(name = "attempts", nullable = false)
+	private int attempts;
+
+	@Column(name = "next_attempt_at", nullable = false)
+	private Instant nextAttemptAt;
+
+	@Column(name = "last_error", length = 500)
+	private String lastError;
+
+}
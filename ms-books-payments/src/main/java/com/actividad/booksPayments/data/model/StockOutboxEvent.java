@@ -0,0 +1,66 @@
+package com.actividad.booksPayments.data.model;
+
+import com.actividad.booksPayments.data.utils.Consts;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Ajuste de stock de una linea de compra, guardado en la misma transaccion que la compra y enviado despues
+ * al catalogo por StockOutboxRelay. batchKey agrupa los eventos de un libro que viajan en una sola llamada y
+ * es la Idempotency-Key de esa llamada: se asigna una vez y se mantiene en los reintentos.
+ */
+@Entity
+@Table(name = "stock_outbox", indexes = {
+        @Index(name = "idx_stock_outbox_due", columnList = "status, next_attempt_at"),
+        @Index(name = "idx_stock_outbox_batch", columnList = "batch_key")})
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class StockOutboxEvent {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = Consts.STOCK_OUTBOX_SEQUENCE)
+	@SequenceGenerator(name = Consts.STOCK_OUTBOX_SEQUENCE, sequenceName = Consts.STOCK_OUTBOX_SEQUENCE, allocationSize = Consts.ID_ALLOCATION_SIZE)
+	private Long id;
+
+	@Column(name = Consts.TRANSACTION_ID, nullable = false)
+	private Long transactionId;
+
+	@Column(name = Consts.BOOK_ID, nullable = false)
+	private String bookId;
+
+	@Column(name = "delta", nullable = false)
+	private int delta;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "status", nullable = false, length = 16)
+	private StockOutboxStatus status;
+
+	@Column(name = "batch_key", length = 64)
+	private String batchKey;
+
+	@Column(name = "attempts", nullable = false)
+	private int attempts;
+
+	@Column(name = "next_attempt_at", nullable = false)
+	private Instant nextAttemptAt;
+
+	@Column(name = "created_at", nullable = false)
+	private Instant createdAt;
+
+	@Column(name = "last_error", length = 500)
+	private String lastError;
+
+	// Dos relays no pueden reclamar el mismo evento a la vez
+	@Version
+	private long version;
+
+}
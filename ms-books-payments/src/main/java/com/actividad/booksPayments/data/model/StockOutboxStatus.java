@@ -0,0 +1,10 @@
+package com.actividad.booksPayments.data.model;
+
+/**
+ * Estado de un ajuste de stock pendiente de enviar al catalogo.
+ */
+public enum StockOutboxStatus {
+    PENDING,
+    SENT,
+    FAILED
+}
@@ -0,0 +1,36 @@
+package com.actividad.booksPayments.data.model;
+
+import com.actividad.booksPayments.data.utils.Consts;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Acumulado de un usuario: compras pagadas, libros y gasto total. Se actualiza en la transaccion de cada compra.
+ */
+@Entity
+@Table(name = "user_purchase_totals")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UserPurchaseTotals {
+
+	@Id
+	@Column(name = Consts.USER_ID)
+	private String userId;
+
+	@Column(name = Consts.PURCHASE_COUNT, nullable = false)
+	private long purchaseCount;
+
+	@Column(name = Consts.BOOK_COUNT, nullable = false)
+	private long bookCount;
+
+	@Column(name = Consts.AMOUNT, nullable = false)
+	private double amount;
+
+}
@@ -1,13 +0,0 @@
-package com.actividad.booksPayments.data.utils;
-
-import lombok.Data;
-
-import java.time.LocalDate;
-import java.util.List;
-
-@Data
-public class BookDto {
-
-    private Integer stock;
-
-}
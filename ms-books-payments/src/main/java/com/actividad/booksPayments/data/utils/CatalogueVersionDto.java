@@ -0,0 +1,10 @@
+package com.actividad.booksPayments.data.utils;
+
+import lombok.Data;
+
+@Data
+public class CatalogueVersionDto {
+
+    private Long version;
+
+}
@@ -12,5 +12,13 @@ public class Consts {
     public static final String SUCCESSFUL_PAYMENT = "successful_payment";
     public static final String VALUE_PAID = "value_paid";
     public static final String AMOUNT = "amount";
+    public static final String CREATED_AT = "created_at";
+    public static final String PURCHASE_COUNT = "purchase_count";
+    public static final String REVENUE_DATE = "revenue_date";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String PURCHASES_SEQUENCE = "purchases_seq";
+    public static final String PURCHASES_DETAILS_SEQUENCE = "purchases_details_seq";
+    public static final String STOCK_OUTBOX_SEQUENCE = "stock_outbox_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
 
 }
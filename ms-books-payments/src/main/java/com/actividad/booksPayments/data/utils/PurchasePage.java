@@ -0,0 +1,20 @@
+package com.actividad.booksPayments.data.utils;
+
+import com.actividad.booksPayments.data.model.Purchase;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Pagina de compras de un usuario. nextCursor es el transaction_id a pasar como "after" para pedir la
+ * siguiente pagina, o null si no hay mas.
+ */
+@Getter
+@AllArgsConstructor
+public class PurchasePage {
+
+    private List<Purchase> purchases;
+    private Long nextCursor;
+
+}
@@ -0,0 +1,27 @@
+package com.actividad.booksPayments.data.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Filtros de la busqueda de compras. Los que llegan a null no se aplican. after es el transactionId de la ultima
+ * compra recibida (las compras se devuelven de la mas reciente a la mas antigua).
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PurchaseSearchCriteria {
+
+    private String userId;
+    private String bookName;
+    private String paymentMethod;
+    private Double minAmount;
+    private Double maxAmount;
+    private Long after;
+
+}
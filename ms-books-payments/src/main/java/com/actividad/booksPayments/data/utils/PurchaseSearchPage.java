@@ -0,0 +1,20 @@
+package com.actividad.booksPayments.data.utils;
+
+import com.actividad.booksPayments.data.model.PurchaseDocument;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Pagina de resultados de la busqueda de compras. nextCursor es el valor de "after" para pedir la siguiente,
+ * o null si no hay mas.
+ */
+@Getter
+@AllArgsConstructor
+public class PurchaseSearchPage {
+
+    private List<PurchaseDocument> purchases;
+    private Long nextCursor;
+
+}
@@ -0,0 +1,93 @@
+package com.actividad.booksPayments.data.utils;
+
+import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.model.PurchaseDetails;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Incrementos de los acumulados de un conjunto de compras, sumados en memoria para hacer un solo upsert por
+ * usuario, libro y dia. Solo cuentan los pagos correctos. Las claves van ordenadas para que dos transacciones
+ * que actualizan las mismas filas las bloqueen siempre en el mismo orden.
+ */
+@Getter
+public class RollupDelta {
+
+    private final SortedMap<String, Totals> users = new TreeMap<>();
+    private final SortedMap<String, BookTotals> books = new TreeMap<>();
+    private final SortedMap<LocalDate, Totals> days = new TreeMap<>();
+
+    public static RollupDelta of(Collection<Purchase> purchases, ZoneId zone) {
+        RollupDelta delta = new RollupDelta();
+        purchases.stream()
+                .filter(purchase -> Boolean.TRUE.equals(purchase.getSuccessfulPayment()))
+                .forEach(purchase -> delta.add(purchase, zone));
+        return delta;
+    }
+
+    public boolean isEmpty() {
+        return users.isEmpty() && books.isEmpty() && days.isEmpty();
+    }
+
+    private void add(Purchase purchase, ZoneId zone) {
+        List<PurchaseDetails> details = purchase.getBooksDetails() == null ? List.of() : purchase.getBooksDetails();
+        long bookCount = details.stream().mapToLong(PurchaseDetails::getBookCount).sum();
+        if (purchase.getUserId() != null) {
+            users.computeIfAbsent(purchase.getUserId(), key -> new Totals()).add(bookCount, purchase.getAmount());
+        }
+        days.computeIfAbsent(LocalDate.ofInstant(purchase.getCreatedAt(), zone), key -> new Totals())
+                .add(bookCount, purchase.getAmount());
+
+        // Un libro repetido en varias lineas cuenta una sola compra
+        Set<String> seen = new HashSet<>();
+        for (PurchaseDetails detail : details) {
+            if (detail.getBookId() == null) {
+                continue;
+            }
+            BookTotals book = books.computeIfAbsent(detail.getBookId(), key -> new BookTotals());
+            book.add(detail, seen.add(detail.getBookId()));
+        }
+    }
+
+    @Getter
+    public static class Totals {
+
+        private long purchaseCount;
+        private long bookCount;
+        private double amount;
+
+        private void add(long books, double purchaseAmount) {
+            purchaseCount++;
+            bookCount += books;
+            amount += purchaseAmount;
+        }
+    }
+
+    @Getter
+    public static class BookTotals {
+
+        private String bookName;
+        private long purchaseCount;
+        private long bookCount;
+        private double valuePaid;
+
+        private void add(PurchaseDetails detail, boolean newPurchase) {
+            if (detail.getBookName() != null) {
+                bookName = detail.getBookName();
+            }
+            if (newPurchase) {
+                purchaseCount++;
+            }
+            bookCount += detail.getBookCount();
+            valuePaid += detail.getValuePaid();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.actividad.booksPayments.data.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockAdjustmentDto {
+
+    private Integer delta;
+
+}
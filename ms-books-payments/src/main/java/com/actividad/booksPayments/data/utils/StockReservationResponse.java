@@ -0,0 +1,20 @@
+package com.actividad.booksPayments.data.utils;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class StockReservationResponse {
+
+    private boolean reserved;
+    private List<Failure> failures;
+
+    @Data
+    public static class Failure {
+        private String bookId;
+        private String reason;
+        private Integer available;
+    }
+
+}
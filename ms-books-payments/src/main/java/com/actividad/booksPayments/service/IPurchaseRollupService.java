@@ -0,0 +1,23 @@
+package com.actividad.booksPayments.service;
+
+import com.actividad.booksPayments.data.model.BookSalesTotals;
+import com.actividad.booksPayments.data.model.DailyRevenue;
+import com.actividad.booksPayments.data.model.UserPurchaseTotals;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface IPurchaseRollupService {
+
+    UserPurchaseTotals getUserTotals(String userId);
+
+    BookSalesTotals getBookTotals(String bookId);
+
+    List<DailyRevenue> getDailyRevenue(LocalDate from, LocalDate to);
+
+    /**
+     * Recalcula todos los acumulados desde purchases y purchases_details. Devuelve las compras procesadas.
+     */
+    long rebuild();
+
+}
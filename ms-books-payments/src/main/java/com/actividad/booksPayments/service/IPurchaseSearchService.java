@@ -0,0 +1,16 @@
+package com.actividad.booksPayments.service;
+
+import com.actividad.booksPayments.data.utils.PurchaseSearchCriteria;
+import com.actividad.booksPayments.data.utils.PurchaseSearchPage;
+
+public interface IPurchaseSearchService {
+
+    PurchaseSearchPage search(PurchaseSearchCriteria criteria, Integer size);
+
+    /**
+     * Vuelve a encolar para proyectar las compras con transaction_id entre from y to, o todas si llegan a null.
+     * Devuelve cuantas se han encolado.
+     */
+    long replay(Long from, Long to);
+
+}
@@ -2,15 +2,28 @@ package com.actividad.booksPayments.service;
 
 import com.actividad.booksPayments.controller.model.CreatePurchaseRequest;
 import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.utils.PurchasePage;
 
+import java.time.Instant;
 import java.util.List;
 
 public interface IPurchaseService {
 
 	Purchase createPurchase(CreatePurchaseRequest request);
 
+    /**
+     * Registra compras ya cerradas (migraciones, cargas historicas) sin pasar por el catalogo.
+     */
+    int importPurchases(List<CreatePurchaseRequest> requests);
+
     Purchase getPurchase(String productId);
 
-    List<Purchase> getPurchasesUser(String userId);
+    PurchasePage getPurchasesUser(String userId, Long after, Integer size);
+
+    /**
+     * Igual que getPurchasesUser pero solo con las compras creadas en [from, to); cualquiera de los dos puede
+     * ser null. Los meses archivados fuera de la ventana no se leen.
+     */
+    PurchasePage getPurchasesUser(String userId, Long after, Integer size, Instant from, Instant to);
 
 }
@@ -0,0 +1,16 @@
+package com.actividad.booksPayments.service;
+
+import com.actividad.booksPayments.controller.model.CreatePurchaseRequest;
+import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.utils.PurchasePage;
+import reactor.core.publisher.Mono;
+
+public interface IReactivePurchaseService {
+
+    Mono<Purchase> createPurchase(CreatePurchaseRequest request);
+
+    Mono<Purchase> getPurchase(String productId);
+
+    Mono<PurchasePage> getPurchasesUser(String userId, Long after, Integer size);
+
+}
@@ -0,0 +1,59 @@
+package com.actividad.booksPayments.service;
+
+import com.actividad.booksPayments.data.PurchaseArchiveRepository;
+import com.actividad.booksPayments.data.PurchaseRepository;
+import com.actividad.booksPayments.data.model.PurchaseArchiveSegment;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Mueve al archivo frio los meses completos que ya no estan entre los hot-months mas recientes. Cada mes se
+ * escribe en un segmento y despues, en una sola transaccion, se registra y se borran sus compras de las tablas
+ * calientes. Si algo falla a mitad, el mes sigue entero en las tablas y se reintenta en el siguiente ciclo.
+ */
+@Component
+@ConditionalOnProperty(name = "purchases.archive.enabled", havingValue = "true")
+@Slf4j
+public class PurchaseArchiver {
+
+    private final PurchaseRepository purchaseRepository;
+    private final PurchaseArchiveRepository archiveRepository;
+
+    @Value("${purchases.archive.hot-months:6}")
+    private int hotMonths;
+
+    @Value("${purchases.archive.chunk-size:500}")
+    private int chunkSize;
+
+    public PurchaseArchiver(PurchaseRepository purchaseRepository, PurchaseArchiveRepository archiveRepository) {
+        this.purchaseRepository = purchaseRepository;
+        this.archiveRepository = archiveRepository;
+    }
+
+    @Scheduled(fixedDelayString = "${purchases.archive.interval:1h}")
+    public void archive() {
+        Instant cutoff = PurchaseArchiveRepository.monthStart(YearMonth.now(ZoneOffset.UTC).minusMonths(hotMonths));
+        Instant oldest;
+        while ((oldest = purchaseRepository.getOldestCreatedAt()) != null && oldest.isBefore(cutoff)) {
+            archiveMonth(YearMonth.from(oldest.atZone(ZoneOffset.UTC)));
+        }
+    }
+
+    private void archiveMonth(YearMonth month) {
+        long start = System.nanoTime();
+        List<Long> ids = purchaseRepository.getIdsCreatedBetween(
+                PurchaseArchiveRepository.monthStart(month), PurchaseArchiveRepository.monthStart(month.plusMonths(1)));
+        PurchaseArchiveSegment segment = archiveRepository.write(month, ids, chunkSize, purchaseRepository::getWithDetails);
+        purchaseRepository.moveToArchive(segment, ids, chunkSize);
+        log.info("Archivado {}: {} compras en {} ({} ms)", month, segment.getPurchaseCount(), segment.getFileName(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,240 @@
+package com.actividad.booksPayments.service;
+
+import com.actividad.booksPayments.data.IdempotencyRepository;
+import com.actividad.booksPayments.data.model.IdempotencyRecord;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Respuestas de POST /purchase por Idempotency-Key:
+ * - Un duplicado concurrente en esta instancia espera a la primera ejecucion y recibe su misma respuesta.
+ * - Un duplicado posterior recibe la respuesta guardada: primero de la cache local (acotada, con TTL) y si no
+ *   esta, de la tabla purchase_idempotency, que comparten todas las instancias.
+ * - Si la clave esta en curso en otra instancia se responde 409 y el cliente puede reintentar.
+ * Solo se guardan las respuestas definitivas (2xx y rechazos 4xx). Un 5xx (catalogo no disponible, error de
+ * base de datos...) o una excepcion liberan la clave para que el reintento vuelva a ejecutar la compra.
+ */
+@Component
+@Slf4j
+public class PurchaseIdempotencyStore {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final String IN_PROGRESS = "Hay una compra en curso con la misma Idempotency-Key";
+    private static final String KEY_REUSED = "La Idempotency-Key ya se uso con otra compra";
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private record StoredResponse(String requestHash, int status, String contentType, String body) {
+    }
+
+    // La primera ejecucion devuelve su respuesta original; la version guardada es para los duplicados
+    private record Outcome(StoredResponse stored, ResponseEntity<?> original) {
+    }
+
+    private final IdempotencyRepository repository;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, StoredResponse> completed;
+    private final ConcurrentMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Counter replays;
+    private final Duration ttl;
+
+    @Value("${purchases.idempotency.wait-timeout:10s}")
+    private Duration waitTimeout;
+
+    @Value("${purchases.idempotency.stale-after:1m}")
+    private Duration staleAfter;
+
+    public PurchaseIdempotencyStore(
+            IdempotencyRepository repository,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${purchases.idempotency.ttl:24h}") Duration ttl,
+            @Value("${purchases.idempotency.cache-size:10000}") long cacheSize) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.replays = meterRegistry.counter("purchase.idempotency.replays");
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, "purchase.idempotency");
+    }
+
+    /**
+     * Ejecuta action una sola vez por clave y devuelve su respuesta, o la guardada si la clave ya se uso con la
+     * misma peticion.
+     */
+    public ResponseEntity<?> execute(String key, Object request, Supplier<ResponseEntity<?>> action) {
+        if (key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body("Idempotency-Key admite como mucho " + MAX_KEY_LENGTH + " caracteres");
+        }
+        String requestHash = hash(request);
+        StoredResponse cached = completed.getIfPresent(key);
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return awaitFirst(running, requestHash);
+        }
+        try {
+            Outcome outcome = executeOnce(key, requestHash, action);
+            mine.complete(outcome.stored());
+            if (outcome.original() != null) {
+                return outcome.original();
+            }
+            return outcome.stored().requestHash() == null ? toEntity(outcome.stored()) : replay(outcome.stored(), requestHash);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${purchases.idempotency.purge-interval:10m}")
+    public void purgeExpired() {
+        int purged = repository.purgeExpired(Instant.now());
+        if (purged > 0) {
+            log.info("Eliminadas {} respuestas idempotentes caducadas", purged);
+        }
+    }
+
+    private Outcome executeOnce(String key, String requestHash, Supplier<ResponseEntity<?>> action) {
+        Instant now = Instant.now();
+        Optional<IdempotencyRecord> existing = repository.find(key);
+        if (existing.isPresent()) {
+            IdempotencyRecord record = existing.get();
+            if (record.getExpiresAt().isBefore(now)) {
+                repository.release(key);
+            } else if (record.getStatus() != null) {
+                StoredResponse stored = new StoredResponse(record.getRequestHash(), record.getStatus(),
+                        record.getContentType(), record.getResponseBody());
+                completed.put(key, stored);
+                return new Outcome(stored, null);
+            } else if (!repository.releaseStale(key, now.minus(staleAfter))) {
+                return new Outcome(conflict(IN_PROGRESS), null);
+            }
+        }
+
+        try {
+            repository.claim(key, requestHash, now, now.plus(ttl));
+        } catch (DataIntegrityViolationException e) {
+            // Otra instancia ha reservado la clave entre la lectura y el insert
+            return new Outcome(conflict(IN_PROGRESS), null);
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            repository.release(key);
+            throw e;
+        }
+        if (!isFinal(response)) {
+            repository.release(key);
+            // Los duplicados que esperaban reciben la misma respuesta, pero sin guardarla ni marcarla como repetida
+            return new Outcome(store(null, response), response);
+        }
+        StoredResponse stored = store(requestHash, response);
+        repository.complete(key, stored.status(), stored.contentType(), stored.body());
+        completed.put(key, stored);
+        return new Outcome(stored, response);
+    }
+
+    private static boolean isFinal(ResponseEntity<?> response) {
+        return response.getStatusCode().is2xxSuccessful() || response.getStatusCode().is4xxClientError();
+    }
+
+    private ResponseEntity<?> awaitFirst(CompletableFuture<StoredResponse> running, String requestHash) {
+        try {
+            StoredResponse response = running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            return response.requestHash() == null ? toEntity(response) : replay(response, requestHash);
+        } catch (TimeoutException e) {
+            return toEntity(conflict(IN_PROGRESS));
+        } catch (ExecutionException e) {
+            // La primera ejecucion fallo sin respuesta que guardar: el duplicado tampoco tiene una
+            return toEntity(conflict(IN_PROGRESS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return toEntity(conflict(IN_PROGRESS));
+        }
+    }
+
+    private ResponseEntity<?> replay(StoredResponse response, String requestHash) {
+        if (!response.requestHash().equals(requestHash)) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(KEY_REUSED);
+        }
+        replays.increment();
+        return ResponseEntity.status(response.status())
+                .header(REPLAYED_HEADER, "true")
+                .contentType(MediaType.parseMediaType(response.contentType()))
+                .body(response.body());
+    }
+
+    private ResponseEntity<?> toEntity(StoredResponse response) {
+        return ResponseEntity.status(response.status()).contentType(MediaType.parseMediaType(response.contentType())).body(response.body());
+    }
+
+    // Respuesta que no se guarda ni se reproduce (requestHash null)
+    private StoredResponse conflict(String message) {
+        return new StoredResponse(null, HttpStatus.CONFLICT.value(), MediaType.TEXT_PLAIN_VALUE, message);
+    }
+
+    private StoredResponse store(String requestHash, ResponseEntity<?> response) {
+        Object body = response.getBody();
+        if (body instanceof String text) {
+            return new StoredResponse(requestHash, response.getStatusCode().value(), MediaType.TEXT_PLAIN_VALUE, text);
+        }
+        return new StoredResponse(requestHash, response.getStatusCode().value(), MediaType.APPLICATION_JSON_VALUE, json(body));
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json(request).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se puede serializar la respuesta", e);
+        }
+    }
+}
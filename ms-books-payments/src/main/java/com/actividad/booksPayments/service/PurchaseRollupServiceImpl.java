@@ -0,0 +1,132 @@
+package com.actividad.booksPayments.service;
+
+import com.actividad.booksPayments.data.PurchaseRepository;
+import com.actividad.booksPayments.data.PurchaseRollupRepository;
+import com.actividad.booksPayments.data.model.BookSalesTotals;
+import com.actividad.booksPayments.data.model.DailyRevenue;
+import com.actividad.booksPayments.data.model.PurchaseArchiveSegment;
+import com.actividad.booksPayments.data.model.UserPurchaseTotals;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+@Service
+@Slf4j
+public class PurchaseRollupServiceImpl implements IPurchaseRollupService {
+
+    @Autowired
+    private PurchaseRollupRepository rollupRepository;
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Value("${purchases.rollups.max-days:366}")
+    private int maxDays;
+
+    @Value("${purchases.rollups.rebuild.chunk-size:5000}")
+    private int rebuildChunkSize;
+
+    @Value("${purchases.rollups.rebuild.parallelism:4}")
+    private int rebuildParallelism;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    @Override
+    public UserPurchaseTotals getUserTotals(String userId) {
+        return rollupRepository.findUser(userId).orElse(null);
+    }
+
+    @Override
+    public BookSalesTotals getBookTotals(String bookId) {
+        return rollupRepository.findBook(bookId).orElse(null);
+    }
+
+    @Override
+    public List<DailyRevenue> getDailyRevenue(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from no puede ser posterior a to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxDays) {
+            throw new IllegalArgumentException("Como mucho se pueden consultar " + maxDays + " dias");
+        }
+        return rollupRepository.findDays(from, to);
+    }
+
+    /**
+     * Vacia los acumulados y los vuelve a sumar por tramos de transaction_id de las tablas calientes y por
+     * segmentos del archivo, cada uno en su transaccion y rebuildParallelism a la vez. El vaciado se confirma
+     * antes de sumar los tramos: si alguno falla, los acumulados quedan incompletos hasta que se vuelva a lanzar
+     * (se registra como error). Las compras que se registren mientras dura tampoco quedan bien contadas: pensado
+     * para cargas iniciales o para corregir los acumulados con las escrituras paradas.
+     */
+    @Override
+    public long rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            throw new IllegalStateException("Ya hay una reconstruccion de acumulados en curso");
+        }
+        try {
+            long start = System.nanoTime();
+            rollupRepository.clear();
+            List<Supplier<Integer>> tasks = new ArrayList<>();
+            Long min = purchaseRepository.getMinId();
+            if (min != null) {
+                for (long[] chunk : chunks(min, purchaseRepository.getMaxId(), rebuildChunkSize)) {
+                    tasks.add(() -> purchaseRepository.rebuildRollups(chunk[0], chunk[1]));
+                }
+            }
+            for (PurchaseArchiveSegment segment : purchaseRepository.getArchiveSegments()) {
+                tasks.add(() -> purchaseRepository.rebuildRollups(segment));
+            }
+            if (tasks.isEmpty()) {
+                return 0;
+            }
+            long purchases;
+            AtomicInteger done = new AtomicInteger();
+            try (ExecutorService executor = Executors.newFixedThreadPool(rebuildParallelism)) {
+                List<CompletableFuture<Integer>> results = new ArrayList<>();
+                for (Supplier<Integer> task : tasks) {
+                    results.add(CompletableFuture.supplyAsync(task, executor).thenApply(count -> {
+                        done.incrementAndGet();
+                        return count;
+                    }));
+                }
+                purchases = results.stream().mapToLong(CompletableFuture::join).sum();
+            } catch (RuntimeException e) {
+                RuntimeException failure = e instanceof CompletionException && e.getCause() instanceof RuntimeException cause
+                        ? cause : e;
+                log.error("Reconstruccion de acumulados fallida tras {} de {} tramos: los acumulados quedan incompletos "
+                        + "hasta que se vuelva a lanzar", done.get(), tasks.size(), failure);
+                throw failure;
+            }
+            log.info("Acumulados reconstruidos: {} compras en {} tramos ({} ms)", purchases, tasks.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+            return purchases;
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * Tramos [desde, hasta] de chunkSize ids que cubren de min a max.
+     */
+    static List<long[]> chunks(long min, long max, int chunkSize) {
+        List<long[]> chunks = new ArrayList<>();
+        for (long from = min; from <= max; from += chunkSize) {
+            chunks.add(new long[]{from, Math.min(max, from + chunkSize - 1)});
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,86 @@
+package com.actividad.booksPayments.service;
+
+import com.actividad.booksPayments.data.PurchaseRepository;
+import com.actividad.booksPayments.data.PurchaseSearchOutboxRepository;
+import com.actividad.booksPayments.data.PurchaseSearchRepository;
+import com.actividad.booksPayments.data.model.PurchaseDocument;
+import com.actividad.booksPayments.data.model.PurchaseSearchOutboxEntry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Proyecta en segundo plano las compras pendientes de purchase_search_outbox en el indice "purchases". En cada
+ * ciclo reclama un lote, lee las compras con sus lineas en una consulta y las indexa en una peticion bulk. Si
+ * OpenSearch falla, el lote se reintenta con backoff exponencial hasta max-backoff, sin descartarlo: el indice
+ * acaba alcanzando a la base de datos en cuanto el cluster vuelve.
+ */
+@Component
+@ConditionalOnProperty(name = "purchases.search.enabled", havingValue = "true")
+@Slf4j
+public class PurchaseSearchProjector {
+
+    private final PurchaseSearchOutboxRepository outbox;
+    private final PurchaseRepository purchaseRepository;
+    private final PurchaseSearchRepository searchRepository;
+    private final Counter projected;
+    private final Counter retries;
+
+    @Value("${purchases.search.batch-size:500}")
+    private int batchSize;
+
+    @Value("${purchases.search.lease:30s}")
+    private Duration lease;
+
+    @Value("${purchases.search.backoff:1s}")
+    private Duration backoff;
+
+    @Value("${purchases.search.max-backoff:5m}")
+    private Duration maxBackoff;
+
+    public PurchaseSearchProjector(
+            PurchaseSearchOutboxRepository outbox,
+            PurchaseRepository purchaseRepository,
+            PurchaseSearchRepository searchRepository,
+            MeterRegistry meterRegistry) {
+        this.outbox = outbox;
+        this.purchaseRepository = purchaseRepository;
+        this.searchRepository = searchRepository;
+        this.projected = meterRegistry.counter("purchase.search.projected");
+        this.retries = meterRegistry.counter("purchase.search.retries");
+        meterRegistry.gauge("purchase.search.pending", outbox, PurchaseSearchOutboxRepository::countPending);
+    }
+
+    @Scheduled(fixedDelayString = "${purchases.search.poll-interval:1s}")
+    public void project() {
+        List<PurchaseSearchOutboxEntry> due = outbox.claimDue(Instant.now(), batchSize, lease);
+        if (due.isEmpty()) {
+            return;
+        }
+        List<Long> ids = due.stream().map(PurchaseSearchOutboxEntry::getTransactionId).toList();
+        try {
+            // Una compra que ya no existe no tiene nada que proyectar: su entrada se borra igualmente
+            List<PurchaseDocument> documents = purchaseRepository.getWithDetails(ids).stream().map(PurchaseDocument::from).toList();
+            if (!documents.isEmpty()) {
+                searchRepository.index(documents);
+            }
+            outbox.markProjected(ids);
+            projected.increment(documents.size());
+        } catch (RuntimeException e) {
+            int attempts = due.stream().mapToInt(PurchaseSearchOutboxEntry::getAttempts).max().orElse(0) + 1;
+            Duration exponential = backoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+            Duration delay = exponential.compareTo(maxBackoff) > 0 ? maxBackoff : exponential;
+            log.warn("Proyeccion de {} compras fallida (intento {}), se reintenta en {}: {}", ids.size(), attempts, delay, e.getMessage());
+            retries.increment();
+            outbox.reschedule(ids, Instant.now().plus(delay), e.getMessage());
+        }
+    }
+}
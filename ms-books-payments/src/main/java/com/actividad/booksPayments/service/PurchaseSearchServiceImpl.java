@@ -0,0 +1,66 @@
+package com.actividad.booksPayments.service;
+
+import com.actividad.booksPayments.data.PurchaseRepository;
+import com.actividad.booksPayments.data.PurchaseSearchOutboxRepository;
+import com.actividad.booksPayments.data.PurchaseSearchRepository;
+import com.actividad.booksPayments.data.utils.PurchaseSearchCriteria;
+import com.actividad.booksPayments.data.utils.PurchaseSearchPage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+@Service
+@ConditionalOnProperty(name = "purchases.search.enabled", havingValue = "true")
+@Slf4j
+public class PurchaseSearchServiceImpl implements IPurchaseSearchService {
+
+    @Autowired
+    private PurchaseSearchRepository searchRepository;
+
+    @Autowired
+    private PurchaseSearchOutboxRepository outboxRepository;
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Value("${purchases.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${purchases.page.max-size:100}")
+    private int maxPageSize;
+
+    @Value("${purchases.search.replay-chunk-size:5000}")
+    private int replayChunkSize;
+
+    @Override
+    public PurchaseSearchPage search(PurchaseSearchCriteria criteria, Integer size) {
+        if (criteria.getMinAmount() != null && criteria.getMaxAmount() != null && criteria.getMinAmount() > criteria.getMaxAmount()) {
+            throw new IllegalArgumentException("minAmount no puede ser mayor que maxAmount");
+        }
+        return searchRepository.search(criteria, PurchaseServiceImpl.pageSize(size, defaultPageSize, maxPageSize));
+    }
+
+    /**
+     * Encola por tramos de replayChunkSize ids, cada uno en su transaccion, para no bloquear de golpe toda la
+     * tabla de pendientes. El proyector empieza a vaciarla mientras tanto.
+     */
+    @Override
+    public long replay(Long from, Long to) {
+        Long min = from != null ? from : purchaseRepository.getMinId();
+        Long max = to != null ? to : purchaseRepository.getMaxId();
+        if (min == null || max == null) {
+            return 0;
+        }
+        if (min > max) {
+            throw new IllegalArgumentException("from no puede ser mayor que to");
+        }
+        long enqueued = 0;
+        for (long chunkFrom = min; chunkFrom <= max; chunkFrom += replayChunkSize) {
+            enqueued += outboxRepository.replay(chunkFrom, Math.min(max, chunkFrom + replayChunkSize - 1));
+        }
+        log.info("Encoladas {} compras para reproyectar en el indice de busqueda", enqueued);
+        return enqueued;
+    }
+}
@@ -5,11 +5,14 @@ import com.actividad.booksPayments.controller.model.CreatePurchaseRequest;
 import com.actividad.booksPayments.data.PurchaseRepository;
 import com.actividad.booksPayments.data.model.Purchase;
 import com.actividad.booksPayments.data.model.PurchaseDetails;
+import com.actividad.booksPayments.data.utils.PurchasePage;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -17,6 +20,8 @@ import java.util.stream.Collectors;
 @Slf4j
 public class PurchaseServiceImpl implements IPurchaseService {
 
+    static final String OUTBOX_STOCK_UPDATES = "outbox";
+
 	@Autowired
 	private PurchaseRepository repository;
 
@@ -26,14 +31,51 @@ public class PurchaseServiceImpl implements IPurchaseService {
     @Autowired
     private BookCatalogueClient bookCatalogueClient;
 
+    @Value("${catalogueService.batch-reservation:true}")
+    private boolean batchReservation;
+
+    @Value("${catalogueService.stock-updates:sync}")
+    private String stockUpdates;
+
+    @Value("${purchases.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${purchases.page.max-size:100}")
+    private int maxPageSize;
+
+    @Value("${purchases.import.max-size:10000}")
+    private int maxImportSize;
+
+    @Value("${purchases.import.chunk-size:500}")
+    private int importChunkSize;
+
     @Override
     public Purchase createPurchase(CreatePurchaseRequest request) {
+        if (OUTBOX_STOCK_UPDATES.equals(stockUpdates)) {
+            // Solo lecturas en el camino de la compra; los descuentos los envia StockOutboxRelay
+            bookCatalogueClient.validateStock(request);
+            return repository.saveWithStockOutbox(toPurchase(request));
+        }
+        if (batchReservation) {
+            // Una sola llamada al catalogo, independiente del numero de lineas
+            String reservationId = bookCatalogueClient.reserveBooks(request);
+            try {
+                return savePurchase(request);
+            } catch (RuntimeException e) {
+                bookCatalogueClient.releaseBooks(request, reservationId);
+                throw e;
+            }
+        }
         bookCatalogueClient.validateStock(request);
         bookCatalogueClient.updateBooks(request);
         return savePurchase(request);
     }
 
     private Purchase savePurchase(CreatePurchaseRequest request) {
+        return repository.save(toPurchase(request));
+    }
+
+    static Purchase toPurchase(CreatePurchaseRequest request) {
         Purchase purchase = Purchase.builder()
                 .userId(request.getUserId())
                 .amount(request.getAmount())
@@ -57,7 +99,33 @@ public class PurchaseServiceImpl implements IPurchaseService {
             purchase.setBooksDetails(details);
         }
 
-        return repository.save(purchase);
+        return purchase;
+    }
+
+    @Override
+    public int importPurchases(List<CreatePurchaseRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("No hay compras que importar");
+        }
+        if (requests.size() > maxImportSize) {
+            throw new IllegalArgumentException("Como mucho se pueden importar " + maxImportSize + " compras por peticion");
+        }
+        Instant now = Instant.now();
+        List<Purchase> purchases = requests.stream().map(request -> toImportedPurchase(request, now)).toList();
+        return repository.importAll(purchases, importChunkSize);
+    }
+
+    /**
+     * Las compras importadas conservan su fecha original: de ella dependen el dia de daily_revenue y el mes en que
+     * se archivan. Una fecha futura se rechaza antes de guardar nada.
+     */
+    static Purchase toImportedPurchase(CreatePurchaseRequest request, Instant now) {
+        if (request.getCreatedAt() != null && request.getCreatedAt().isAfter(now)) {
+            throw new IllegalArgumentException("createdAt no puede ser posterior a la importacion: " + request.getCreatedAt());
+        }
+        Purchase purchase = toPurchase(request);
+        purchase.setCreatedAt(request.getCreatedAt());
+        return purchase;
     }
 
     @Override
@@ -66,8 +134,30 @@ public class PurchaseServiceImpl implements IPurchaseService {
     }
 
     @Override
-    public List<Purchase> getPurchasesUser(String userId) {
-        return repository.getPaymentsUser(userId);
+    public PurchasePage getPurchasesUser(String userId, Long after, Integer size) {
+        return getPurchasesUser(userId, after, size, null, null);
+    }
+
+    @Override
+    public PurchasePage getPurchasesUser(String userId, Long after, Integer size, Instant from, Instant to) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("from debe ser anterior a to");
+        }
+        return repository.getPaymentsUser(userId, after == null ? 0L : after, pageSize(size, defaultPageSize, maxPageSize), from, to);
+    }
+
+    /**
+     * Tamano de pagina efectivo: el por defecto si no se indica. Fuera de [1, maxSize] se rechaza (400), igual que en
+     * el catalogo, en lugar de recortarlo sin avisar.
+     */
+    static int pageSize(Integer size, int defaultSize, int maxSize) {
+        if (size == null) {
+            return defaultSize;
+        }
+        if (size < 1 || size > maxSize) {
+            throw new IllegalArgumentException("El tamaño de pagina debe estar entre 1 y " + maxSize);
+        }
+        return size;
     }
 
 
@@ -0,0 +1,79 @@
+package com.actividad.booksPayments.service;
+
+import com.actividad.booksPayments.Client.BookCatalogueClient;
+import com.actividad.booksPayments.controller.model.CreatePurchaseRequest;
+import com.actividad.booksPayments.data.ReactivePurchaseRepository;
+import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.utils.PurchasePage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Mismo flujo que {@link PurchaseServiceImpl} sin bloquear hilos: la reserva en el catalogo y la escritura
+ * en base de datos se encadenan sobre el event loop.
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactivePurchaseServiceImpl implements IReactivePurchaseService {
+
+    private final ReactivePurchaseRepository repository;
+    private final BookCatalogueClient bookCatalogueClient;
+    private final TransactionalOperator purchasesTransactionalOperator;
+
+    @Value("${catalogueService.batch-reservation:true}")
+    private boolean batchReservation;
+
+    @Value("${catalogueService.stock-updates:sync}")
+    private String stockUpdates;
+
+    @Value("${purchases.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${purchases.page.max-size:100}")
+    private int maxPageSize;
+
+    @Override
+    public Mono<Purchase> createPurchase(CreatePurchaseRequest request) {
+        if (PurchaseServiceImpl.OUTBOX_STOCK_UPDATES.equals(stockUpdates)) {
+            return Mono.fromRunnable(() -> bookCatalogueClient.validateStock(request))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .then(Mono.defer(() -> purchasesTransactionalOperator.transactional(
+                            repository.saveWithStockOutbox(PurchaseServiceImpl.toPurchase(request)))));
+        }
+        if (batchReservation) {
+            // Si la compra no se puede registrar, se devuelve el stock reservado
+            return bookCatalogueClient.reserve(request)
+                    .flatMap(reservationId -> savePurchase(request)
+                            .onErrorResume(e -> bookCatalogueClient.release(request, reservationId).then(Mono.error(e))));
+        }
+        // El modo por linea sigue siendo bloqueante: se aisla en boundedElastic para no ocupar el event loop
+        return Mono.fromRunnable(() -> {
+                    bookCatalogueClient.validateStock(request);
+                    bookCatalogueClient.updateBooks(request);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .then(Mono.defer(() -> savePurchase(request)));
+    }
+
+    private Mono<Purchase> savePurchase(CreatePurchaseRequest request) {
+        return purchasesTransactionalOperator.transactional(repository.save(PurchaseServiceImpl.toPurchase(request)));
+    }
+
+    @Override
+    public Mono<Purchase> getPurchase(String productId) {
+        return repository.getIdTransaction(Long.valueOf(productId));
+    }
+
+    @Override
+    public Mono<PurchasePage> getPurchasesUser(String userId, Long after, Integer size) {
+        return Mono.fromCallable(() -> PurchaseServiceImpl.pageSize(size, defaultPageSize, maxPageSize))
+                .flatMap(pageSize -> repository.getPaymentsUser(userId, after == null ? 0L : after, pageSize));
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.actividad.booksPayments.service;
+
+import com.actividad.booksPayments.Client.BookCatalogueClient;
+import com.actividad.booksPayments.data.StockOutboxRepository;
+import com.actividad.booksPayments.data.model.StockOutboxEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Envia al catalogo los ajustes de stock del outbox en segundo plano. En cada ciclo reclama un lote de
+ * eventos, suma los de un mismo libro en una sola llamada (los libros mas vendidos se coalescen) y la envia
+ * con su Idempotency-Key. Los fallos de red o 5xx se reintentan con backoff exponencial. Si el catalogo
+ * rechaza (4xx) una llamada que suma varios eventos, el lote se separa y cada evento se reenvia solo; los
+ * rechazos de un evento suelto y los eventos que agotan los intentos quedan en FAILED para revisarlos a mano
+ * (gauge catalogue.outbox.failed). Tambien quedan en FAILED los que solo se podrian reintentar despues de
+ * idempotency-window desde que se crearon: el catalogo ya podria haber olvidado su clave y un ajuste que llego a
+ * aplicarse (timeout ambiguo) se descontaria dos veces.
+ */
+@Component
+@ConditionalOnProperty(name = "catalogueService.stock-updates", havingValue = PurchaseServiceImpl.OUTBOX_STOCK_UPDATES)
+@Slf4j
+public class StockOutboxRelay {
+
+    private final StockOutboxRepository outbox;
+    private final BookCatalogueClient bookCatalogueClient;
+    private final Counter events;
+    private final Counter calls;
+    private final Counter retries;
+    private final Counter failures;
+    private final Counter splits;
+
+    @Value("${catalogueService.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${catalogueService.outbox.lease:30s}")
+    private Duration lease;
+
+    @Value("${catalogueService.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${catalogueService.outbox.backoff:1s}")
+    private Duration backoff;
+
+    @Value("${catalogueService.outbox.max-backoff:5m}")
+    private Duration maxBackoff;
+
+    @Value("${catalogueService.outbox.idempotency-window:55m}")
+    private Duration idempotencyWindow;
+
+    @Value("${catalogueService.outbox.retention:1d}")
+    private Duration retention;
+
+    @Value("${catalogueService.concurrency:8}")
+    private int concurrency;
+
+    public StockOutboxRelay(StockOutboxRepository outbox, BookCatalogueClient bookCatalogueClient, MeterRegistry meterRegistry) {
+        this.outbox = outbox;
+        this.bookCatalogueClient = bookCatalogueClient;
+        this.events = meterRegistry.counter("catalogue.outbox.events");
+        this.calls = meterRegistry.counter("catalogue.outbox.calls");
+        this.retries = meterRegistry.counter("catalogue.outbox.retries");
+        this.failures = meterRegistry.counter("catalogue.outbox.failures");
+        this.splits = meterRegistry.counter("catalogue.outbox.splits");
+        meterRegistry.gauge("catalogue.outbox.failed", outbox, StockOutboxRepository::countFailed);
+    }
+
+    @Scheduled(fixedDelayString = "${catalogueService.outbox.poll-interval:500ms}")
+    public void relay() {
+        Map<String, List<StockOutboxEvent>> batches;
+        try {
+            batches = outbox.claimDue(Instant.now(), batchSize, lease);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            log.debug("Otro relay ha reclamado los mismos eventos; se reintenta en el siguiente ciclo");
+            return;
+        }
+        if (batches.isEmpty()) {
+            return;
+        }
+
+        // Las llamadas van en paralelo; los resultados se guardan despues, fuera de los hilos de Netty
+        List<Delivery> deliveries = Flux.fromIterable(batches.entrySet())
+                .flatMap(batch -> deliver(batch.getKey(), batch.getValue()), concurrency)
+                .collectList()
+                .block();
+        deliveries.forEach(this::record);
+    }
+
+    @Scheduled(fixedDelayString = "${catalogueService.outbox.purge-interval:1h}")
+    public void purge() {
+        int purged = outbox.purgeSent(Instant.now().minus(retention));
+        if (purged > 0) {
+            log.info("Eliminados {} eventos de stock ya enviados", purged);
+        }
+    }
+
+    private Mono<Delivery> deliver(String key, List<StockOutboxEvent> batch) {
+        String bookId = batch.getFirst().getBookId();
+        int delta = batch.stream().mapToInt(StockOutboxEvent::getDelta).sum();
+        events.increment(batch.size());
+        calls.increment();
+        return bookCatalogueClient.adjustStockIdempotent(bookId, delta, key)
+                .thenReturn(new Delivery(key, batch, null))
+                .onErrorResume(error -> Mono.just(new Delivery(key, batch, error)));
+    }
+
+    private void record(Delivery delivery) {
+        List<Long> ids = delivery.events().stream().map(StockOutboxEvent::getId).toList();
+        if (delivery.error() == null) {
+            outbox.markSent(ids);
+            return;
+        }
+
+        String error = delivery.error().getMessage();
+        if (rejected(delivery.error()) && delivery.events().size() > 1) {
+            // Un rechazo no aplica nada en el catalogo: se reenvia cada evento por separado para aislar el culpable
+            log.warn("Ajuste de stock {} rechazado, se separan sus {} eventos: {}", delivery.key(), delivery.events().size(), error);
+            splits.increment();
+            outbox.split(delivery.events(), Instant.now());
+            return;
+        }
+        int attempts = delivery.events().getFirst().getAttempts() + 1;
+        if (rejected(delivery.error()) || attempts >= maxAttempts) {
+            log.error("Ajuste de stock {} descartado tras {} intentos: {}", delivery.key(), attempts, error);
+            failures.increment();
+            outbox.markFailed(ids, error);
+            return;
+        }
+        Duration exponential = backoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        Duration delay = exponential.compareTo(maxBackoff) > 0 ? maxBackoff : exponential;
+        Instant retryAt = Instant.now().plus(delay);
+        if (retryAt.isAfter(oldestCreatedAt(delivery.events()).plus(idempotencyWindow))) {
+            log.error("Ajuste de stock {} descartado tras {} intentos: el reintento saldria fuera de la ventana de idempotencia del catalogo: {}",
+                    delivery.key(), attempts, error);
+            failures.increment();
+            outbox.markFailed(ids, error);
+            return;
+        }
+        log.warn("Ajuste de stock {} fallido (intento {}), se reintenta en {}: {}", delivery.key(), attempts, delay, error);
+        retries.increment();
+        outbox.reschedule(ids, retryAt, error);
+    }
+
+    private static Instant oldestCreatedAt(List<StockOutboxEvent> events) {
+        return events.stream().map(StockOutboxEvent::getCreatedAt).min(Instant::compareTo).orElseThrow();
+    }
+
+    /**
+     * El catalogo ha rechazado el ajuste (libro inexistente, stock insuficiente...): reintentar no cambia nada.
+     * 408 y 429 si se reintentan.
+     */
+    private boolean rejected(Throwable error) {
+        return error instanceof WebClientResponseException e
+                && e.getStatusCode().is4xxClientError()
+                && e.getStatusCode().value() != HttpStatus.REQUEST_TIMEOUT.value()
+                && e.getStatusCode().value() != HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    private record Delivery(String key, List<StockOutboxEvent> events, Throwable error) {
+    }
+}
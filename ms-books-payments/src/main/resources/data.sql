@@ -1,11 +1,20 @@
 -- 1. Insertar el Pago (Padre)
-INSERT INTO purchases (user_id, amount, payment_method, successful_payment)
-VALUES ('user_123', 100.0, 'CARD', true);
+-- Los ids salen de las secuencias que usa Hibernate (purchases_seq, purchases_details_seq) para no chocar con sus bloques
+INSERT INTO purchases (transaction_id, user_id, amount, payment_method, successful_payment, created_at)
+VALUES (NEXT VALUE FOR purchases_seq, 'user_123', 100.0, 'CARD', true, CURRENT_TIMESTAMP);
 
 -- 2. Insertar los detalles
 -- Cambiamos NAME_BOOK por el nombre que Hibernate genera (probablemente name_book)
-INSERT INTO purchases_details (transaction_id, book_id, book_name, value_paid)
-VALUES (1, 'BOOK_99', 'El Quijote', 50.0);
+INSERT INTO purchases_details (id, transaction_id, book_id, book_name, book_count, value_paid)
+VALUES (NEXT VALUE FOR purchases_details_seq, 1, 'BOOK_99', 'El Quijote', 1, 50.0);
 
-INSERT INTO purchases_details (transaction_id, book_id, book_name, value_paid)
-VALUES (1, 'BOOK_44', 'Clean Code', 50.0);
\ No newline at end of file
+INSERT INTO purchases_details (id, transaction_id, book_id, book_name, book_count, value_paid)
+VALUES (NEXT VALUE FOR purchases_details_seq, 1, 'BOOK_44', 'Clean Code', 1, 50.0);
+
+-- 3. Acumulados de la compra anterior (la aplicacion los mantiene al guardar; aqui se insertan a mano)
+INSERT INTO user_purchase_totals (user_id, purchase_count, book_count, amount) VALUES ('user_123', 1, 2, 100.0);
+
+INSERT INTO book_sales_totals (book_id, book_name, purchase_count, book_count, value_paid)
+VALUES ('BOOK_99', 'El Quijote', 1, 1, 50.0), ('BOOK_44', 'Clean Code', 1, 1, 50.0);
+
+INSERT INTO daily_revenue (revenue_date, purchase_count, book_count, amount) VALUES (CURRENT_DATE, 1, 2, 100.0);
\ No newline at end of file
@@ -0,0 +1,129 @@
+package com.actividad.booksPayments.Client;
+
+import com.actividad.booksPayments.controller.model.CreatePurchaseRequest;
+import com.actividad.booksPayments.data.model.PurchaseDetails;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookCatalogueClientTest {
+
+    private final CreatePurchaseRequest request = new CreatePurchaseRequest("u1",
+            List.of(PurchaseDetails.builder().bookId("B1").bookName("Dune").bookCount(1).valuePaid(20.0).build()),
+            20.0, "CARD", true);
+
+    @Test
+    @DisplayName("Un timeout de la reserva debe tratarse como catalogo no disponible (reintentable)")
+    void reserveBooks_TimeoutIsUnavailable() {
+        // Arrange
+        BookCatalogueClient client = client(exchange -> Mono.never());
+
+        // Act & Assert
+        assertThrows(CatalogueUnavailableException.class, () -> client.reserveBooks(request));
+    }
+
+    @Test
+    @DisplayName("Tras un timeout de la reserva debe liberarla por su id, por si el catalogo llego a aplicarla")
+    void reserveBooks_TimeoutReleasesByReservationId() {
+        // Arrange
+        List<ClientRequest> requests = new CopyOnWriteArrayList<>();
+        BookCatalogueClient client = client(exchange -> {
+            requests.add(exchange);
+            return exchange.url().getPath().endsWith("_release")
+                    ? Mono.just(ClientResponse.create(HttpStatus.NO_CONTENT).build())
+                    : Mono.never();
+        });
+
+        // Act
+        assertThrows(CatalogueUnavailableException.class, () -> client.reserveBooks(request));
+
+        // Assert
+        assertEquals(2, requests.size());
+        String reservationId = requests.get(0).headers().getFirst("Idempotency-Key");
+        assertNotNull(reservationId);
+        assertTrue(requests.get(1).url().getPath().endsWith("_release"));
+        assertEquals(reservationId, requests.get(1).headers().getFirst("Idempotency-Key"));
+    }
+
+    @Test
+    @DisplayName("Un 5xx del catalogo en la reserva debe tratarse como catalogo no disponible")
+    void reserveBooks_ServerErrorIsUnavailable() {
+        // Arrange
+        BookCatalogueClient client = client(exchange -> Mono.just(ClientResponse.create(HttpStatus.BAD_GATEWAY).build()));
+
+        // Act & Assert
+        assertThrows(CatalogueUnavailableException.class, () -> client.reserveBooks(request));
+    }
+
+    @Test
+    @DisplayName("Un 404 del catalogo en la reserva es un rechazo definitivo")
+    void reserveBooks_ClientErrorIsRejected() {
+        // Arrange
+        BookCatalogueClient client = client(exchange -> Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build()));
+
+        // Act & Assert
+        assertThrows(CatalogueRejectedException.class, () -> client.reserveBooks(request));
+    }
+
+    @Test
+    @DisplayName("Si un descuento falla debe esperar al resto y compensar las lineas aplicadas y las de resultado desconocido")
+    void updateBooks_CompensatesAppliedAndUnknownLines() {
+        // Arrange
+        CreatePurchaseRequest threeLines = new CreatePurchaseRequest("u1", List.of(
+                PurchaseDetails.builder().bookId("ok").bookName("Dune").bookCount(1).valuePaid(20.0).build(),
+                PurchaseDetails.builder().bookId("caido").bookName("Emma").bookCount(1).valuePaid(20.0).build(),
+                PurchaseDetails.builder().bookId("agotado").bookName("Ulises").bookCount(1).valuePaid(20.0).build()),
+                60.0, "CARD", true);
+        List<ClientRequest> requests = new CopyOnWriteArrayList<>();
+        AtomicInteger unavailableCalls = new AtomicInteger();
+        BookCatalogueClient client = client(exchange -> {
+            requests.add(exchange);
+            String path = exchange.url().getPath();
+            if (path.startsWith("agotado")) {
+                return Mono.just(ClientResponse.create(HttpStatus.CONFLICT).build());
+            }
+            if (path.startsWith("caido") && unavailableCalls.getAndIncrement() == 0) {
+                return Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+            }
+            return Mono.just(ClientResponse.create(HttpStatus.NO_CONTENT).build());
+        });
+
+        // Act
+        assertThrows(CatalogueRejectedException.class, () -> client.updateBooks(threeLines));
+
+        // Assert
+        List<String> keys = requests.stream().map(request -> request.url().getPath() + " " + request.headers().getFirst("Idempotency-Key")).toList();
+        String unknownKey = requests.stream()
+                .filter(request -> request.url().getPath().startsWith("caido"))
+                .findFirst().orElseThrow()
+                .headers().getFirst("Idempotency-Key");
+        // La linea desconocida se reenvia con su misma clave antes de devolverla
+        assertEquals(2, keys.stream().filter(key -> key.equals("caido/stock " + unknownKey)).count());
+        assertTrue(keys.contains("caido/stock " + unknownKey + "-undo"));
+        assertEquals(1, keys.stream().filter(key -> key.startsWith("ok/stock") && key.endsWith("-undo")).count());
+        assertTrue(keys.stream().noneMatch(key -> key.startsWith("agotado/stock") && key.endsWith("-undo")));
+    }
+
+    private BookCatalogueClient client(ExchangeFunction exchange) {
+        CatalogueNearCache nearCache = new CatalogueNearCache(WebClient.create(), new SimpleMeterRegistry(), Duration.ofMinutes(1), 100);
+        BookCatalogueClient client = new BookCatalogueClient(WebClient.builder().exchangeFunction(exchange).build(), null, nearCache);
+        ReflectionTestUtils.setField(client, "deadline", Duration.ofMillis(200));
+        ReflectionTestUtils.setField(client, "callTimeout", Duration.ofMillis(200));
+        ReflectionTestUtils.setField(client, "concurrency", 4);
+        return client;
+    }
+}
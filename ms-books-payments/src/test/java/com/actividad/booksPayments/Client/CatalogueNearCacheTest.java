@@ -0,0 +1,57 @@
+package com.actividad.booksPayments.Client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogueNearCacheTest {
+
+    private CatalogueNearCache nearCache;
+
+    @BeforeEach
+    void setUp() {
+        nearCache = new CatalogueNearCache(WebClient.create(), new SimpleMeterRegistry(), Duration.ofMinutes(1), 100);
+        ReflectionTestUtils.setField(nearCache, "enabled", true);
+        ReflectionTestUtils.setField(nearCache, "safetyMargin", 10);
+    }
+
+    @Test
+    @DisplayName("Solo debe validar en local si el stock supera lo pedido en el margen de seguridad")
+    void hasStockFor_RespectsSafetyMargin() {
+        // Arrange
+        nearCache.put("bestseller", 50, true, 7L);
+        nearCache.put("casi-agotado", 12, true, 7L);
+        nearCache.put("oculto", 50, false, 7L);
+
+        // Act & Assert
+        assertTrue(nearCache.hasStockFor("bestseller", 2));
+        assertFalse(nearCache.hasStockFor("casi-agotado", 5));
+        assertFalse(nearCache.hasStockFor("oculto", 1));
+        assertFalse(nearCache.hasStockFor("desconocido", 1));
+    }
+
+    @Test
+    @DisplayName("Debe ignorar las entradas leidas con una version anterior del catalogo o invalidadas")
+    void hasStockFor_IgnoresStaleVersions() {
+        // Arrange
+        nearCache.put("a", 50, true, 7L);
+        nearCache.put("b", 50, true, 8L);
+        nearCache.put("c", 50, true, 8L);
+
+        // Act
+        nearCache.invalidate(List.of("c"));
+
+        // Assert
+        assertFalse(nearCache.hasStockFor("a", 1));
+        assertTrue(nearCache.hasStockFor("b", 1));
+        assertFalse(nearCache.hasStockFor("c", 1));
+    }
+}
@@ -0,0 +1,109 @@
+package com.actividad.booksPayments.benchmark;
+
+import com.actividad.booksPayments.Client.BookCatalogueClient;
+import com.actividad.booksPayments.Client.CatalogueLookupGuard;
+import com.actividad.booksPayments.Client.CatalogueNearCache;
+import com.actividad.booksPayments.controller.model.CreatePurchaseRequest;
+import com.actividad.booksPayments.data.model.PurchaseDetails;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comparativa entre consultar el stock linea a linea (suma de latencias) y en paralelo (latencia de la
+ * llamada mas lenta) contra un catalogo simulado que tarda CATALOGUE_LATENCY_MS en responder.
+ * Se ejecuta con -Dbench=true.
+ */
+@EnabledIfSystemProperty(named = "bench", matches = "true")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CatalogueFanOutBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogueFanOutBenchmarkTest.class);
+
+    private static final int CATALOGUE_LATENCY_MS = Integer.getInteger("bench.latencyMs", 100);
+    private static final int LINES = Integer.getInteger("bench.lines", 10);
+    private static final int ROUNDS = Integer.getInteger("bench.rounds", 5);
+
+    private HttpServer catalogue;
+    private BookCatalogueClient client;
+
+    @BeforeAll
+    void setUp() throws Exception {
+        catalogue = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        catalogue.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        catalogue.createContext("/books/", exchange -> {
+            try {
+                Thread.sleep(CATALOGUE_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"stock\":100,\"visible\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        catalogue.start();
+
+        WebClient webClient = WebClient.builder()
+                .baseUrl("http://localhost:" + catalogue.getAddress().getPort() + "/books/")
+                .build();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // Sin near-cache (enabled=false por defecto fuera de Spring): cada validacion sale al catalogo
+        client = new BookCatalogueClient(webClient,
+                new CatalogueLookupGuard(meterRegistry, 50, 50, Duration.ofSeconds(1), 50, 20,
+                        Duration.ofSeconds(10), 4 * LINES, Duration.ZERO),
+                new CatalogueNearCache(webClient, meterRegistry, Duration.ofSeconds(2), 1000));
+        ReflectionTestUtils.setField(client, "callTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(client, "deadline", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(client, "concurrency", LINES);
+    }
+
+    @AfterAll
+    void tearDown() {
+        catalogue.stop(0);
+    }
+
+    @Test
+    void concurrentLookupsCostTheSlowestCall() {
+        List<PurchaseDetails> lines = IntStream.range(0, LINES)
+                .mapToObj(i -> PurchaseDetails.builder().bookId("book-" + i).bookName("Libro " + i).bookCount(1).build())
+                .toList();
+        CreatePurchaseRequest request = new CreatePurchaseRequest("user", lines, 10.0, "card", true);
+
+        // Calentamiento de conexiones y JIT
+        client.validateStock(request);
+
+        long sequential = measure(() -> lines.forEach(line -> client.getBookStock(line.getBookId())));
+        long concurrent = measure(() -> client.validateStock(request));
+
+        log.info("{} lineas, catalogo a {}ms: secuencial {}ms, en paralelo {}ms",
+                LINES, CATALOGUE_LATENCY_MS, sequential, concurrent);
+        assertTrue(concurrent < sequential);
+    }
+
+    private long measure(Runnable checkout) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            checkout.run();
+        }
+        return (System.nanoTime() - start) / 1_000_000 / ROUNDS;
+    }
+}
@@ -0,0 +1,177 @@
+package com.actividad.booksPayments.benchmark;
+
+import com.actividad.booksPayments.MsBooksPaymentsApplication;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.server.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Carga de compras contra el modo MVC (pool de hilos acotado a bench.threads) y contra el modo reactivo
+ * (bench.threads hilos de event loop) con el mismo catalogo simulado, que tarda bench.latencyMs en reservar.
+ * Informa de compras por segundo y percentiles de latencia. Se ejecuta con -Dbench=true.
+ */
+@EnabledIfSystemProperty(named = "bench", matches = "true")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CheckoutLoadComparisonTest {
+
+    private static final Logger log = LoggerFactory.getLogger(CheckoutLoadComparisonTest.class);
+
+    private static final int CATALOGUE_LATENCY_MS = Integer.getInteger("bench.latencyMs", 50);
+    private static final int THREADS = Integer.getInteger("bench.threads", 8);
+    private static final int CLIENTS = Integer.getInteger("bench.clients", 200);
+    private static final int REQUESTS = Integer.getInteger("bench.requests", 4_000);
+
+    private static final String PURCHASE = """
+            {"userId":"bench","amount":10.0,"paymentMethod":"card","successfulPayment":true,
+             "purchaseDetails":[{"bookId":"b1","bookName":"Libro 1","bookCount":1,"valuePaid":5.0},
+                                {"bookId":"b2","bookName":"Libro 2","bookCount":1,"valuePaid":5.0}]}""";
+
+    private final HttpClient http = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+    private HttpServer catalogue;
+
+    @BeforeAll
+    void setUp() throws Exception {
+        // Hilos de event loop de Reactor Netty: servidor en modo reactivo y WebClient en ambos modos
+        System.setProperty("reactor.netty.ioWorkerCount", String.valueOf(THREADS));
+        catalogue = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        catalogue.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        catalogue.createContext("/books/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (path.endsWith("/_version")) {
+                respond(exchange, "{\"version\":1}");
+                return;
+            }
+            try {
+                Thread.sleep(CATALOGUE_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, path.endsWith("/_reserve") ? "{\"reserved\":true,\"failures\":[]}" : "{}");
+        });
+        catalogue.start();
+    }
+
+    @AfterAll
+    void tearDown() {
+        catalogue.stop(0);
+    }
+
+    @Test
+    void compareMvcAndReactiveCheckouts() throws Exception {
+        long[] mvc = run("default");
+        long[] reactive = run("reactive");
+
+        log.info("{} compras, {} clientes, {} hilos de servidor, catalogo a {}ms",
+                REQUESTS, CLIENTS, THREADS, CATALOGUE_LATENCY_MS);
+        report("mvc     ", mvc);
+        report("reactive", reactive);
+        assertEquals(REQUESTS, reactive.length - 1);
+    }
+
+    /**
+     * Arranca el servicio en el modo indicado y lanza REQUESTS compras con CLIENTS clientes simultaneos.
+     * La ultima posicion del resultado es el tiempo total en nanosegundos.
+     */
+    private long[] run(String profile) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(MsBooksPaymentsApplication.class)
+                .profiles(profile)
+                .properties("server.port=0",
+                        "eureka.client.enabled=false",
+                        "spring.jpa.show-sql=false",
+                        "catalogueService.url=http://localhost:" + catalogue.getAddress().getPort() + "/books/",
+                        "catalogueService.near-cache.enabled=false",
+                        "server.tomcat.threads.max=" + THREADS)
+                .run();
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/purchase"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(PURCHASE))
+                    .build();
+
+            // Calentamiento de conexiones y JIT
+            load(request, REQUESTS / 10);
+            long start = System.nanoTime();
+            long[] latencies = load(request, REQUESTS);
+            long[] result = Arrays.copyOf(latencies, latencies.length + 1);
+            result[latencies.length] = System.nanoTime() - start;
+            return result;
+        } finally {
+            context.close();
+        }
+    }
+
+    private long[] load(HttpRequest request, int total) throws Exception {
+        long[] latencies = new long[total];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                futures.add(clients.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < total; i = next.getAndIncrement()) {
+                        long start = System.nanoTime();
+                        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                        latencies[i] = System.nanoTime() - start;
+                        if (response.statusCode() != 201) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        assertEquals(0, errors.get(), "Compras rechazadas durante la carga");
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private void report(String label, long[] result) {
+        long[] sorted = Arrays.copyOf(result, result.length - 1);
+        double seconds = result[result.length - 1] / 1_000_000_000.0;
+        log.info("{} {} compras/s p50={}ms p95={}ms p99={}ms", label, "%.0f".formatted(sorted.length / seconds),
+                "%.2f".formatted(percentile(sorted, 0.50)), "%.2f".formatted(percentile(sorted, 0.95)),
+                "%.2f".formatted(percentile(sorted, 0.99)));
+    }
+
+    private double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1_000_000.0;
+    }
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+}
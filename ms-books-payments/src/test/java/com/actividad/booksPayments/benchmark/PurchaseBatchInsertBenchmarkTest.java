@@ -0,0 +1,94 @@
+package com.actividad.booksPayments.benchmark;
+
+import com.actividad.booksPayments.data.PurchaseArchiveRepository;
+import com.actividad.booksPayments.data.PurchaseRepository;
+import com.actividad.booksPayments.data.PurchaseRollupRepository;
+import com.actividad.booksPayments.data.PurchaseSearchOutboxRepository;
+import com.actividad.booksPayments.data.StockOutboxRepository;
+import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.model.PurchaseDetails;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Filas por segundo al guardar compras con sus lineas con y sin lotes JDBC. Con lote 1 cada fila es un
+ * INSERT con su ida y vuelta, como ocurria con ids IDENTITY; con lote bench.batchSize los INSERT de cada
+ * tabla se agrupan. Sobre H2 en memoria la diferencia es menor que contra una base de datos remota, donde
+ * cada ida y vuelta cuesta latencia de red. Se ejecuta con -Dbench=true.
+ */
+@EnabledIfSystemProperty(named = "bench", matches = "true")
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@Import({PurchaseRepository.class, StockOutboxRepository.class, PurchaseRollupRepository.class, PurchaseSearchOutboxRepository.class,
+        PurchaseArchiveRepository.class})
+class PurchaseBatchInsertBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PurchaseBatchInsertBenchmarkTest.class);
+
+    private static final int PURCHASES = Integer.getInteger("bench.purchases", 2_000);
+    private static final int LINES = Integer.getInteger("bench.lines", 30);
+    private static final int BATCH_SIZE = Integer.getInteger("bench.batchSize", 50);
+    private static final int CHUNK_SIZE = 500;
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void compareRowByRowAndBatchedInserts() {
+        // Calentamiento de JIT y de las secuencias
+        insert(1, PURCHASES / 10);
+        insert(BATCH_SIZE, PURCHASES / 10);
+
+        double rowByRow = insert(1, PURCHASES);
+        double batched = insert(BATCH_SIZE, PURCHASES);
+
+        log.info("{} compras de {} lineas ({} filas)", PURCHASES, LINES, PURCHASES * (LINES + 1));
+        log.info("lote 1: {} filas/s", "%.0f".formatted(rowByRow));
+        log.info("lote {}: {} filas/s", BATCH_SIZE, "%.0f".formatted(batched));
+        assertEquals(BATCH_SIZE, entityManager.unwrap(Session.class).getJdbcBatchSize());
+    }
+
+    private double insert(int batchSize, int purchases) {
+        entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+        List<Purchase> aggregates = IntStream.range(0, purchases).mapToObj(i -> purchase()).toList();
+        long start = System.nanoTime();
+        purchaseRepository.importAll(aggregates, CHUNK_SIZE);
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        return purchases * (LINES + 1) / seconds;
+    }
+
+    private Purchase purchase() {
+        Purchase purchase = Purchase.builder()
+                .userId("bench")
+                .amount(10.0 * LINES)
+                .paymentMethod("CARD")
+                .successfulPayment(true)
+                .build();
+        purchase.setBooksDetails(IntStream.range(0, LINES)
+                .mapToObj(i -> PurchaseDetails.builder()
+                        .bookId("BOOK_" + i)
+                        .bookName("Libro " + i)
+                        .bookCount(1)
+                        .valuePaid(10.0)
+                        .purchase(purchase)
+                        .build())
+                .collect(Collectors.toCollection(ArrayList::new)));
+        return purchase;
+    }
+}
@@ -0,0 +1,105 @@
+package com.actividad.booksPayments.controller;
+
+import com.actividad.booksPayments.Client.CatalogueRejectedException;
+import com.actividad.booksPayments.Client.CatalogueUnavailableException;
+import com.actividad.booksPayments.controller.model.CreatePurchaseRequest;
+import com.actividad.booksPayments.data.IdempotencyRepository;
+import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.service.IReactivePurchaseService;
+import com.actividad.booksPayments.service.PurchaseIdempotencyStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactivePurchaseControllerTest {
+
+    @Mock
+    private IReactivePurchaseService service;
+
+    @Mock
+    private IdempotencyRepository idempotencyRepository;
+
+    private ReactivePurchaseController controller;
+
+    private final CreatePurchaseRequest request = new CreatePurchaseRequest("u1", List.of(), 20.0, "CARD", true);
+
+    @BeforeEach
+    void setUp() {
+        PurchaseIdempotencyStore store = new PurchaseIdempotencyStore(idempotencyRepository, new ObjectMapper(),
+                new SimpleMeterRegistry(), Duration.ofHours(1), 100);
+        ReflectionTestUtils.setField(store, "waitTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(store, "staleAfter", Duration.ofMinutes(1));
+        controller = new ReactivePurchaseController(service, store);
+        lenient().when(idempotencyRepository.find("retry-key")).thenReturn(Optional.empty());
+    }
+
+    @Test
+    @DisplayName("Un timeout del catalogo no debe guardarse: el reintento con la misma clave vuelve a ejecutar la compra")
+    void purchase_TimeoutThenRetry() {
+        // Arrange
+        when(service.createPurchase(any()))
+                .thenReturn(Mono.error(new CatalogueUnavailableException("Reserva de stock - Error: timeout de 5s", new TimeoutException())))
+                .thenReturn(Mono.just(Purchase.builder().transaction_id(7L).userId("u1").build()));
+
+        // Act
+        ResponseEntity<?> first = controller.purchase("retry-key", request).block();
+        ResponseEntity<?> retry = controller.purchase("retry-key", request).block();
+
+        // Assert
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, first.getStatusCode());
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        verify(idempotencyRepository).release("retry-key");
+        verify(idempotencyRepository, times(1)).complete(eq("retry-key"), eq(201), anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("Un rechazo del catalogo debe responder 404 y guardarse")
+    void purchase_RejectionIsStored() {
+        // Arrange
+        when(service.createPurchase(any())).thenReturn(Mono.error(new CatalogueRejectedException("Sin stock: Dune")));
+
+        // Act
+        ResponseEntity<?> response = controller.purchase("retry-key", request).block();
+
+        // Assert
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        verify(idempotencyRepository).complete(eq("retry-key"), eq(404), anyString(), eq("Sin stock: Dune"));
+    }
+
+    @Test
+    @DisplayName("Un error inesperado debe responder 500, no 404, y no guardarse")
+    void purchase_UnexpectedErrorIsNotStored() {
+        // Arrange
+        when(service.createPurchase(any())).thenReturn(Mono.error(new IllegalStateException("base de datos caida")));
+
+        // Act
+        ResponseEntity<?> response = controller.purchase("retry-key", request).block();
+
+        // Assert
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        verify(idempotencyRepository).release("retry-key");
+        verify(idempotencyRepository, never()).complete(anyString(), anyInt(), anyString(), anyString());
+    }
+}
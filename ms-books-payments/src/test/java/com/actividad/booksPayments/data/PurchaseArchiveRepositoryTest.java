@@ -0,0 +1,165 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.model.PurchaseArchiveSegment;
+import com.actividad.booksPayments.data.model.PurchaseDetails;
+import com.actividad.booksPayments.data.utils.PurchasePage;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({PurchaseRepository.class, StockOutboxRepository.class, PurchaseRollupRepository.class, PurchaseSearchOutboxRepository.class,
+        PurchaseArchiveRepository.class})
+class PurchaseArchiveRepositoryTest {
+
+    private static final String USER = "archive_user";
+    private static final YearMonth JANUARY = YearMonth.of(2001, 1);
+    private static final YearMonth FEBRUARY = YearMonth.of(2001, 2);
+    private static final YearMonth MARCH = YearMonth.of(2001, 3);
+
+    @TempDir
+    static Path archiveDir;
+
+    @DynamicPropertySource
+    static void archiveProperties(DynamicPropertyRegistry registry) {
+        registry.add("purchases.archive.dir", archiveDir::toString);
+    }
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Autowired
+    private PurchaseArchiveRepository archiveRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Purchase hot;
+    private Purchase january;
+
+    @BeforeEach
+    void setUp() {
+        // La compra caliente se guarda primero: tiene un id menor que las archivadas
+        hot = purchaseRepository.save(purchase(Instant.parse("2030-03-04T10:00:00Z")));
+        january = purchaseRepository.save(purchase(Instant.parse("2001-01-10T10:00:00Z")));
+        purchaseRepository.save(purchase(Instant.parse("2001-01-31T23:59:59Z")));
+        purchaseRepository.save(purchase(Instant.parse("2001-02-01T00:00:00Z")));
+        entityManager.flush();
+
+        archive(JANUARY);
+        archive(FEBRUARY);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("Archivar un mes debe sacar sus compras de las tablas calientes y seguir devolviendolas por id con sus lineas")
+    void moveToArchive_KeepsPurchasesReadable() {
+        // Act
+        Purchase found = purchaseRepository.getIdTransaction(january.getTransaction_id());
+
+        // Assert
+        assertNull(entityManager.find(Purchase.class, january.getTransaction_id()));
+        assertNotNull(found);
+        assertEquals(USER, found.getUserId());
+        assertEquals(2, found.getBooksDetails().size());
+        assertEquals(List.of(2, 1), purchaseRepository.getArchiveSegments().stream()
+                .map(PurchaseArchiveSegment::getPurchaseCount).toList());
+    }
+
+    @Test
+    @DisplayName("Debe paginar por keyset mezclando compras calientes y archivadas en orden de id")
+    void getPaymentsUser_MergesHotAndArchive() {
+        // Act
+        PurchasePage first = purchaseRepository.getPaymentsUser(USER, 0L, 2);
+        PurchasePage last = purchaseRepository.getPaymentsUser(USER, first.getNextCursor(), 2);
+
+        // Assert
+        List<Long> ids = new ArrayList<>();
+        for (PurchasePage page : List.of(first, last)) {
+            page.getPurchases().forEach(purchase -> ids.add(purchase.getTransaction_id()));
+        }
+        assertEquals(4, ids.size());
+        assertEquals(ids.stream().sorted().distinct().toList(), ids);
+        assertEquals(hot.getTransaction_id(), ids.getFirst());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Con ventana de fechas solo debe devolver las compras de los meses que la cruzan")
+    void getPaymentsUser_WindowPrunesMonths() {
+        // Act
+        PurchasePage page = purchaseRepository.getPaymentsUser(USER, 0L, 10,
+                PurchaseArchiveRepository.monthStart(JANUARY), PurchaseArchiveRepository.monthStart(FEBRUARY));
+
+        // Assert
+        assertEquals(2, page.getPurchases().size());
+        assertTrue(page.getPurchases().stream().allMatch(purchase -> purchase.getCreatedAt().isBefore(
+                PurchaseArchiveRepository.monthStart(FEBRUARY))));
+    }
+
+    @Test
+    @DisplayName("Sin ventana de fechas solo debe leer los segmentos que contienen compras del usuario")
+    void getPaymentsUser_SkipsSegmentsWithoutTheUser() throws Exception {
+        // Arrange
+        purchaseRepository.save(purchase("other_user", Instant.parse("2001-03-15T10:00:00Z")));
+        entityManager.flush();
+        PurchaseArchiveSegment march = archive(MARCH);
+        entityManager.flush();
+        entityManager.clear();
+        // Si se intentara leer el segmento de marzo fallaria
+        Files.delete(archiveDir.resolve(march.getFileName()));
+
+        // Act
+        PurchasePage page = purchaseRepository.getPaymentsUser(USER, 0L, 10);
+
+        // Assert
+        assertEquals(4, page.getPurchases().size());
+        assertTrue(page.getPurchases().stream().allMatch(purchase -> USER.equals(purchase.getUserId())));
+    }
+
+    private PurchaseArchiveSegment archive(YearMonth month) {
+        List<Long> ids = purchaseRepository.getIdsCreatedBetween(
+                PurchaseArchiveRepository.monthStart(month), PurchaseArchiveRepository.monthStart(month.plusMonths(1)));
+        PurchaseArchiveSegment segment = archiveRepository.write(month, ids, 1, purchaseRepository::getWithDetails);
+        purchaseRepository.moveToArchive(segment, ids, 1);
+        return segment;
+    }
+
+    private Purchase purchase(Instant createdAt) {
+        return purchase(USER, createdAt);
+    }
+
+    private Purchase purchase(String userId, Instant createdAt) {
+        Purchase purchase = Purchase.builder()
+                .userId(userId)
+                .amount(25.0)
+                .paymentMethod("CARD")
+                .successfulPayment(true)
+                .createdAt(createdAt)
+                .build();
+        List<PurchaseDetails> details = new ArrayList<>();
+        for (String bookId : List.of("A_1", "A_2")) {
+            details.add(PurchaseDetails.builder().purchase(purchase).bookId(bookId).bookName(bookId).bookCount(1).valuePaid(12.5).build());
+        }
+        purchase.setBooksDetails(details);
+        return purchase;
+    }
+}
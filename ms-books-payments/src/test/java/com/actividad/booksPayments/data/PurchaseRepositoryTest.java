@@ -0,0 +1,172 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.DailyRevenue;
+import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.model.PurchaseDetails;
+import com.actividad.booksPayments.data.utils.PurchasePage;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({PurchaseRepository.class, StockOutboxRepository.class, PurchaseRollupRepository.class, PurchaseSearchOutboxRepository.class,
+        PurchaseArchiveRepository.class})
+class PurchaseRepositoryTest {
+
+    private static final String USER = "heavy_buyer";
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Autowired
+    private PurchaseRollupRepository rollupRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        IntStream.range(0, 5).forEach(i -> purchaseRepository.save(purchase(USER, 3)));
+        purchaseRepository.save(purchase("other_user", 2));
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("Debe cargar una pagina de compras con sus lineas en tres consultas, sin una consulta por compra")
+    void getPaymentsUser_LoadsDetailsWithoutNPlusOne() {
+        // Act
+        PurchasePage page = purchaseRepository.getPaymentsUser(USER, 0L, 10);
+        // Recorremos las lineas como haria la serializacion de la respuesta
+        int details = page.getPurchases().stream().mapToInt(purchase -> purchase.getBooksDetails().size()).sum();
+
+        // Assert
+        assertEquals(5, page.getPurchases().size());
+        assertEquals(15, details);
+        assertNull(page.getNextCursor());
+        // ids + fetch join + segmentos del archivo que pueden tener compras del usuario
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Debe recorrer las compras por keyset sin repetir ni saltarse ninguna")
+    void getPaymentsUser_KeysetPagination() {
+        // Act
+        PurchasePage first = purchaseRepository.getPaymentsUser(USER, 0L, 2);
+        PurchasePage second = purchaseRepository.getPaymentsUser(USER, first.getNextCursor(), 2);
+        PurchasePage last = purchaseRepository.getPaymentsUser(USER, second.getNextCursor(), 2);
+
+        // Assert
+        List<Long> ids = new ArrayList<>();
+        for (PurchasePage page : List.of(first, second, last)) {
+            page.getPurchases().forEach(purchase -> ids.add(purchase.getTransaction_id()));
+        }
+        assertEquals(5, ids.size());
+        assertEquals(ids.stream().sorted().distinct().toList(), ids);
+        assertEquals(ids.get(1), first.getNextCursor());
+        assertEquals(ids.get(3), second.getNextCursor());
+        assertNull(last.getNextCursor());
+        assertEquals(1, last.getPurchases().size());
+        // Tres consultas por pagina: ids + fetch join + segmentos del archivo
+        assertEquals(9, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Debe devolver una pagina vacia sin consultar lineas si el usuario no tiene compras")
+    void getPaymentsUser_UnknownUser() {
+        // Act
+        PurchasePage page = purchaseRepository.getPaymentsUser("unknown", 0L, 10);
+
+        // Assert
+        assertTrue(page.getPurchases().isEmpty());
+        assertNull(page.getNextCursor());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Debe importar las compras enviando los INSERT de cada tabla en lotes y no fila a fila")
+    void importAll_BatchesInserts() {
+        // Arrange
+        List<Purchase> purchases = IntStream.range(0, 10).mapToObj(i -> purchase("importer", 3)).toList();
+
+        // Act
+        int imported = purchaseRepository.importAll(purchases, 500);
+
+        // Assert
+        assertEquals(10, imported);
+        assertEquals(40, statistics.getEntityInsertCount());
+        // Un INSERT preparado por tabla y lote, alguna llamada a las secuencias y un upsert de acumulados por
+        // usuario, libro y dia (5), frente a 40 INSERT sin lotes
+        assertTrue(statistics.getPrepareStatementCount() < 15);
+        assertEquals(10, purchaseRepository.getPaymentsUser("importer", 0L, 100).getPurchases().size());
+    }
+
+    @Test
+    @DisplayName("Debe conservar la fecha original de una compra importada en los acumulados diarios y en el mes de archivo")
+    void importAll_KeepsOriginalCreatedAt() {
+        // Arrange
+        LocalDate day = LocalDate.now(ZoneOffset.UTC).minusYears(1).withDayOfMonth(15);
+        Instant createdAt = day.atTime(10, 30).toInstant(ZoneOffset.UTC);
+        YearMonth month = YearMonth.from(day);
+        Purchase historical = purchase("importer", 2);
+        historical.setCreatedAt(createdAt);
+
+        // Act
+        purchaseRepository.importAll(List.of(historical), 500);
+
+        // Assert
+        List<DailyRevenue> days = rollupRepository.findDays(day, day);
+        assertEquals(1, days.size());
+        assertEquals(1, days.getFirst().getPurchaseCount());
+        assertEquals(20.0, days.getFirst().getAmount());
+        // El archivador toma el mes de la compra mas antigua y archiva sus ids
+        assertEquals(createdAt, purchaseRepository.getOldestCreatedAt());
+        assertEquals(List.of(historical.getTransaction_id()), purchaseRepository.getIdsCreatedBetween(
+                PurchaseArchiveRepository.monthStart(month), PurchaseArchiveRepository.monthStart(month.plusMonths(1))));
+    }
+
+    private Purchase purchase(String userId, int lines) {
+        Purchase purchase = Purchase.builder()
+                .userId(userId)
+                .amount(10.0 * lines)
+                .paymentMethod("CARD")
+                .successfulPayment(true)
+                .build();
+        purchase.setBooksDetails(IntStream.range(0, lines)
+                .mapToObj(i -> PurchaseDetails.builder()
+                        .bookId("BOOK_" + i)
+                        .bookName("Libro " + i)
+                        .bookCount(1)
+                        .valuePaid(10.0)
+                        .purchase(purchase)
+                        .build())
+                .collect(Collectors.toCollection(ArrayList::new)));
+        return purchase;
+    }
+}
@@ -0,0 +1,143 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.BookSalesTotals;
+import com.actividad.booksPayments.data.model.DailyRevenue;
+import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.model.PurchaseDetails;
+import com.actividad.booksPayments.data.model.UserPurchaseTotals;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({PurchaseRepository.class, StockOutboxRepository.class, PurchaseRollupRepository.class, PurchaseSearchOutboxRepository.class,
+        PurchaseArchiveRepository.class})
+class PurchaseRollupRepositoryTest {
+
+    private static final Instant MONDAY = Instant.parse("2030-03-04T10:00:00Z");
+    private static final Instant TUESDAY = Instant.parse("2030-03-05T23:30:00Z");
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Autowired
+    private PurchaseRollupRepository rollupRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    @DisplayName("Debe sumar cada compra pagada a los acumulados de su usuario, sus libros y su dia")
+    void save_UpdatesRollups() {
+        // Arrange
+        purchaseRepository.save(purchase("rollup_user", MONDAY, true, line("R_1", "Dune", 2, 30.0), line("R_2", "Emma", 1, 12.5)));
+        purchaseRepository.save(purchase("rollup_user", TUESDAY, true, line("R_1", "Dune", 1, 15.0)));
+        purchaseRepository.save(purchase("other_rollup_user", TUESDAY, true, line("R_1", "Dune", 3, 45.0)));
+
+        // Act
+        entityManager.clear();
+        UserPurchaseTotals user = rollupRepository.findUser("rollup_user").orElseThrow();
+        BookSalesTotals dune = rollupRepository.findBook("R_1").orElseThrow();
+        List<DailyRevenue> days = rollupRepository.findDays(date(MONDAY), date(TUESDAY));
+
+        // Assert
+        assertEquals(2, user.getPurchaseCount());
+        assertEquals(4, user.getBookCount());
+        assertEquals(57.5, user.getAmount(), 0.001);
+        assertEquals("Dune", dune.getBookName());
+        assertEquals(3, dune.getPurchaseCount());
+        assertEquals(6, dune.getBookCount());
+        assertEquals(90.0, dune.getValuePaid(), 0.001);
+        assertEquals(2, days.size());
+        assertEquals(1, days.get(0).getPurchaseCount());
+        assertEquals(42.5, days.get(0).getAmount(), 0.001);
+        assertEquals(2, days.get(1).getPurchaseCount());
+        assertEquals(4, days.get(1).getBookCount());
+    }
+
+    @Test
+    @DisplayName("No debe contar los pagos fallidos ni repetir la compra si un libro aparece en varias lineas")
+    void save_IgnoresFailedPaymentsAndRepeatedBooks() {
+        // Arrange
+        purchaseRepository.save(purchase("failed_user", MONDAY, false, line("R_3", "Ulises", 1, 20.0)));
+        purchaseRepository.save(purchase("split_user", MONDAY, true, line("R_4", "Odisea", 1, 10.0), line("R_4", "Odisea", 2, 20.0)));
+
+        // Act
+        entityManager.clear();
+
+        // Assert
+        assertTrue(rollupRepository.findUser("failed_user").isEmpty());
+        assertTrue(rollupRepository.findBook("R_3").isEmpty());
+        BookSalesTotals odisea = rollupRepository.findBook("R_4").orElseThrow();
+        assertEquals(1, odisea.getPurchaseCount());
+        assertEquals(3, odisea.getBookCount());
+    }
+
+    @Test
+    @DisplayName("Reconstruir por tramos debe dar los mismos acumulados que las actualizaciones incrementales")
+    void rebuildRollups_MatchesIncrementalTotals() {
+        // Arrange
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Purchase saved = purchaseRepository.save(purchase("rebuild_user", i % 2 == 0 ? MONDAY : TUESDAY, true,
+                    line("R_5", "Fausto", 1 + i, 10.0 * (1 + i))));
+            ids.add(saved.getTransaction_id());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        UserPurchaseTotals incremental = rollupRepository.findUser("rebuild_user").orElseThrow();
+        entityManager.clear();
+
+        // Act
+        rollupRepository.clear();
+        long min = purchaseRepository.getMinId();
+        long max = purchaseRepository.getMaxId();
+        long middle = ids.get(2);
+        int rebuilt = purchaseRepository.rebuildRollups(min, middle) + purchaseRepository.rebuildRollups(middle + 1, max);
+        entityManager.clear();
+
+        // Assert
+        UserPurchaseTotals user = rollupRepository.findUser("rebuild_user").orElseThrow();
+        assertTrue(rebuilt >= 6);
+        assertEquals(incremental.getPurchaseCount(), user.getPurchaseCount());
+        assertEquals(incremental.getBookCount(), user.getBookCount());
+        assertEquals(incremental.getAmount(), user.getAmount(), 0.001);
+        assertEquals(21, rollupRepository.findBook("R_5").orElseThrow().getBookCount());
+    }
+
+    private Purchase purchase(String userId, Instant createdAt, boolean successful, PurchaseDetails... lines) {
+        Purchase purchase = Purchase.builder()
+                .userId(userId)
+                .amount(List.of(lines).stream().mapToDouble(PurchaseDetails::getValuePaid).sum())
+                .paymentMethod("CARD")
+                .successfulPayment(successful)
+                .createdAt(createdAt)
+                .build();
+        List<PurchaseDetails> details = new ArrayList<>();
+        for (PurchaseDetails line : lines) {
+            line.setPurchase(purchase);
+            details.add(line);
+        }
+        purchase.setBooksDetails(details);
+        return purchase;
+    }
+
+    private PurchaseDetails line(String bookId, String bookName, int count, double valuePaid) {
+        return PurchaseDetails.builder().bookId(bookId).bookName(bookName).bookCount(count).valuePaid(valuePaid).build();
+    }
+
+    private LocalDate date(Instant instant) {
+        return LocalDate.ofInstant(instant, ZoneOffset.UTC);
+    }
+}
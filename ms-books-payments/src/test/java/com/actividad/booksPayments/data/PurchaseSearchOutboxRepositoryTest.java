@@ -0,0 +1,86 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.model.PurchaseDetails;
+import com.actividad.booksPayments.data.model.PurchaseSearchOutboxEntry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "purchases.search.enabled=true")
+@Import({PurchaseRepository.class, StockOutboxRepository.class, PurchaseRollupRepository.class, PurchaseSearchOutboxRepository.class,
+        PurchaseArchiveRepository.class})
+class PurchaseSearchOutboxRepositoryTest {
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Autowired
+    private PurchaseSearchOutboxRepository outboxRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    @DisplayName("Debe dejar cada compra guardada pendiente de proyectar y reclamarla una sola vez mientras dura el lease")
+    void save_EnqueuesPurchaseForProjection() {
+        // Arrange
+        Purchase saved = purchaseRepository.save(purchase("search_user"));
+        entityManager.flush();
+        entityManager.clear();
+        Instant now = Instant.now().plusSeconds(1);
+
+        // Act
+        List<PurchaseSearchOutboxEntry> first = outboxRepository.claimDue(now, 100, Duration.ofSeconds(30));
+        entityManager.flush();
+        List<PurchaseSearchOutboxEntry> second = outboxRepository.claimDue(now, 100, Duration.ofSeconds(30));
+
+        // Assert
+        assertTrue(first.stream().anyMatch(entry -> entry.getTransactionId().equals(saved.getTransaction_id())));
+        assertTrue(second.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Reproyectar un tramo debe encolar sus compras aunque alguna siga pendiente")
+    void replay_EnqueuesRangeWithoutDuplicates() {
+        // Arrange
+        Purchase first = purchaseRepository.save(purchase("replay_user"));
+        Purchase second = purchaseRepository.save(purchase("replay_user"));
+        entityManager.flush();
+        outboxRepository.markProjected(List.of(first.getTransaction_id()));
+
+        // Act
+        int enqueued = outboxRepository.replay(first.getTransaction_id(), second.getTransaction_id());
+        entityManager.clear();
+
+        // Assert
+        assertEquals(2, enqueued);
+        List<Long> pending = outboxRepository.claimDue(Instant.now().plusSeconds(1), 100, Duration.ofSeconds(30)).stream()
+                .map(PurchaseSearchOutboxEntry::getTransactionId)
+                .toList();
+        assertTrue(pending.containsAll(List.of(first.getTransaction_id(), second.getTransaction_id())));
+    }
+
+    private Purchase purchase(String userId) {
+        Purchase purchase = Purchase.builder()
+                .userId(userId)
+                .amount(20.0)
+                .paymentMethod("CARD")
+                .successfulPayment(true)
+                .build();
+        List<PurchaseDetails> details = new ArrayList<>();
+        details.add(PurchaseDetails.builder().bookId("S_1").bookName("Rayuela").bookCount(1).valuePaid(20.0).purchase(purchase).build());
+        purchase.setBooksDetails(details);
+        return purchase;
+    }
+}
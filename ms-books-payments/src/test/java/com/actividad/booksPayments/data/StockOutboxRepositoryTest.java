@@ -0,0 +1,166 @@
+package com.actividad.booksPayments.data;
+
+import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.model.PurchaseDetails;
+import com.actividad.booksPayments.data.model.StockOutboxEvent;
+import com.actividad.booksPayments.data.model.StockOutboxStatus;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({PurchaseRepository.class, StockOutboxRepository.class, PurchaseRollupRepository.class, PurchaseSearchOutboxRepository.class,
+        PurchaseArchiveRepository.class})
+class StockOutboxRepositoryTest {
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Autowired
+    private StockOutboxRepository stockOutboxRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    @DisplayName("Debe guardar un evento de stock por linea junto con la compra")
+    void saveWithStockOutbox_EnqueuesOneEventPerLine() {
+        // Act
+        Purchase saved = purchaseRepository.saveWithStockOutbox(purchase("hot", 2, "cold", 1));
+        entityManager.flush();
+        entityManager.clear();
+
+        // Assert
+        List<StockOutboxEvent> events = entityManager
+                .createQuery("select e from StockOutboxEvent e order by e.id", StockOutboxEvent.class)
+                .getResultList();
+        assertEquals(2, events.size());
+        assertEquals(saved.getTransaction_id(), events.getFirst().getTransactionId());
+        assertEquals(-2, events.getFirst().getDelta());
+        assertEquals(StockOutboxStatus.PENDING, events.getFirst().getStatus());
+    }
+
+    @Test
+    @DisplayName("Debe agrupar los eventos de un mismo libro bajo una sola clave")
+    void claimDue_CoalescesByBook() {
+        // Arrange
+        purchaseRepository.saveWithStockOutbox(purchase("hot", 1, "cold", 1));
+        purchaseRepository.saveWithStockOutbox(purchase("hot", 2, "other", 1));
+        entityManager.flush();
+
+        // Act
+        Map<String, List<StockOutboxEvent>> batches = stockOutboxRepository.claimDue(Instant.now().plusSeconds(1), 100, Duration.ofSeconds(30));
+
+        // Assert
+        assertEquals(3, batches.size());
+        List<StockOutboxEvent> hot = batches.values().stream()
+                .filter(events -> events.getFirst().getBookId().equals("hot"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(2, hot.size());
+        assertEquals(-3, hot.stream().mapToInt(StockOutboxEvent::getDelta).sum());
+    }
+
+    @Test
+    @DisplayName("Debe reintentar con la misma clave y el mismo grupo aunque lleguen eventos nuevos del libro")
+    void claimDue_RetriesKeepTheirKey() {
+        // Arrange
+        purchaseRepository.saveWithStockOutbox(purchase("hot", 1, "cold", 1));
+        entityManager.flush();
+        Instant now = Instant.now().plusSeconds(1);
+        Map<String, List<StockOutboxEvent>> first = stockOutboxRepository.claimDue(now, 100, Duration.ofSeconds(30));
+        String hotKey = keyOf(first, "hot");
+        entityManager.flush();
+        stockOutboxRepository.reschedule(ids(first.get(hotKey)), now, "503");
+        stockOutboxRepository.markSent(ids(first.get(keyOf(first, "cold"))));
+        purchaseRepository.saveWithStockOutbox(purchase("hot", 5, null, 0));
+        entityManager.flush();
+        entityManager.clear();
+
+        // Act
+        Map<String, List<StockOutboxEvent>> second = stockOutboxRepository.claimDue(now.plusSeconds(1), 100, Duration.ofSeconds(30));
+
+        // Assert
+        assertEquals(2, second.size());
+        assertEquals(-1, second.get(hotKey).stream().mapToInt(StockOutboxEvent::getDelta).sum());
+        assertEquals(1, second.get(hotKey).getFirst().getAttempts());
+        assertTrue(second.keySet().stream().anyMatch(key -> !key.equals(hotKey)));
+    }
+
+    @Test
+    @DisplayName("Debe reenviar por separado los eventos de un lote rechazado, sin contar el intento")
+    void split_SendsEachEventAlone() {
+        // Arrange
+        purchaseRepository.saveWithStockOutbox(purchase("hot", 1, null, 0));
+        purchaseRepository.saveWithStockOutbox(purchase("hot", 50, null, 0));
+        entityManager.flush();
+        Instant now = Instant.now().plusSeconds(1);
+        Map<String, List<StockOutboxEvent>> first = stockOutboxRepository.claimDue(now, 100, Duration.ofSeconds(30));
+        entityManager.flush();
+        stockOutboxRepository.split(first.get(keyOf(first, "hot")), now);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Act
+        Map<String, List<StockOutboxEvent>> second = stockOutboxRepository.claimDue(now.plusSeconds(1), 100, Duration.ofSeconds(30));
+
+        // Assert
+        assertEquals(2, second.size());
+        second.forEach((key, events) -> {
+            assertEquals(1, events.size());
+            assertEquals("outbox-event-" + events.getFirst().getId(), key);
+            assertEquals(0, events.getFirst().getAttempts());
+        });
+    }
+
+    @Test
+    @DisplayName("Debe contar los eventos que han quedado en FAILED")
+    void countFailed_CountsOnlyFailed() {
+        // Arrange
+        purchaseRepository.saveWithStockOutbox(purchase("hot", 1, "cold", 1));
+        entityManager.flush();
+        Map<String, List<StockOutboxEvent>> batches = stockOutboxRepository.claimDue(Instant.now().plusSeconds(1), 100, Duration.ofSeconds(30));
+        entityManager.flush();
+        stockOutboxRepository.markFailed(ids(batches.get(keyOf(batches, "hot"))), "409");
+
+        // Act
+        long failed = stockOutboxRepository.countFailed();
+
+        // Assert
+        assertEquals(1, failed);
+    }
+
+    private String keyOf(Map<String, List<StockOutboxEvent>> batches, String bookId) {
+        return batches.entrySet().stream()
+                .filter(entry -> entry.getValue().getFirst().getBookId().equals(bookId))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private List<Long> ids(List<StockOutboxEvent> events) {
+        return events.stream().map(StockOutboxEvent::getId).toList();
+    }
+
+    private Purchase purchase(String firstBook, int firstCount, String secondBook, int secondCount) {
+        Purchase purchase = Purchase.builder().userId("user").amount(10.0).paymentMethod("CARD").successfulPayment(true).build();
+        List<PurchaseDetails> details = new ArrayList<>();
+        details.add(PurchaseDetails.builder().bookId(firstBook).bookName(firstBook).bookCount(firstCount).valuePaid(5.0).purchase(purchase).build());
+        if (secondBook != null) {
+            details.add(PurchaseDetails.builder().bookId(secondBook).bookName(secondBook).bookCount(secondCount).valuePaid(5.0).purchase(purchase).build());
+        }
+        purchase.setBooksDetails(details);
+        return purchase;
+    }
+}
@@ -0,0 +1,168 @@
+package com.actividad.booksPayments.service;
+
+import com.actividad.booksPayments.data.IdempotencyRepository;
+import com.actividad.booksPayments.data.model.IdempotencyRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PurchaseIdempotencyStoreTest {
+
+    @Mock
+    private IdempotencyRepository repository;
+
+    private PurchaseIdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new PurchaseIdempotencyStore(repository, new ObjectMapper(), new SimpleMeterRegistry(), Duration.ofHours(1), 100);
+        ReflectionTestUtils.setField(store, "waitTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(store, "staleAfter", Duration.ofMinutes(1));
+    }
+
+    @Test
+    @DisplayName("Debe ejecutar la compra una sola vez y devolver la respuesta guardada a los reintentos")
+    void execute_ReplaysCompletedResponse() {
+        // Arrange
+        when(repository.find("key-1")).thenReturn(Optional.empty());
+        AtomicInteger executions = new AtomicInteger();
+
+        // Act
+        ResponseEntity<?> first = store.execute("key-1", Map.of("userId", "u1"), () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("transaction_id", 7));
+        });
+        ResponseEntity<?> retry = store.execute("key-1", Map.of("userId", "u1"), () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("transaction_id", 8));
+        });
+
+        // Assert
+        assertEquals(1, executions.get());
+        assertEquals(HttpStatus.CREATED, first.getStatusCode());
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        assertEquals("{\"transaction_id\":7}", retry.getBody());
+        assertEquals("true", retry.getHeaders().getFirst(PurchaseIdempotencyStore.REPLAYED_HEADER));
+        verify(repository).complete(eq("key-1"), eq(201), anyString(), eq("{\"transaction_id\":7}"));
+    }
+
+    @Test
+    @DisplayName("Los duplicados concurrentes deben esperar a la primera ejecucion y recibir su respuesta")
+    void execute_ConcurrentDuplicatesWaitForFirst() throws Exception {
+        // Arrange
+        when(repository.find("key-2")).thenReturn(Optional.empty());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+
+        // Act
+        ResponseEntity<?> duplicate;
+        ResponseEntity<?> first;
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<ResponseEntity<?>> firstCall = executor.submit(() -> store.execute("key-2", "body", () -> {
+                executions.incrementAndGet();
+                started.countDown();
+                await(release);
+                return ResponseEntity.status(HttpStatus.CREATED).body("ok");
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<ResponseEntity<?>> duplicateCall = executor.submit(() -> store.execute("key-2", "body", () -> {
+                executions.incrementAndGet();
+                return ResponseEntity.status(HttpStatus.CREATED).body("otra");
+            }));
+            Thread.sleep(100);
+            release.countDown();
+            first = firstCall.get(5, TimeUnit.SECONDS);
+            duplicate = duplicateCall.get(5, TimeUnit.SECONDS);
+        }
+
+        // Assert
+        assertEquals(1, executions.get());
+        assertEquals("ok", first.getBody());
+        assertEquals("ok", duplicate.getBody());
+        verify(repository, times(1)).claim(eq("key-2"), anyString(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Debe rechazar una clave reutilizada con otra compra")
+    void execute_RejectsKeyReuseWithDifferentRequest() {
+        // Arrange
+        when(repository.find("key-3")).thenReturn(Optional.empty());
+        store.execute("key-3", "compra A", () -> ResponseEntity.status(HttpStatus.CREATED).body("A"));
+
+        // Act
+        ResponseEntity<?> response = store.execute("key-3", "compra B", () -> ResponseEntity.status(HttpStatus.CREATED).body("B"));
+
+        // Assert
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY.value(), response.getStatusCode().value());
+    }
+
+    @Test
+    @DisplayName("No debe guardar un 503: el reintento vuelve a ejecutar la compra")
+    void execute_DoesNotStoreUnavailable() {
+        // Arrange
+        when(repository.find("key-4")).thenReturn(Optional.empty());
+        store.execute("key-4", "body", () -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("catalogo caido"));
+
+        // Act
+        ResponseEntity<?> retry = store.execute("key-4", "body", () -> ResponseEntity.status(HttpStatus.CREATED).body("ok"));
+
+        // Assert
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        verify(repository, times(1)).release("key-4");
+    }
+
+    @Test
+    @DisplayName("Debe responder 409 si otra instancia tiene la clave en curso")
+    void execute_InProgressElsewhere() {
+        // Arrange
+        when(repository.find("key-5")).thenReturn(Optional.of(IdempotencyRecord.builder()
+                .idempotencyKey("key-5")
+                .requestHash("x")
+                .createdAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(3600))
+                .build()));
+        when(repository.releaseStale(eq("key-5"), any())).thenReturn(false);
+
+        // Act
+        ResponseEntity<?> response = store.execute("key-5", "body", () -> ResponseEntity.ok("no deberia ejecutarse"));
+
+        // Assert
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        verify(repository, never()).claim(anyString(), anyString(), any(), any());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.actividad.booksPayments.service;
+
+import com.actividad.booksPayments.data.PurchaseRepository;
+import com.actividad.booksPayments.data.PurchaseSearchOutboxRepository;
+import com.actividad.booksPayments.data.PurchaseSearchRepository;
+import com.actividad.booksPayments.data.model.Purchase;
+import com.actividad.booksPayments.data.model.PurchaseDocument;
+import com.actividad.booksPayments.data.model.PurchaseSearchOutboxEntry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PurchaseSearchProjectorTest {
+
+    @Mock
+    private PurchaseSearchOutboxRepository outbox;
+
+    @Mock
+    private PurchaseRepository purchaseRepository;
+
+    @Mock
+    private PurchaseSearchRepository searchRepository;
+
+    private PurchaseSearchProjector projector;
+
+    @BeforeEach
+    void setUp() {
+        projector = new PurchaseSearchProjector(outbox, purchaseRepository, searchRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(projector, "batchSize", 100);
+        ReflectionTestUtils.setField(projector, "lease", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(projector, "backoff", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(projector, "maxBackoff", Duration.ofMinutes(1));
+    }
+
+    @Test
+    @DisplayName("Debe indexar las compras pendientes en un solo bulk y borrarlas de la cola")
+    void project_IndexesPendingPurchases() {
+        // Arrange
+        when(outbox.claimDue(any(), eq(100), any())).thenReturn(List.of(entry(1L, 0), entry(2L, 0)));
+        when(purchaseRepository.getWithDetails(List.of(1L, 2L))).thenReturn(List.of(purchase(1L), purchase(2L)));
+
+        // Act
+        projector.project();
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<PurchaseDocument>> documents = ArgumentCaptor.forClass(List.class);
+        verify(searchRepository).index(documents.capture());
+        assertEquals(List.of("1", "2"), documents.getValue().stream().map(PurchaseDocument::getId).toList());
+        verify(outbox).markProjected(List.of(1L, 2L));
+    }
+
+    @Test
+    @DisplayName("Si OpenSearch falla debe reprogramar el lote con backoff exponencial y no borrarlo")
+    void project_ReschedulesOnFailure() {
+        // Arrange
+        when(outbox.claimDue(any(), eq(100), any())).thenReturn(List.of(entry(1L, 3)));
+        when(purchaseRepository.getWithDetails(List.of(1L))).thenReturn(List.of(purchase(1L)));
+        doThrow(new DataAccessResourceFailureException("cluster caido")).when(searchRepository).index(anyList());
+        Instant before = Instant.now();
+
+        // Act
+        projector.project();
+
+        // Assert
+        ArgumentCaptor<Instant> nextAttempt = ArgumentCaptor.forClass(Instant.class);
+        verify(outbox).reschedule(eq(List.of(1L)), nextAttempt.capture(), anyString());
+        // Cuarto intento: 1s * 2^3
+        assertFalse(nextAttempt.getValue().isBefore(before.plusSeconds(8)));
+        verify(outbox, never()).markProjected(any());
+    }
+
+    private PurchaseSearchOutboxEntry entry(Long transactionId, int attempts) {
+        return PurchaseSearchOutboxEntry.builder().transactionId(transactionId).attempts(attempts).nextAttemptAt(Instant.now()).build();
+    }
+
+    private Purchase purchase(Long transactionId) {
+        return Purchase.builder()
+                .transaction_id(transactionId)
+                .userId("user")
+                .amount(10.0)
+                .paymentMethod("CARD")
+                .successfulPayment(true)
+                .createdAt(Instant.now())
+                .build();
+    }
+}
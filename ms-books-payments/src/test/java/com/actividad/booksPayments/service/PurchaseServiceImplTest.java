@@ -0,0 +1,93 @@
+package com.actividad.booksPayments.service;
+
+import com.actividad.booksPayments.controller.model.CreatePurchaseRequest;
+import com.actividad.booksPayments.data.PurchaseRepository;
+import com.actividad.booksPayments.data.model.Purchase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PurchaseServiceImplTest {
+
+    @Mock
+    private PurchaseRepository repository;
+
+    @InjectMocks
+    private PurchaseServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "maxImportSize", 100);
+        ReflectionTestUtils.setField(service, "importChunkSize", 50);
+        ReflectionTestUtils.setField(service, "defaultPageSize", 20);
+        ReflectionTestUtils.setField(service, "maxPageSize", 100);
+    }
+
+    @Test
+    @DisplayName("Debe rechazar un tamano de pagina mayor que el maximo en lugar de recortarlo")
+    void getPurchasesUser_SizeOverMax_Rejected() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> service.getPurchasesUser("u1", null, 101));
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("Debe usar el tamano por defecto si no se indica y aceptar el maximo")
+    void pageSize_DefaultAndMax() {
+        // Act & Assert
+        assertEquals(20, PurchaseServiceImpl.pageSize(null, 20, 100));
+        assertEquals(100, PurchaseServiceImpl.pageSize(100, 20, 100));
+        assertThrows(IllegalArgumentException.class, () -> PurchaseServiceImpl.pageSize(0, 20, 100));
+    }
+
+    @Test
+    @DisplayName("Debe importar cada compra con su createdAt original y la fecha de importacion si no la trae")
+    void importPurchases_KeepsCreatedAt() {
+        // Arrange
+        Instant lastYear = Instant.now().minus(365, ChronoUnit.DAYS);
+        CreatePurchaseRequest historical = new CreatePurchaseRequest("u1", List.of(), 20.0, "CARD", true, lastYear);
+        CreatePurchaseRequest undated = new CreatePurchaseRequest("u1", List.of(), 10.0, "CARD", true);
+        when(repository.importAll(anyList(), eq(50))).thenReturn(2);
+
+        // Act
+        service.importPurchases(List.of(historical, undated));
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Purchase>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository).importAll(captor.capture(), eq(50));
+        assertEquals(lastYear, captor.getValue().get(0).getCreatedAt());
+        // Sin fecha la pone @PrePersist al guardar
+        assertNull(captor.getValue().get(1).getCreatedAt());
+    }
+
+    @Test
+    @DisplayName("Debe rechazar la importacion entera si alguna compra tiene createdAt futura")
+    void importPurchases_FutureCreatedAt_Rejected() {
+        // Arrange
+        CreatePurchaseRequest valid = new CreatePurchaseRequest("u1", List.of(), 20.0, "CARD", true);
+        CreatePurchaseRequest future = new CreatePurchaseRequest("u1", List.of(), 20.0, "CARD", true,
+                Instant.now().plus(1, ChronoUnit.DAYS));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> service.importPurchases(List.of(valid, future)));
+        verify(repository, never()).importAll(anyList(), anyInt());
+    }
+}
@@ -0,0 +1,139 @@
+package com.actividad.booksPayments.service;
+
+import com.actividad.booksPayments.Client.BookCatalogueClient;
+import com.actividad.booksPayments.data.StockOutboxRepository;
+import com.actividad.booksPayments.data.model.StockOutboxEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockOutboxRelayTest {
+
+    @Mock
+    private StockOutboxRepository outbox;
+
+    @Mock
+    private BookCatalogueClient bookCatalogueClient;
+
+    private StockOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = new StockOutboxRelay(outbox, bookCatalogueClient, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(relay, "batchSize", 100);
+        ReflectionTestUtils.setField(relay, "lease", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(relay, "maxAttempts", 3);
+        ReflectionTestUtils.setField(relay, "backoff", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(relay, "maxBackoff", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(relay, "idempotencyWindow", Duration.ofMinutes(55));
+        ReflectionTestUtils.setField(relay, "concurrency", 4);
+    }
+
+    @Test
+    @DisplayName("Debe enviar una sola llamada por libro con la suma de sus eventos y la clave del lote")
+    void relay_SendsCoalescedDelta() {
+        // Arrange
+        Map<String, List<StockOutboxEvent>> batches = new LinkedHashMap<>();
+        batches.put("outbox-1", List.of(event(1L, "hot", -1, 0), event(3L, "hot", -2, 0)));
+        when(outbox.claimDue(any(), eq(100), any())).thenReturn(batches);
+        when(bookCatalogueClient.adjustStockIdempotent("hot", -3, "outbox-1")).thenReturn(Mono.empty());
+
+        // Act
+        relay.relay();
+
+        // Assert
+        verify(bookCatalogueClient, times(1)).adjustStockIdempotent(anyString(), anyInt(), anyString());
+        verify(outbox).markSent(List.of(1L, 3L));
+    }
+
+    @Test
+    @DisplayName("Debe reintentar los fallos del catalogo y descartar sus rechazos")
+    void relay_RetriesFailuresAndDropsRejections() {
+        // Arrange
+        Map<String, List<StockOutboxEvent>> batches = new LinkedHashMap<>();
+        batches.put("outbox-1", List.of(event(1L, "agotado", -1, 0)));
+        batches.put("outbox-2", List.of(event(2L, "caido", -1, 0)));
+        batches.put("outbox-3", List.of(event(3L, "caido-siempre", -1, 2)));
+        when(outbox.claimDue(any(), eq(100), any())).thenReturn(batches);
+        when(bookCatalogueClient.adjustStockIdempotent(eq("agotado"), anyInt(), anyString()))
+                .thenReturn(Mono.error(WebClientResponseException.create(409, "Conflict", HttpHeaders.EMPTY, null, null)));
+        when(bookCatalogueClient.adjustStockIdempotent(eq("caido"), anyInt(), anyString()))
+                .thenReturn(Mono.error(WebClientResponseException.create(503, "Unavailable", HttpHeaders.EMPTY, null, null)));
+        when(bookCatalogueClient.adjustStockIdempotent(eq("caido-siempre"), anyInt(), anyString()))
+                .thenReturn(Mono.error(WebClientResponseException.create(503, "Unavailable", HttpHeaders.EMPTY, null, null)));
+
+        // Act
+        relay.relay();
+
+        // Assert
+        verify(outbox).markFailed(eq(List.of(1L)), anyString());
+        verify(outbox).reschedule(eq(List.of(2L)), any(), anyString());
+        // Tercer intento fallido con max-attempts=3: no se vuelve a intentar
+        verify(outbox).markFailed(eq(List.of(3L)), anyString());
+        verify(outbox, never()).markSent(any());
+    }
+
+    @Test
+    @DisplayName("No debe reintentar un ajuste cuando el reintento saldria fuera de la ventana de idempotencia del catalogo")
+    void relay_DoesNotRetryPastIdempotencyWindow() {
+        // Arrange: tras un timeout ambiguo el ajuste pudo aplicarse; pasada la ventana el catalogo ya no reconoceria la clave
+        StockOutboxEvent old = event(1L, "hot", -1, 0);
+        old.setCreatedAt(Instant.now().minus(Duration.ofMinutes(55)));
+        Map<String, List<StockOutboxEvent>> batches = new LinkedHashMap<>();
+        batches.put("outbox-1", List.of(old));
+        when(outbox.claimDue(any(), eq(100), any())).thenReturn(batches);
+        when(bookCatalogueClient.adjustStockIdempotent("hot", -1, "outbox-1"))
+                .thenReturn(Mono.error(WebClientResponseException.create(504, "Gateway Timeout", HttpHeaders.EMPTY, null, null)));
+
+        // Act
+        relay.relay();
+
+        // Assert
+        verify(outbox).markFailed(eq(List.of(1L)), anyString());
+        verify(outbox, never()).reschedule(any(), any(), anyString());
+    }
+
+    @Test
+    @DisplayName("Un rechazo de una llamada coalescida debe separar el lote en lugar de descartarlo entero")
+    void relay_SplitsRejectedBatch() {
+        // Arrange
+        List<StockOutboxEvent> hot = List.of(event(1L, "hot", -1, 0), event(3L, "hot", -50, 0));
+        Map<String, List<StockOutboxEvent>> batches = new LinkedHashMap<>();
+        batches.put("outbox-1", hot);
+        when(outbox.claimDue(any(), eq(100), any())).thenReturn(batches);
+        when(bookCatalogueClient.adjustStockIdempotent("hot", -51, "outbox-1"))
+                .thenReturn(Mono.error(WebClientResponseException.create(409, "Conflict", HttpHeaders.EMPTY, null, null)));
+
+        // Act
+        relay.relay();
+
+        // Assert
+        verify(outbox).split(eq(hot), any());
+        verify(outbox, never()).markFailed(any(), anyString());
+        verify(outbox, never()).reschedule(any(), any(), anyString());
+    }
+
+    private StockOutboxEvent event(Long id, String bookId, int delta, int attempts) {
+        return StockOutboxEvent.builder().id(id).bookId(bookId).delta(delta).attempts(attempts).createdAt(Instant.now()).build();
+    }
+}